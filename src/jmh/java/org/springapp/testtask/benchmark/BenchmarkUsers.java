@@ -0,0 +1,31 @@
+package org.springapp.testtask.benchmark;
+
+import org.springapp.testtask.entity.UserEntity;
+
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+final class BenchmarkUsers {
+
+    private static final LocalDate OLDEST_BIRTH_DATE = LocalDate.of(1950, 1, 1);
+
+    private BenchmarkUsers() {
+    }
+
+    static UserEntity user(long n) {
+        return new UserEntity(null, "First" + n, "Last" + n, "user" + n + "@example.com",
+                Date.valueOf(OLDEST_BIRTH_DATE.plusDays(n % 18_000)), n + " Main Street", "555-" + (n % 10_000));
+    }
+
+    static List<UserEntity> users(long firstId, int count) {
+        List<UserEntity> users = new ArrayList<>(count);
+        for (long n = firstId; n < firstId + count; n++) {
+            UserEntity user = user(n);
+            user.setId(n);
+            users.add(user);
+        }
+        return users;
+    }
+}
@@ -0,0 +1,74 @@
+package org.springapp.testtask.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.springapp.testtask.cache.BirthDateColumns;
+
+import java.time.LocalDate;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+// Counts over a snapshot of `users` birth dates spread over 1940-2007: one date range, and the six default
+// age buckets of GET /users/analytics/ages (seven boundaries). dayOf is what every committed update costs.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(value = 1, jvmArgs = {"-Xmx2g", "-XX:MaxDirectMemorySize=2g"})
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class BirthDateColumnsBenchmark {
+
+    private static final int FIRST_DAY = (int) LocalDate.of(1940, 1, 1).toEpochDay();
+    private static final int SPAN = (int) (LocalDate.of(2008, 1, 1).toEpochDay() - FIRST_DAY);
+
+    @Param({"10000000"})
+    private int users;
+
+    private BirthDateColumns columns;
+    private int[] ageBoundaries;
+    private int from;
+    private int to;
+    private long probe;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        SplittableRandom random = new SplittableRandom(42);
+        BirthDateColumns.Builder builder = BirthDateColumns.builder();
+        for (long id = 1; id <= users; id++) {
+            builder.add(id, FIRST_DAY + random.nextInt(SPAN));
+        }
+        columns = builder.build();
+
+        LocalDate today = LocalDate.now();
+        int[] ages = {66, 56, 46, 36, 26, 18};
+        ageBoundaries = new int[ages.length + 1];
+        ageBoundaries[0] = Integer.MIN_VALUE;
+        for (int i = 0; i < ages.length; i++) {
+            ageBoundaries[i + 1] = (int) today.minusYears(ages[i]).toEpochDay() + 1;
+        }
+        from = (int) LocalDate.of(1980, 1, 1).toEpochDay();
+        to = (int) LocalDate.of(1990, 1, 1).toEpochDay();
+        probe = users / 3;
+    }
+
+    @Benchmark
+    public long rangeCount() {
+        return columns.countBefore(to) - columns.countBefore(from);
+    }
+
+    @Benchmark
+    public long ageBuckets() {
+        long total = 0;
+        long before = columns.countBefore(ageBoundaries[0]);
+        for (int i = 1; i < ageBoundaries.length; i++) {
+            long next = columns.countBefore(ageBoundaries[i]);
+            total += next - before;
+            before = next;
+        }
+        return total;
+    }
+
+    @Benchmark
+    public int dayOf() {
+        return columns.dayOf(probe);
+    }
+}
@@ -0,0 +1,50 @@
+package org.springapp.testtask.benchmark;
+
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validation;
+import jakarta.validation.Validator;
+import jakarta.validation.ValidatorFactory;
+import org.openjdk.jmh.annotations.*;
+import org.springapp.testtask.entity.UserEntity;
+
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class EmailValidationBenchmark {
+
+    // "long" is an invalid address with a 64 character domain label and no dot, the worst case for the nested quantifiers
+    @Param({"valid", "invalid", "long"})
+    private String email;
+
+    private ValidatorFactory validatorFactory;
+    private Validator validator;
+    private UserEntity user;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        validatorFactory = Validation.buildDefaultValidatorFactory();
+        validator = validatorFactory.getValidator();
+        user = BenchmarkUsers.user(1);
+        user.setEmail(switch (email) {
+            case "valid" -> "john.doe@example.com";
+            case "invalid" -> "john.doe@@example";
+            default -> "john.doe@" + "a".repeat(64);
+        });
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        validatorFactory.close();
+    }
+
+    @Benchmark
+    public Set<ConstraintViolation<UserEntity>> validateEmail() {
+        return validator.validateProperty(user, "email");
+    }
+}
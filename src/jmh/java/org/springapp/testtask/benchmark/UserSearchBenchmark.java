@@ -0,0 +1,43 @@
+package org.springapp.testtask.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.springapp.testtask.cache.UserSearchSegment;
+import org.springapp.testtask.dto.UserView;
+import org.springapp.testtask.entity.UserEntity;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.LongStream;
+
+// Top 20 out of a segment over `users` rows. "first1" matches a ninth of them, "555 12" about one in ninety,
+// "first123 last123" intersects two prefixes and "first12345" is a near-exact hit.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(value = 1, jvmArgs = "-Xmx4g")
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class UserSearchBenchmark {
+
+    @Param({"1000000"})
+    private int users;
+
+    @Param({"first12345", "first123 last123", "555 12", "first1"})
+    private String query;
+
+    private UserSearchSegment segment;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        segment = UserSearchSegment.build(LongStream.range(1, users + 1L).mapToObj(n -> {
+            UserEntity user = BenchmarkUsers.user(n);
+            return new UserView(n, user.getFirstName(), user.getLastName(), user.getEmail(), user.getDateOfBirth(),
+                    user.getAddress(), user.getPhoneNumber(), 0L);
+        }));
+    }
+
+    @Benchmark
+    public List<UserSearchSegment.Hit> search() {
+        return segment.search(query, 20);
+    }
+}
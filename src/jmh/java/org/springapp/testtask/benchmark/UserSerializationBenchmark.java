@@ -0,0 +1,49 @@
+package org.springapp.testtask.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.*;
+import org.springapp.testtask.dto.UserView;
+import org.springapp.testtask.entity.UserEntity;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+public class UserSerializationBenchmark {
+
+    @Param({"1000", "100000", "1000000"})
+    private int size;
+
+    private ObjectMapper objectMapper;
+    private List<UserEntity> users;
+    private List<UserView> views;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        // Same defaults Spring Boot applies to the MVC message converter
+        objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        users = BenchmarkUsers.users(1, size);
+        views = users.stream()
+                .map(user -> new UserView(user.getId(), user.getFirstName(), user.getLastName(), user.getEmail(),
+                        user.getDateOfBirth(), user.getAddress(), user.getPhoneNumber(), user.getVersion()))
+                .toList();
+    }
+
+    @Benchmark
+    public void serializeUsers() throws IOException {
+        objectMapper.writeValue(OutputStream.nullOutputStream(), users);
+    }
+
+    @Benchmark
+    public void serializeUserViews() throws IOException {
+        objectMapper.writeValue(OutputStream.nullOutputStream(), views);
+    }
+}
@@ -0,0 +1,67 @@
+package org.springapp.testtask.benchmark;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.*;
+import org.springapp.testtask.config.UserMessages;
+import org.springapp.testtask.dto.UserView;
+import org.springapp.testtask.entity.UserEntity;
+import org.springapp.testtask.proto.Users;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// JSON against application/x-protobuf for a page of users, both ways. Payload sizes are printed at setup.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class UserWireFormatBenchmark {
+
+    private static final TypeReference<List<UserEntity>> USERS = new TypeReference<>() {
+    };
+
+    @Param({"100", "1000"})
+    private int size;
+
+    private ObjectMapper objectMapper;
+    private List<UserView> views;
+    private byte[] json;
+    private byte[] protobuf;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        views = BenchmarkUsers.users(1, size).stream()
+                .map(user -> new UserView(user.getId(), user.getFirstName(), user.getLastName(), user.getEmail(),
+                        user.getDateOfBirth(), user.getAddress(), user.getPhoneNumber(), user.getVersion()))
+                .toList();
+        json = objectMapper.writeValueAsBytes(views);
+        protobuf = UserMessages.toMessage(views).toByteArray();
+        System.out.printf("%n%d users: json %d bytes, protobuf %d bytes%n", size, json.length, protobuf.length);
+    }
+
+    @Benchmark
+    public byte[] encodeJson() throws IOException {
+        return objectMapper.writeValueAsBytes(views);
+    }
+
+    @Benchmark
+    public byte[] encodeProtobuf() {
+        return UserMessages.toMessage(views).toByteArray();
+    }
+
+    @Benchmark
+    public List<UserEntity> decodeJson() throws IOException {
+        return objectMapper.readValue(json, USERS);
+    }
+
+    @Benchmark
+    public List<UserEntity> decodeProtobuf() throws IOException {
+        return UserMessages.fromMessage(Users.parseFrom(protobuf));
+    }
+}
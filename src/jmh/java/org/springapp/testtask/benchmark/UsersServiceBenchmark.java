@@ -0,0 +1,103 @@
+package org.springapp.testtask.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.springapp.testtask.TestTaskApplication;
+import org.springapp.testtask.dto.BirthDateBucket;
+import org.springapp.testtask.dto.UserSummary;
+import org.springapp.testtask.dto.UserView;
+import org.springapp.testtask.entity.UserEntity;
+import org.springapp.testtask.service.UsersService;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.sql.Date;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class UsersServiceBenchmark {
+
+    private static final int SEEDED_USERS = 10_000;
+    private static final Date RANGE_FROM = Date.valueOf("1960-01-01");
+    private static final Date RANGE_TO = Date.valueOf("1990-12-31");
+
+    private final AtomicLong nextUser = new AtomicLong(SEEDED_USERS);
+
+    private ConfigurableApplicationContext context;
+    private UsersService service;
+    private List<Long> ids;
+
+    // The schema comes from the same Flyway migrations as production, including user_outbox and its head row
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        context = new SpringApplicationBuilder(TestTaskApplication.class)
+                .web(WebApplicationType.NONE)
+                .run("--spring.datasource.url=jdbc:h2:mem:benchmark;MODE=MySQL;DB_CLOSE_DELAY=-1",
+                        "--spring.datasource.driver-class-name=org.h2.Driver",
+                        "--spring.datasource.username=sa",
+                        "--spring.datasource.password=",
+                        "--spring.jpa.show-sql=false",
+                        "--spring.sql.init.mode=never",
+                        "--logging.level.root=WARN");
+        service = context.getBean(UsersService.class);
+
+        ids = new ArrayList<>(SEEDED_USERS);
+        for (int first = 0; first < SEEDED_USERS; first += UsersService.MAX_PAGE_SIZE) {
+            List<UserEntity> batch = new ArrayList<>();
+            for (long n = first; n < first + UsersService.MAX_PAGE_SIZE; n++) {
+                batch.add(BenchmarkUsers.user(n));
+            }
+            service.createUsers(batch).items().forEach(item -> ids.add(item.id()));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public UserEntity createUser() throws Exception {
+        return service.createUser(BenchmarkUsers.user(nextUser.getAndIncrement()));
+    }
+
+    @Benchmark
+    public UserEntity getUser() throws Exception {
+        return service.getUser(randomId());
+    }
+
+    @Benchmark
+    public UserEntity updateUserInfo() throws Exception {
+        Long id = randomId();
+        UserEntity updated = BenchmarkUsers.user(nextUser.getAndIncrement());
+        return service.updateUserInfo(id, updated);
+    }
+
+    @Benchmark
+    public List<UserView> getUsersByBirthDateRange() throws Exception {
+        return service.getUsersByBirthDateRange(RANGE_FROM, RANGE_TO, 0L, UsersService.DEFAULT_PAGE_SIZE);
+    }
+
+    @Benchmark
+    public List<UserSummary> getUserSummariesByBirthDateRange() throws Exception {
+        return service.getUserSummariesByBirthDateRange(RANGE_FROM, RANGE_TO, 0L, UsersService.DEFAULT_PAGE_SIZE);
+    }
+
+    @Benchmark
+    public List<BirthDateBucket> countUsersByBirthDateRange() throws Exception {
+        return service.countUsersByBirthDateRange(RANGE_FROM, RANGE_TO, BirthDateBucket.Grouping.MONTH);
+    }
+
+    private Long randomId() {
+        return ids.get(ThreadLocalRandom.current().nextInt(ids.size()));
+    }
+}
@@ -0,0 +1,164 @@
+package org.springapp.testtask.loadtest;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Cold start and memory of the app in each launch mode, measured from process start until /actuator/health
+ * answers UP, with VmRSS and VmHWM taken from /proc at that point (Linux only). Build the artifacts first:
+ * mvn -Paot package -DskipTests (jvm, aot, cds and aot-cds modes) and, with GraalVM, mvn -Pnative native:compile.
+ * Then, from the project directory: mvn -Pjmh test-compile and
+ * java -cp target/test-classes org.springapp.testtask.loadtest.StartupFootprint 5 jvm,aot,cds,aot-cds,native [app args]
+ * App args go to every run, e.g. --spring.datasource.url=... for a database other than the local MySQL.
+ */
+public final class StartupFootprint {
+
+    private static final Path TARGET = Path.of("target");
+    private static final Path FAT_JAR = TARGET.resolve("TestTask-0.0.1-SNAPSHOT.jar");
+    private static final Path THIN_JAR = TARGET.resolve("TestTask-0.0.1-SNAPSHOT.jar.original");
+    private static final Path LIB = TARGET.resolve("startup/lib");
+    private static final Path NATIVE = TARGET.resolve("TestTask");
+    private static final String MAIN_CLASS = "org.springapp.testtask.TestTaskApplication";
+    private static final int PORT = 18080;
+    private static final Duration READY_TIMEOUT = Duration.ofMinutes(2);
+    private static final Pattern STARTED = Pattern.compile("Started TestTaskApplication in ([0-9.]+) seconds");
+
+    private StartupFootprint() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        int runs = args.length > 0 ? Integer.parseInt(args[0]) : 5;
+        List<String> modes = List.of((args.length > 1 ? args[1] : "jvm,aot,cds,aot-cds,native").split(","));
+        List<String> appArgs = new ArrayList<>(args.length > 2 ? Arrays.asList(args).subList(2, args.length) : List.of());
+        appArgs.add("--server.port=" + PORT);
+
+        HttpClient client = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(1)).build();
+        System.out.printf("%-8s %5s %12s %14s %10s %10s%n", "mode", "runs", "ready ms", "started in ms", "RSS MB", "HWM MB");
+        for (String mode : modes) {
+            List<String> command = command(mode);
+            if (command == null) {
+                System.out.printf("%-8s skipped, build its artifact first%n", mode);
+                continue;
+            }
+            if (mode.endsWith("cds")) {
+                train(mode, appArgs);
+            }
+            List<Sample> samples = new ArrayList<>();
+            for (int i = 0; i < runs; i++) {
+                samples.add(measure(command, appArgs, client));
+            }
+            System.out.printf("%-8s %5d %12d %14d %10d %10d%n", mode, runs,
+                    median(samples.stream().map(Sample::readyMillis)), median(samples.stream().map(Sample::startedMillis)),
+                    median(samples.stream().map(Sample::rssKb)) / 1024, median(samples.stream().map(Sample::hwmKb)) / 1024);
+        }
+    }
+
+    private static List<String> command(String mode) throws IOException {
+        String java = Path.of(System.getProperty("java.home"), "bin", "java").toString();
+        return switch (mode) {
+            case "jvm" -> Files.exists(FAT_JAR) ? List.of(java, "-jar", FAT_JAR.toString()) : null;
+            case "aot" -> Files.exists(FAT_JAR) ? List.of(java, "-Dspring.aot.enabled=true", "-jar", FAT_JAR.toString()) : null;
+            case "cds" -> Files.exists(THIN_JAR) && Files.isDirectory(LIB)
+                    ? List.of(java, "-XX:SharedArchiveFile=" + archive(mode), "-Xshare:auto", "-cp", classpath(), MAIN_CLASS) : null;
+            case "aot-cds" -> Files.exists(THIN_JAR) && Files.isDirectory(LIB)
+                    ? List.of(java, "-XX:SharedArchiveFile=" + archive(mode), "-Xshare:auto", "-Dspring.aot.enabled=true",
+                    "-cp", classpath(), MAIN_CLASS) : null;
+            case "native" -> Files.isExecutable(NATIVE) ? List.of(NATIVE.toString()) : null;
+            default -> throw new IllegalArgumentException("Unknown mode " + mode + ", use jvm, aot, cds, aot-cds or native");
+        };
+    }
+
+    // A CDS archive is dumped from a run that exits right after the context refreshed, so it holds every class
+    // startup needs; CDS only maps classes from jar files, hence the plain jar plus its dependencies
+    private static void train(String mode, List<String> appArgs) throws Exception {
+        List<String> command = new ArrayList<>(command(mode));
+        command.set(1, "-XX:ArchiveClassesAtExit=" + archive(mode));
+        command.add(command.indexOf("-cp"), "-Dspring.context.exit=onRefresh");
+        command.addAll(appArgs);
+        Process process = new ProcessBuilder(command).redirectErrorStream(true)
+                .redirectOutput(TARGET.resolve("startup/" + mode + "-training.log").toFile()).start();
+        if (process.waitFor() != 0) {
+            throw new IllegalStateException("CDS training run failed, see target/startup/" + mode + "-training.log");
+        }
+    }
+
+    private static Sample measure(List<String> command, List<String> appArgs, HttpClient client) throws Exception {
+        List<String> full = new ArrayList<>(command);
+        full.addAll(appArgs);
+        Path log = Files.createTempFile("startup-", ".log");
+        long start = System.nanoTime();
+        Process process = new ProcessBuilder(full).redirectErrorStream(true).redirectOutput(log.toFile()).start();
+        try {
+            HttpRequest health = HttpRequest.newBuilder(URI.create("http://localhost:" + PORT + "/actuator/health")).build();
+            while (true) {
+                if (!process.isAlive()) {
+                    throw new IllegalStateException("App exited during startup, see " + log);
+                }
+                if (System.nanoTime() - start > READY_TIMEOUT.toNanos()) {
+                    throw new IllegalStateException("App not ready after " + READY_TIMEOUT + ", see " + log);
+                }
+                try {
+                    HttpResponse<String> response = client.send(health, HttpResponse.BodyHandlers.ofString());
+                    if (response.statusCode() == 200 && response.body().contains("\"UP\"")) {
+                        break;
+                    }
+                } catch (IOException notListeningYet) {
+                    // keep polling
+                }
+                Thread.sleep(10);
+            }
+            long readyMillis = (System.nanoTime() - start) / 1_000_000;
+            List<String> status = Files.readAllLines(Path.of("/proc", Long.toString(process.pid()), "status"));
+            Matcher started = STARTED.matcher(Files.readString(log));
+            long startedMillis = started.find() ? (long) (Double.parseDouble(started.group(1)) * 1000) : -1;
+            Files.delete(log);
+            return new Sample(readyMillis, startedMillis, kilobytes(status, "VmRSS:"), kilobytes(status, "VmHWM:"));
+        } finally {
+            process.destroy();
+            process.waitFor();
+        }
+    }
+
+    private static String archive(String mode) {
+        return TARGET.resolve("startup/" + mode + ".jsa").toString();
+    }
+
+    // Sorted, so the training run and the measured runs see the identical classpath CDS insists on
+    private static String classpath() throws IOException {
+        try (Stream<Path> jars = Files.list(LIB)) {
+            return Stream.concat(Stream.of(THIN_JAR), jars.filter(jar -> jar.toString().endsWith(".jar")).sorted())
+                    .map(Path::toString)
+                    .collect(Collectors.joining(File.pathSeparator));
+        }
+    }
+
+    private static long kilobytes(List<String> status, String field) {
+        return status.stream()
+                .filter(line -> line.startsWith(field))
+                .map(line -> Long.parseLong(line.replaceAll("\\D", "")))
+                .findFirst()
+                .orElse(-1L);
+    }
+
+    private static long median(Stream<Long> values) {
+        List<Long> sorted = values.sorted().toList();
+        return sorted.get(sorted.size() / 2);
+    }
+
+    private record Sample(long readyMillis, long startedMillis, long rssKb, long hwmKb) {
+    }
+}
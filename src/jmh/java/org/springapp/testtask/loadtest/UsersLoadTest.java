@@ -0,0 +1,140 @@
+package org.springapp.testtask.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Closed-loop load generator for comparing request execution modes.
+ * Start the app once normally and once with --spring.profiles.active=virtual on JDK 21, then run:
+ * mvn -Pjmh test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=org.springapp.testtask.loadtest.UsersLoadTest -Dexec.args="http://localhost:8080 256 30"
+ */
+public final class UsersLoadTest {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final int SEED_USERS = 1000;
+
+    private UsersLoadTest() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        URI baseUri = URI.create(args.length > 0 ? args[0] : "http://localhost:8080");
+        int concurrency = args.length > 1 ? Integer.parseInt(args[1]) : 64;
+        Duration duration = Duration.ofSeconds(args.length > 2 ? Long.parseLong(args[2]) : 30);
+
+        HttpClient client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(5))
+                .build();
+        String runId = Long.toString(System.currentTimeMillis(), 36);
+        List<Long> ids = seedUsers(client, baseUri, runId);
+        AtomicLong nextUser = new AtomicLong();
+
+        System.out.printf("%-18s %6s %10s %8s %9s %9s %9s%n", "scenario", "conc", "req/s", "errors", "p50 ms", "p99 ms", "max ms");
+        run("GET /users/{id}", client, concurrency, duration, () -> HttpRequest
+                .newBuilder(baseUri.resolve("/users/" + ids.get(ThreadLocalRandom.current().nextInt(ids.size()))))
+                .GET()
+                .build());
+        run("POST /users", client, concurrency, duration, () -> HttpRequest
+                .newBuilder(baseUri.resolve("/users"))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(userJson(runId + "-" + nextUser.getAndIncrement())))
+                .build());
+    }
+
+    private static void run(String scenario, HttpClient client, int concurrency, Duration duration,
+                            Supplier<HttpRequest> requests) throws Exception {
+        long deadline = System.nanoTime() + duration.toNanos();
+        AtomicLong errors = new AtomicLong();
+        ExecutorService workers = Executors.newFixedThreadPool(concurrency);
+        List<Future<long[]>> results = new ArrayList<>();
+        for (int i = 0; i < concurrency; i++) {
+            results.add(workers.submit(() -> {
+                long[] latencies = new long[1024];
+                int count = 0;
+                while (System.nanoTime() < deadline) {
+                    long start = System.nanoTime();
+                    try {
+                        HttpResponse<Void> response = client.send(requests.get(), HttpResponse.BodyHandlers.discarding());
+                        if (response.statusCode() >= 400) {
+                            errors.incrementAndGet();
+                        }
+                    } catch (Exception e) {
+                        errors.incrementAndGet();
+                    }
+                    if (count == latencies.length) {
+                        latencies = Arrays.copyOf(latencies, count * 2);
+                    }
+                    latencies[count++] = System.nanoTime() - start;
+                }
+                return Arrays.copyOf(latencies, count);
+            }));
+        }
+
+        long[] all = new long[0];
+        for (Future<long[]> result : results) {
+            long[] latencies = result.get();
+            int offset = all.length;
+            all = Arrays.copyOf(all, offset + latencies.length);
+            System.arraycopy(latencies, 0, all, offset, latencies.length);
+        }
+        workers.shutdown();
+        Arrays.sort(all);
+
+        System.out.printf("%-18s %6d %10.0f %8d %9.2f %9.2f %9.2f%n", scenario, concurrency,
+                all.length / (double) duration.toSeconds(), errors.get(),
+                percentile(all, 0.50), percentile(all, 0.99), all.length == 0 ? 0 : all[all.length - 1] / 1e6);
+    }
+
+    private static double percentile(long[] sortedNanos, double percentile) {
+        if (sortedNanos.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.ceil(percentile * sortedNanos.length) - 1;
+        return sortedNanos[Math.max(index, 0)] / 1e6;
+    }
+
+    private static List<Long> seedUsers(HttpClient client, URI baseUri, String runId) throws Exception {
+        StringBuilder batch = new StringBuilder("[");
+        for (int i = 0; i < SEED_USERS; i++) {
+            batch.append(i == 0 ? "" : ",").append(userJson(runId + "-seed-" + i));
+        }
+        HttpResponse<String> response = client.send(HttpRequest.newBuilder(baseUri.resolve("/users/batch"))
+                        .header("Content-Type", "application/json")
+                        .POST(HttpRequest.BodyPublishers.ofString(batch.append("]").toString()))
+                        .build(),
+                HttpResponse.BodyHandlers.ofString());
+
+        List<Long> ids = new ArrayList<>();
+        for (JsonNode item : MAPPER.readTree(response.body()).path("items")) {
+            if (item.hasNonNull("id")) {
+                ids.add(item.get("id").asLong());
+            }
+        }
+        if (ids.isEmpty()) {
+            throw new IllegalStateException("Could not seed users: " + response.statusCode() + " " + response.body());
+        }
+        return ids;
+    }
+
+    private static String userJson(String key) {
+        return """
+                {"firstName":"Load","lastName":"Test","email":"load-%s@example.com","dateOfBirth":"1990-01-01",\
+                "address":"1 Test Street","phoneNumber":"555-0000"}""".formatted(key);
+    }
+}
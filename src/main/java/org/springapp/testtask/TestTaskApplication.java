@@ -1,9 +1,14 @@
 package org.springapp.testtask;
 
+import org.springapp.testtask.config.UsersRuntimeHints;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.context.properties.ConfigurationPropertiesScan;
+import org.springframework.context.annotation.ImportRuntimeHints;
 
 @SpringBootApplication
+@ConfigurationPropertiesScan
+@ImportRuntimeHints(UsersRuntimeHints.class)
 public class TestTaskApplication {
 
     public static void main(String[] args) {
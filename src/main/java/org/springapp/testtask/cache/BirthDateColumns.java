@@ -0,0 +1,201 @@
+package org.springapp.testtask.cache;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.time.LocalDate;
+import java.util.Arrays;
+
+// Immutable snapshot of every user's birth date as epoch days, in direct buffers outside the heap: ids ascending
+// with each one's day alongside, and all days again in ascending order. A range count is two binary searches over
+// the sorted days; a user's own day is a binary search over the ids. 16 bytes per user, off-heap memory is bounded
+// by -XX:MaxDirectMemorySize. Days outside 1900-2099 are stored and counted as the nearest end of that span.
+public final class BirthDateColumns {
+
+    // Day of a user the snapshot does not have
+    public static final int NONE = Integer.MIN_VALUE;
+    public static final LocalDate FIRST_DATE = LocalDate.of(1900, 1, 1);
+    public static final LocalDate LAST_DATE = LocalDate.of(2099, 12, 31);
+    static final int FIRST_DAY = (int) FIRST_DATE.toEpochDay();
+    static final int LAST_DAY = (int) LAST_DATE.toEpochDay();
+
+    private final LongBuffer ids;
+    private final IntBuffer daysById;
+    private final IntBuffer days;
+    private final int size;
+
+    private BirthDateColumns(LongBuffer ids, IntBuffer daysById, IntBuffer days, int size) {
+        this.ids = ids;
+        this.daysById = daysById;
+        this.days = days;
+        this.size = size;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public static int clamp(long epochDay) {
+        return (int) Math.max(FIRST_DAY, Math.min(LAST_DAY, epochDay));
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public long sizeInBytes() {
+        return (long) size * (Long.BYTES + 2 * Integer.BYTES);
+    }
+
+    // Users born before day
+    public int countBefore(int day) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (days.get(middle) < day) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    public int dayOf(long userId) {
+        int low = 0;
+        int high = size - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            long id = ids.get(middle);
+            if (id < userId) {
+                low = middle + 1;
+            } else if (id > userId) {
+                high = middle - 1;
+            } else {
+                return daysById.get(middle);
+            }
+        }
+        return NONE;
+    }
+
+    // Rows may come in several ascending runs, one per shard; they are merged by id in build
+    public static final class Builder {
+
+        private LongBuffer ids = longs(1024);
+        private IntBuffer days = ints(1024);
+        private int size;
+        private long lastId = Long.MIN_VALUE;
+        private final IntList runStarts = new IntList();
+        private final int[] dayCounts = new int[LAST_DAY - FIRST_DAY + 1];
+
+        private Builder() {
+            runStarts.add(0);
+        }
+
+        public Builder add(long userId, long epochDay) {
+            if (size == ids.capacity()) {
+                ids = longs(size * 2).put(ids.flip());
+                days = ints(size * 2).put(days.flip());
+            }
+            if (userId <= lastId) {
+                runStarts.add(size);
+            }
+            int day = clamp(epochDay);
+            ids.put(size, userId);
+            days.put(size, day);
+            ids.position(++size);
+            days.position(size);
+            dayCounts[day - FIRST_DAY]++;
+            lastId = userId;
+            return this;
+        }
+
+        public BirthDateColumns build() {
+            LongBuffer sortedIds = longs(size);
+            IntBuffer daysById = ints(size);
+            if (runStarts.size == 1) {
+                sortedIds.put(ids.flip()).flip();
+                daysById.put(days.flip()).flip();
+            } else {
+                mergeRuns(sortedIds, daysById);
+            }
+            ids = null;
+            days = null;
+
+            // Counting sort: the span of possible days is small next to the number of users
+            IntBuffer sortedDays = ints(size);
+            int at = 0;
+            for (int i = 0; i < dayCounts.length; i++) {
+                for (int n = dayCounts[i]; n > 0; n--) {
+                    sortedDays.put(at++, FIRST_DAY + i);
+                }
+            }
+            return new BirthDateColumns(sortedIds, daysById, sortedDays, size);
+        }
+
+        // Pairwise merges of neighbouring runs until one is left, going back and forth between two sets of buffers
+        private void mergeRuns(LongBuffer targetIds, IntBuffer targetDays) {
+            runStarts.add(size);
+            LongBuffer fromIds = ids;
+            IntBuffer fromDays = days;
+            LongBuffer toIds = targetIds;
+            IntBuffer toDays = targetDays;
+            IntList starts = runStarts;
+            while (starts.size > 2) {
+                IntList merged = new IntList();
+                for (int run = 0; run + 1 < starts.size; run += 2) {
+                    int from = starts.values[run];
+                    int middle = starts.values[run + 1];
+                    int to = run + 2 < starts.size ? starts.values[run + 2] : middle;
+                    merged.add(from);
+                    int left = from;
+                    int right = middle;
+                    for (int i = from; i < to; i++) {
+                        boolean takeLeft = right >= to || left < middle && fromIds.get(left) <= fromIds.get(right);
+                        int source = takeLeft ? left++ : right++;
+                        toIds.put(i, fromIds.get(source));
+                        toDays.put(i, fromDays.get(source));
+                    }
+                }
+                merged.add(size);
+                LongBuffer swapIds = fromIds;
+                IntBuffer swapDays = fromDays;
+                fromIds = toIds;
+                fromDays = toDays;
+                toIds = swapIds;
+                toDays = swapDays;
+                starts = merged;
+            }
+            if (fromIds != targetIds) {
+                for (int i = 0; i < size; i++) {
+                    targetIds.put(i, fromIds.get(i));
+                    targetDays.put(i, fromDays.get(i));
+                }
+            }
+            targetIds.clear().limit(size);
+            targetDays.clear().limit(size);
+        }
+    }
+
+    private static LongBuffer longs(int capacity) {
+        return ByteBuffer.allocateDirect(capacity * Long.BYTES).order(ByteOrder.nativeOrder()).asLongBuffer();
+    }
+
+    private static IntBuffer ints(int capacity) {
+        return ByteBuffer.allocateDirect(capacity * Integer.BYTES).order(ByteOrder.nativeOrder()).asIntBuffer();
+    }
+
+    private static final class IntList {
+        int[] values = new int[4];
+        int size;
+
+        void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package org.springapp.testtask.cache;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+// Users created, changed or deleted since the columns' snapshot, as +1/-1 per birth day in a Fenwick tree over
+// 1900-2099: a change moves its user from the day the snapshot (or an earlier change) had to the new one, and
+// counting the users born before a day costs one walk up the tree, whatever the number of changes.
+final class BirthDateDelta {
+
+    private record Change(int day, long at) {
+    }
+
+    private final AtomicIntegerArray tree = new AtomicIntegerArray(BirthDateColumns.LAST_DAY - BirthDateColumns.FIRST_DAY + 2);
+    private final ConcurrentHashMap<Long, Change> changes = new ConcurrentHashMap<>();
+
+    // Callers serialize writes; counts may run alongside and see a change half applied.
+    // day is NONE for a deleted user; base may be null before the first snapshot.
+    void put(long userId, int day, long at, BirthDateColumns base) {
+        Change previous = changes.put(userId, new Change(day, at));
+        int previousDay = previous != null ? previous.day() : base == null ? BirthDateColumns.NONE : base.dayOf(userId);
+        if (previousDay != BirthDateColumns.NONE) {
+            add(previousDay, -1);
+        }
+        if (day != BirthDateColumns.NONE) {
+            add(day, 1);
+        }
+    }
+
+    // The changes made at or after cutoff, replayed on top of the next snapshot. A change the snapshot already
+    // has moves its user from a day to the same day, so the overlap does no harm.
+    BirthDateDelta since(long cutoff, BirthDateColumns base) {
+        BirthDateDelta delta = new BirthDateDelta();
+        changes.forEach((userId, change) -> {
+            if (change.at() - cutoff >= 0) {
+                delta.put(userId, change.day(), change.at(), base);
+            }
+        });
+        return delta;
+    }
+
+    // Net change in the users born before day
+    long countBefore(int day) {
+        long count = 0;
+        for (int i = Math.min(day, BirthDateColumns.LAST_DAY + 1) - BirthDateColumns.FIRST_DAY; i > 0; i -= i & -i) {
+            count += tree.get(i);
+        }
+        return count;
+    }
+
+    int size() {
+        return changes.size();
+    }
+
+    private void add(int day, int change) {
+        for (int i = day - BirthDateColumns.FIRST_DAY + 1; i < tree.length(); i += i & -i) {
+            tree.addAndGet(i, change);
+        }
+    }
+}
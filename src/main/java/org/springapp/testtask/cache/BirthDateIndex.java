@@ -0,0 +1,152 @@
+package org.springapp.testtask.cache;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.annotation.PreDestroy;
+import org.springapp.testtask.config.UsersAnalyticsProperties;
+import org.springapp.testtask.datasource.UserShards;
+import org.springapp.testtask.entity.UserEntity;
+import org.springapp.testtask.repository.UsersRepository;
+import org.springapp.testtask.service.UserChangedEvent;
+import org.springapp.testtask.service.UserRules;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Birth date counts without a query: columns built from the table answer for everyone they saw, committed
+// creates, updates and deletes adjust a delta on top. Writes by other instances only show up after the next
+// rebuild, every rebuild-interval.
+@Component
+public class BirthDateIndex implements MeterBinder {
+
+    // Same overlap as the search index, for rebuilds that read a lagging replica
+    private static final Duration DELTA_OVERLAP = Duration.ofMinutes(1);
+
+    private record Snapshot(BirthDateColumns columns, BirthDateDelta delta) {
+    }
+
+    private final UsersAnalyticsProperties properties;
+    private final UsersRepository repository;
+    private final UserShards shards;
+    private final TransactionTemplate readOnlyTransaction;
+    private final AtomicLong rebuildFailures = new AtomicLong();
+    private volatile Snapshot snapshot = new Snapshot(null, new BirthDateDelta());
+    private ScheduledExecutorService rebuilder;
+
+    public BirthDateIndex(UsersAnalyticsProperties properties, UsersRepository repository, UserShards shards,
+                          PlatformTransactionManager transactionManager) {
+        this.properties = properties;
+        this.repository = repository;
+        this.shards = shards;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (!properties.enabled()) {
+            return;
+        }
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("birth-date-index-");
+        threadFactory.setDaemon(true);
+        rebuilder = Executors.newSingleThreadScheduledExecutor(threadFactory);
+        rebuilder.scheduleWithFixedDelay(this::rebuild, 0, properties.rebuildInterval().toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (rebuilder != null) {
+            rebuilder.shutdownNow();
+        }
+    }
+
+    // counts[i] is the number of users born in [boundaries[i], boundaries[i + 1]), boundaries being ascending
+    // epoch days; empty until the first build has finished
+    public Optional<long[]> count(int... boundaries) {
+        Snapshot current = snapshot;
+        if (current.columns() == null) {
+            return Optional.empty();
+        }
+        long[] counts = new long[boundaries.length - 1];
+        long before = countBefore(current, boundaries[0]);
+        for (int i = 0; i < counts.length; i++) {
+            long next = countBefore(current, boundaries[i + 1]);
+            counts[i] = next - before;
+            before = next;
+        }
+        return Optional.of(counts);
+    }
+
+    public boolean isReady() {
+        return snapshot.columns() != null;
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public synchronized void onUserCommitted(UserChangedEvent event) {
+        if (!properties.enabled() || event.id() == null) {
+            return;
+        }
+        UserEntity user = event.user();
+        int day = user == null || user.getDateOfBirth() == null ? BirthDateColumns.NONE
+                : BirthDateColumns.clamp(UserRules.epochDay(user.getDateOfBirth()));
+        Snapshot current = snapshot;
+        current.delta().put(event.id(), day, System.nanoTime(), current.columns());
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        if (!properties.enabled()) {
+            return;
+        }
+        Gauge.builder("users.analytics.snapshot.users", this,
+                        index -> index.snapshot.columns() == null ? 0 : index.snapshot.columns().size())
+                .description("Users in the birth date snapshot")
+                .register(registry);
+        Gauge.builder("users.analytics.snapshot.delta", this, index -> index.snapshot.delta().size())
+                .description("Users changed since the birth date snapshot was built")
+                .register(registry);
+        Gauge.builder("users.analytics.snapshot.size", this,
+                        index -> index.snapshot.columns() == null ? 0 : index.snapshot.columns().sizeInBytes())
+                .description("Off-heap memory held by the birth date snapshot")
+                .baseUnit("bytes")
+                .register(registry);
+        FunctionCounter.builder("users.analytics.snapshot.rebuild.failures", rebuildFailures, AtomicLong::get)
+                .register(registry);
+    }
+
+    void rebuild() {
+        long startedAt = System.nanoTime();
+        try {
+            BirthDateColumns.Builder builder = BirthDateColumns.builder();
+            readOnlyTransaction.executeWithoutResult(status -> shards.forEachShard(() -> {
+                try (var users = repository.streamBirthDates()) {
+                    users.forEach(user -> builder.add(user.id(), UserRules.epochDay(user.dateOfBirth())));
+                }
+            }));
+            BirthDateColumns columns = builder.build();
+            synchronized (this) {
+                snapshot = new Snapshot(columns, snapshot.delta().since(startedAt - DELTA_OVERLAP.toNanos(), columns));
+            }
+        } catch (RuntimeException e) {
+            // keep serving the previous snapshot, the next run tries again
+            rebuildFailures.incrementAndGet();
+        }
+    }
+
+    private static long countBefore(Snapshot snapshot, int day) {
+        return snapshot.columns().countBefore(day) + snapshot.delta().countBefore(day);
+    }
+}
@@ -0,0 +1,170 @@
+package org.springapp.testtask.cache;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.annotation.PreDestroy;
+import org.springapp.testtask.config.EmailIndexProperties;
+import org.springapp.testtask.datasource.UserShards;
+import org.springapp.testtask.repository.UsersRepository;
+import org.springapp.testtask.service.UserChangedEvent;
+import org.springapp.testtask.service.UserRules;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+// Optional Bloom filter in front of the batch email lookups: emails it has never seen are known to be free
+// and skip the IN query. It can only say "maybe taken", so the unique index on email stays the authority.
+// Until the first build from the table finishes, every email is looked up as before.
+// Deleted and changed emails leave stale bits, and writes by other instances are only seen by a rebuild,
+// so the filter is rebuilt every rebuild-interval while new writes go to both the old and the new one.
+@Component
+public class EmailIndex implements MeterBinder {
+
+    private final EmailIndexProperties properties;
+    private final UsersRepository repository;
+    private final UserShards shards;
+    private final TransactionTemplate readOnlyTransaction;
+    private final AtomicLong skipped = new AtomicLong();
+    private final AtomicLong checked = new AtomicLong();
+    private final AtomicLong falsePositives = new AtomicLong();
+    private final AtomicLong rebuildFailures = new AtomicLong();
+    private volatile EmailBloomFilter current;
+    private volatile EmailBloomFilter rebuilding;
+    private ScheduledExecutorService rebuilder;
+
+    public EmailIndex(EmailIndexProperties properties, UsersRepository repository, UserShards shards,
+                      PlatformTransactionManager transactionManager) {
+        this.properties = properties;
+        this.repository = repository;
+        this.shards = shards;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (!properties.enabled()) {
+            return;
+        }
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("email-index-");
+        threadFactory.setDaemon(true);
+        rebuilder = Executors.newSingleThreadScheduledExecutor(threadFactory);
+        rebuilder.scheduleWithFixedDelay(this::rebuild, 0, properties.rebuildInterval().toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (rebuilder != null) {
+            rebuilder.shutdownNow();
+        }
+    }
+
+    // lookup gets the emails that might be taken and returns their owners keyed by normalized email
+    public Map<String, Long> findOwners(Set<String> emails, Function<Set<String>, Map<String, Long>> lookup) {
+        EmailBloomFilter filter = current;
+        if (filter == null) {
+            return lookup.apply(emails);
+        }
+
+        Set<String> candidates = new HashSet<>();
+        for (String email : emails) {
+            if (filter.mightContain(UserRules.normalizeEmail(email))) {
+                candidates.add(email);
+            }
+        }
+        skipped.addAndGet(emails.size() - candidates.size());
+        checked.addAndGet(candidates.size());
+        Map<String, Long> owners = candidates.isEmpty() ? new HashMap<>() : lookup.apply(candidates);
+        falsePositives.addAndGet(Math.max(0, candidates.size() - owners.size()));
+        return owners;
+    }
+
+    // Added as soon as the row is written and again after commit: the first closes the window before commit,
+    // the second catches rows a running rebuild's snapshot started too early to see
+    @EventListener
+    public void onUserWritten(UserChangedEvent event) {
+        add(event);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onUserCommitted(UserChangedEvent event) {
+        add(event);
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        if (!properties.enabled()) {
+            return;
+        }
+        Gauge.builder("users.email.index.size", this, index -> index.current == null ? 0 : index.current.sizeInBytes())
+                .description("Memory held by the email Bloom filter")
+                .baseUnit("bytes")
+                .register(registry);
+        Gauge.builder("users.email.index.expected.fpp", this,
+                        index -> index.current == null ? 1 : index.current.expectedFalsePositiveRate())
+                .description("False positive rate implied by the filter's current fill")
+                .register(registry);
+        FunctionCounter.builder("users.email.index.lookups", skipped, AtomicLong::get)
+                .description("Emails checked against the filter")
+                .tag("result", "skipped")
+                .register(registry);
+        FunctionCounter.builder("users.email.index.lookups", checked, AtomicLong::get)
+                .description("Emails checked against the filter")
+                .tag("result", "checked")
+                .register(registry);
+        FunctionCounter.builder("users.email.index.false.positives", falsePositives, AtomicLong::get)
+                .description("Emails the filter let through that the database did not have")
+                .register(registry);
+        FunctionCounter.builder("users.email.index.rebuild.failures", rebuildFailures, AtomicLong::get)
+                .register(registry);
+    }
+
+    void rebuild() {
+        EmailBloomFilter filter = new EmailBloomFilter(properties.expectedInsertions(), properties.falsePositiveRate());
+        rebuilding = filter;
+        try {
+            readOnlyTransaction.executeWithoutResult(status -> shards.forEachShard(() -> {
+                try (var emails = repository.streamAllEmails()) {
+                    emails.forEach(email -> filter.put(UserRules.normalizeEmail(email)));
+                }
+            }));
+            current = filter;
+        } catch (RuntimeException e) {
+            // keep serving the previous filter, the next run tries again
+            rebuildFailures.incrementAndGet();
+        } finally {
+            rebuilding = null;
+        }
+    }
+
+    private void add(UserChangedEvent event) {
+        if (event.user() == null || event.user().getEmail() == null) {
+            return;
+        }
+        String email = UserRules.normalizeEmail(event.user().getEmail());
+        EmailBloomFilter filter = current;
+        if (filter != null) {
+            filter.put(email);
+        }
+        EmailBloomFilter next = rebuilding;
+        if (next != null) {
+            next.put(email);
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package org.springapp.testtask.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springapp.testtask.config.UsersCacheProperties;
+import org.springapp.testtask.entity.UserEntity;
+import org.springapp.testtask.service.UserChangedEvent;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Function;
+
+// Misses are cached as Optional.empty() with their own, shorter TTL.
+// Loads run outside any lock so a virtual thread waiting on JDBC never pins its carrier.
+// A load only lands in the cache if no invalidation of its stripe happened while it ran,
+// so a row read before a commit can't outlive the after-commit invalidation.
+@Component
+public class UserCache implements MeterBinder {
+
+    private static final int STRIPES = 64;
+
+    private final Cache<Long, Optional<UserEntity>> cache;
+    private final AtomicLongArray invalidations = new AtomicLongArray(STRIPES);
+
+    public UserCache(UsersCacheProperties properties) {
+        long ttl = properties.ttl().toNanos();
+        long negativeTtl = properties.negativeTtl().toNanos();
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(properties.maximumSize())
+                .expireAfter(new Expiry<Long, Optional<UserEntity>>() {
+                    @Override
+                    public long expireAfterCreate(Long id, Optional<UserEntity> user, long currentTime) {
+                        return user.isPresent() ? ttl : negativeTtl;
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(Long id, Optional<UserEntity> user, long currentTime, long currentDuration) {
+                        return expireAfterCreate(id, user, currentTime);
+                    }
+
+                    @Override
+                    public long expireAfterRead(Long id, Optional<UserEntity> user, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .recordStats()
+                .build();
+    }
+
+    public Optional<UserEntity> get(Long id, Function<Long, Optional<UserEntity>> loader) {
+        Optional<UserEntity> cached = cache.getIfPresent(id);
+        if (cached != null) {
+            return cached;
+        }
+
+        int stripe = stripe(id);
+        long stamp = invalidations.get(stripe);
+        Optional<UserEntity> loaded = loader.apply(id);
+        cache.asMap().compute(id, (key, current) -> invalidations.get(stripe) == stamp ? loaded : current);
+        return loaded;
+    }
+
+    public void invalidate(Long id) {
+        invalidations.incrementAndGet(stripe(id));
+        cache.invalidate(id);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onUserChanged(UserChangedEvent event) {
+        invalidate(event.id());
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        CaffeineCacheMetrics.monitor(registry, cache, "users");
+    }
+
+    private static int stripe(Long id) {
+        return Long.hashCode(id) & (STRIPES - 1);
+    }
+}
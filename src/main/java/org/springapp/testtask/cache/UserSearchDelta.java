@@ -0,0 +1,97 @@
+package org.springapp.testtask.cache;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+// Users created, changed or deleted since the segment's snapshot. Their segment docs are stale, so the
+// delta answers for them instead; a deleted user stays here without terms until the next rebuild.
+final class UserSearchDelta {
+
+    private record Change(long at, List<String> terms) {
+    }
+
+    private final ConcurrentSkipListMap<String, Set<Long>> postings = new ConcurrentSkipListMap<>();
+    private final ConcurrentHashMap<Long, Change> changes = new ConcurrentHashMap<>();
+
+    // Callers serialize writes; searches may run alongside and see either the old or the new terms
+    void put(long userId, List<String> terms, long at) {
+        Change previous = changes.put(userId, new Change(at, terms));
+        if (previous != null && previous.terms() != null) {
+            for (String term : previous.terms()) {
+                postings.computeIfPresent(term, (t, users) -> {
+                    users.remove(userId);
+                    return users.isEmpty() ? null : users;
+                });
+            }
+        }
+        if (terms != null) {
+            for (String term : terms) {
+                postings.computeIfAbsent(term, t -> ConcurrentHashMap.newKeySet()).add(userId);
+            }
+        }
+    }
+
+    // The changes made at or after cutoff, to carry over into the next segment's delta
+    UserSearchDelta since(long cutoff) {
+        UserSearchDelta delta = new UserSearchDelta();
+        changes.forEach((userId, change) -> {
+            if (change.at() - cutoff >= 0) {
+                delta.put(userId, change.terms(), change.at());
+            }
+        });
+        return delta;
+    }
+
+    Set<Long> userIds() {
+        return changes.keySet();
+    }
+
+    int size() {
+        return changes.size();
+    }
+
+    // Same matching and scoring as UserSearchSegment.search, over the handful of changed users
+    List<UserSearchSegment.Hit> search(List<String> tokens, int wanted) {
+        if (tokens.isEmpty() || postings.isEmpty() || wanted <= 0) {
+            return List.of();
+        }
+        Map<Long, Float> scores = null;
+        for (String token : tokens) {
+            Map<Long, Float> best = new HashMap<>();
+            int prefixLength = token.codePointCount(0, token.length());
+            for (UserSearchTerms.Field field : UserSearchTerms.Field.values()) {
+                String prefix = field.tag + token;
+                postings.subMap(prefix, prefix + Character.MAX_VALUE).forEach((term, users) -> {
+                    float score = field.weight * prefixLength / term.codePointCount(1, term.length());
+                    users.forEach(userId -> best.merge(userId, score, Math::max));
+                });
+            }
+            if (scores == null) {
+                scores = best;
+            } else {
+                scores.keySet().retainAll(best.keySet());
+                scores.replaceAll((userId, score) -> score + best.get(userId));
+            }
+            if (scores.isEmpty()) {
+                return List.of();
+            }
+        }
+
+        PriorityQueue<UserSearchSegment.Hit> top = new PriorityQueue<>(wanted + 1, UserSearchSegment.RANKING.reversed());
+        scores.forEach((userId, score) -> {
+            top.add(new UserSearchSegment.Hit(userId, score));
+            if (top.size() > wanted) {
+                top.poll();
+            }
+        });
+        List<UserSearchSegment.Hit> hits = new ArrayList<>(top);
+        hits.sort(UserSearchSegment.RANKING);
+        return hits;
+    }
+}
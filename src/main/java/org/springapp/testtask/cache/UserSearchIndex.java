@@ -0,0 +1,164 @@
+package org.springapp.testtask.cache;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.annotation.PreDestroy;
+import org.springapp.testtask.config.UsersSearchProperties;
+import org.springapp.testtask.datasource.UserShards;
+import org.springapp.testtask.dto.UserView;
+import org.springapp.testtask.entity.UserEntity;
+import org.springapp.testtask.repository.UsersRepository;
+import org.springapp.testtask.service.UserChangedEvent;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// In-process prefix search over names, email and phone. A segment built from the table answers for everyone
+// it saw; committed creates, updates and deletes go to a small delta and mask the user's segment doc.
+// Writes by other instances only show up after the next rebuild, every rebuild-interval.
+@Component
+public class UserSearchIndex implements MeterBinder {
+
+    // A rebuild may read a replica up to users.replicas.max-lag behind, so changes from shortly before
+    // it started stay in the delta too; answering such a user from the delta again is harmless
+    private static final Duration DELTA_OVERLAP = Duration.ofMinutes(1);
+
+    private record Snapshot(UserSearchSegment segment, UserSearchDelta delta) {
+    }
+
+    private final UsersSearchProperties properties;
+    private final UsersRepository repository;
+    private final UserShards shards;
+    private final TransactionTemplate readOnlyTransaction;
+    private final AtomicLong rebuildFailures = new AtomicLong();
+    private volatile Snapshot snapshot = new Snapshot(null, new UserSearchDelta());
+    private ScheduledExecutorService rebuilder;
+
+    public UserSearchIndex(UsersSearchProperties properties, UsersRepository repository, UserShards shards,
+                           PlatformTransactionManager transactionManager) {
+        this.properties = properties;
+        this.repository = repository;
+        this.shards = shards;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (!properties.enabled()) {
+            return;
+        }
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("user-search-index-");
+        threadFactory.setDaemon(true);
+        rebuilder = Executors.newSingleThreadScheduledExecutor(threadFactory);
+        rebuilder.scheduleWithFixedDelay(this::rebuild, 0, properties.rebuildInterval().toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (rebuilder != null) {
+            rebuilder.shutdownNow();
+        }
+    }
+
+    // Ids of the matching users, best first; empty until the first build has finished
+    public Optional<List<Long>> search(String query, int offset, int limit) {
+        Snapshot current = snapshot;
+        if (current.segment() == null) {
+            return Optional.empty();
+        }
+        List<String> tokens = UserSearchTerms.queryTokens(query);
+        int wanted = offset + limit;
+        List<UserSearchSegment.Hit> hits = new ArrayList<>(current.segment().search(tokens, wanted));
+        hits.addAll(current.delta().search(tokens, wanted));
+        hits.sort(UserSearchSegment.RANKING);
+        return Optional.of(hits.stream().skip(offset).limit(limit).map(UserSearchSegment.Hit::userId).toList());
+    }
+
+    public boolean isReady() {
+        return snapshot.segment() != null;
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public synchronized void onUserCommitted(UserChangedEvent event) {
+        if (!properties.enabled() || event.id() == null) {
+            return;
+        }
+        UserEntity user = event.user();
+        List<String> terms = user == null ? null
+                : UserSearchTerms.of(user.getFirstName(), user.getLastName(), user.getEmail(), user.getPhoneNumber());
+        Snapshot current = snapshot;
+        current.delta().put(event.id(), terms, System.nanoTime());
+        if (current.segment() != null) {
+            current.segment().markStale(event.id());
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        if (!properties.enabled()) {
+            return;
+        }
+        Gauge.builder("users.search.index.docs", this,
+                        index -> index.snapshot.segment() == null ? 0 : index.snapshot.segment().docCount())
+                .description("Users in the search segment")
+                .register(registry);
+        Gauge.builder("users.search.index.delta", this, index -> index.snapshot.delta().size())
+                .description("Users changed since the search segment was built")
+                .register(registry);
+        Gauge.builder("users.search.index.size", this,
+                        index -> index.snapshot.segment() == null ? 0 : index.snapshot.segment().sizeInBytes())
+                .description("Memory held by the search segment's arrays")
+                .baseUnit("bytes")
+                .register(registry);
+        FunctionCounter.builder("users.search.index.rebuild.failures", rebuildFailures, AtomicLong::get)
+                .register(registry);
+    }
+
+    void rebuild() {
+        long startedAt = System.nanoTime();
+        try {
+            UserSearchSegment segment = shards.enabled() ? buildFromShards() : readOnlyTransaction.execute(status -> {
+                try (var users = repository.streamAll()) {
+                    return UserSearchSegment.build(users);
+                }
+            });
+            synchronized (this) {
+                UserSearchDelta delta = snapshot.delta().since(startedAt - DELTA_OVERLAP.toNanos());
+                delta.userIds().forEach(segment::markStale);
+                snapshot = new Snapshot(segment, delta);
+            }
+        } catch (RuntimeException e) {
+            // keep serving the previous segment, the next run tries again
+            rebuildFailures.incrementAndGet();
+        }
+    }
+
+    // The segment finds docs by binary search over their ids, so the shards' rows are sorted before the build
+    private UserSearchSegment buildFromShards() {
+        List<UserView> users = new ArrayList<>();
+        shards.forEachShard(() -> {
+            try (var rows = repository.streamAll()) {
+                rows.forEach(users::add);
+            }
+        });
+        users.sort(Comparator.comparingLong(UserView::id));
+        return UserSearchSegment.build(users.stream());
+    }
+}
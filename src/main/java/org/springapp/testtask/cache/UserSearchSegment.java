@@ -0,0 +1,311 @@
+package org.springapp.testtask.cache;
+
+import org.springapp.testtask.dto.UserView;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.stream.Stream;
+
+// Immutable inverted index over a snapshot of the users table. The sorted terms live as UTF-8 in one byte array
+// and the posting lists as doc numbers in one int array, so millions of users cost a handful of arrays rather
+// than millions of objects. Docs are numbered in id order; users changed after the snapshot get a stale bit.
+public final class UserSearchSegment {
+
+    public record Hit(long userId, float score) {
+    }
+
+    // Best first; equal scores keep the older user first so pages are stable
+    static final Comparator<Hit> RANKING = Comparator.comparingDouble(Hit::score).reversed()
+            .thenComparingLong(Hit::userId);
+
+    private final byte[] termBytes;
+    private final int[] termOffsets;
+    private final int[] postingOffsets;
+    private final int[] postings;
+    private final long[] userIds;
+    private final AtomicLongArray stale;
+
+    private UserSearchSegment(byte[] termBytes, int[] termOffsets, int[] postingOffsets, int[] postings, long[] userIds) {
+        this.termBytes = termBytes;
+        this.termOffsets = termOffsets;
+        this.postingOffsets = postingOffsets;
+        this.postings = postings;
+        this.userIds = userIds;
+        this.stale = new AtomicLongArray(Math.max(1, (userIds.length + 63) >>> 6));
+    }
+
+    // users must come in ascending id order, as UsersRepository.streamAll returns them
+    public static UserSearchSegment build(Stream<UserView> users) {
+        Map<String, IntList> termDocs = new HashMap<>();
+        LongList ids = new LongList();
+        users.forEach(user -> {
+            int doc = ids.size;
+            ids.add(user.id());
+            for (String term : UserSearchTerms.of(user.firstName(), user.lastName(), user.email(), user.phoneNumber())) {
+                termDocs.computeIfAbsent(term, t -> new IntList()).add(doc);
+            }
+        });
+
+        record Term(byte[] bytes, IntList docs) {
+        }
+        List<Term> terms = new ArrayList<>(termDocs.size());
+        termDocs.forEach((term, docs) -> terms.add(new Term(term.getBytes(StandardCharsets.UTF_8), docs)));
+        termDocs.clear();
+        terms.sort((a, b) -> Arrays.compareUnsigned(a.bytes(), b.bytes()));
+
+        int[] termOffsets = new int[terms.size() + 1];
+        int[] postingOffsets = new int[terms.size() + 1];
+        for (int i = 0; i < terms.size(); i++) {
+            termOffsets[i + 1] = termOffsets[i] + terms.get(i).bytes().length;
+            postingOffsets[i + 1] = postingOffsets[i] + terms.get(i).docs().size;
+        }
+        byte[] termBytes = new byte[termOffsets[terms.size()]];
+        int[] postings = new int[postingOffsets[terms.size()]];
+        for (int i = 0; i < terms.size(); i++) {
+            Term term = terms.get(i);
+            System.arraycopy(term.bytes(), 0, termBytes, termOffsets[i], term.bytes().length);
+            System.arraycopy(term.docs().values, 0, postings, postingOffsets[i], term.docs().size);
+        }
+        return new UserSearchSegment(termBytes, termOffsets, postingOffsets, postings, Arrays.copyOf(ids.values, ids.size));
+    }
+
+    public List<Hit> search(String query, int wanted) {
+        return search(UserSearchTerms.queryTokens(query), wanted);
+    }
+
+    public int docCount() {
+        return userIds.length;
+    }
+
+    public long sizeInBytes() {
+        return termBytes.length + 4L * (termOffsets.length + postingOffsets.length + postings.length)
+                + 8L * (userIds.length + stale.length());
+    }
+
+    // Every token has to match some field by prefix; a user's score adds up, per token, its best
+    // field weight times how much of the matched word the token covers, so whole words rank first
+    List<Hit> search(List<String> tokens, int wanted) {
+        if (tokens.isEmpty() || userIds.length == 0 || wanted <= 0) {
+            return List.of();
+        }
+        List<Range[]> ranges = new ArrayList<>(tokens.size());
+        for (String token : tokens) {
+            ranges.add(ranges(token));
+        }
+        ranges.sort(Comparator.comparingLong(this::postingCount));
+
+        Range[] first = ranges.get(0);
+        DocScores scores = new DocScores(postingCount(first));
+        for (Range range : first) {
+            for (int term = range.start(); term < range.end(); term++) {
+                float score = score(range, term);
+                for (int p = postingOffsets[term]; p < postingOffsets[term + 1]; p++) {
+                    if (!isStale(postings[p])) {
+                        scores.max(postings[p], score);
+                    }
+                }
+            }
+        }
+        for (int i = 1; i < ranges.size() && scores.size() > 0; i++) {
+            float[] best = new float[scores.capacity()];
+            for (Range range : ranges.get(i)) {
+                for (int term = range.start(); term < range.end(); term++) {
+                    float score = score(range, term);
+                    for (int p = postingOffsets[term]; p < postingOffsets[term + 1]; p++) {
+                        int slot = scores.slot(postings[p]);
+                        if (slot >= 0 && best[slot] < score) {
+                            best[slot] = score;
+                        }
+                    }
+                }
+            }
+            scores.add(best);
+        }
+        return scores.top(wanted, userIds);
+    }
+
+    void markStale(long userId) {
+        int doc = Arrays.binarySearch(userIds, userId);
+        if (doc >= 0) {
+            int index = doc >>> 6;
+            long mask = 1L << doc;
+            long current;
+            do {
+                current = stale.get(index);
+            } while ((current & mask) == 0 && !stale.compareAndSet(index, current, current | mask));
+        }
+    }
+
+    private boolean isStale(int doc) {
+        return (stale.get(doc >>> 6) & (1L << doc)) != 0;
+    }
+
+    private Range[] ranges(String token) {
+        UserSearchTerms.Field[] fields = UserSearchTerms.Field.values();
+        Range[] ranges = new Range[fields.length];
+        for (int i = 0; i < fields.length; i++) {
+            byte[] prefix = (fields[i].tag + token).getBytes(StandardCharsets.UTF_8);
+            byte[] end = Arrays.copyOf(prefix, prefix.length + 1);
+            // 0xFF never occurs in UTF-8, so it sorts after every term that starts with the prefix
+            end[prefix.length] = (byte) 0xFF;
+            ranges[i] = new Range(lowerBound(prefix), lowerBound(end), token.codePointCount(0, token.length()), fields[i].weight);
+        }
+        return ranges;
+    }
+
+    private long postingCount(Range[] ranges) {
+        long count = 0;
+        for (Range range : ranges) {
+            count += postingOffsets[range.end()] - postingOffsets[range.start()];
+        }
+        return count;
+    }
+
+    // Lengths are in code points, as UserSearchDelta counts them, so a word scores the same in either:
+    // the word's UTF-8 lead bytes less its field tag. Byte lengths would score "strauß" lower here
+    private float score(Range range, int term) {
+        int wordLength = -1;
+        for (int b = termOffsets[term]; b < termOffsets[term + 1]; b++) {
+            if ((termBytes[b] & 0xC0) != 0x80) {
+                wordLength++;
+            }
+        }
+        return range.weight() * range.prefixLength() / wordLength;
+    }
+
+    private int lowerBound(byte[] key) {
+        int low = 0;
+        int high = termOffsets.length - 1;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (Arrays.compareUnsigned(termBytes, termOffsets[mid], termOffsets[mid + 1], key, 0, key.length) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private record Range(int start, int end, int prefixLength, float weight) {
+    }
+
+    // Open addressing doc -> score map sized from the most selective token, so no boxing on the hot path
+    private static final class DocScores {
+        private static final float DROPPED = -1;
+
+        private final int[] docs;
+        private final float[] scores;
+        private final int mask;
+        private int size;
+
+        DocScores(long expected) {
+            int capacity = Integer.highestOneBit((int) Math.min(1 << 29, Math.max(16, expected * 2)) - 1) << 1;
+            docs = new int[capacity];
+            scores = new float[capacity];
+            mask = capacity - 1;
+        }
+
+        int size() {
+            return size;
+        }
+
+        int capacity() {
+            return docs.length;
+        }
+
+        void max(int doc, float score) {
+            int slot = mix(doc) & mask;
+            while (docs[slot] != 0 && docs[slot] != doc + 1) {
+                slot = (slot + 1) & mask;
+            }
+            if (docs[slot] == 0) {
+                docs[slot] = doc + 1;
+                scores[slot] = score;
+                size++;
+            } else if (scores[slot] < score) {
+                scores[slot] = score;
+            }
+        }
+
+        int slot(int doc) {
+            int slot = mix(doc) & mask;
+            while (docs[slot] != 0) {
+                if (docs[slot] == doc + 1) {
+                    return scores[slot] == DROPPED ? -1 : slot;
+                }
+                slot = (slot + 1) & mask;
+            }
+            return -1;
+        }
+
+        // Docs the token did not match are dropped, the rest add the token's score
+        void add(float[] best) {
+            for (int slot = 0; slot < docs.length; slot++) {
+                if (docs[slot] == 0 || scores[slot] == DROPPED) {
+                    continue;
+                }
+                if (best[slot] == 0) {
+                    scores[slot] = DROPPED;
+                    size--;
+                } else {
+                    scores[slot] += best[slot];
+                }
+            }
+        }
+
+        List<Hit> top(int wanted, long[] userIds) {
+            PriorityQueue<Hit> top = new PriorityQueue<>(wanted + 1, RANKING.reversed());
+            for (int slot = 0; slot < docs.length; slot++) {
+                if (docs[slot] == 0 || scores[slot] == DROPPED) {
+                    continue;
+                }
+                Hit hit = new Hit(userIds[docs[slot] - 1], scores[slot]);
+                if (top.size() < wanted) {
+                    top.add(hit);
+                } else if (RANKING.compare(hit, top.peek()) < 0) {
+                    top.poll();
+                    top.add(hit);
+                }
+            }
+            List<Hit> hits = new ArrayList<>(top);
+            hits.sort(RANKING);
+            return hits;
+        }
+
+        private static int mix(int doc) {
+            return doc * 0x9E3779B9;
+        }
+    }
+
+    private static final class IntList {
+        int[] values = new int[2];
+        int size;
+
+        void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+    }
+
+    private static final class LongList {
+        long[] values = new long[1024];
+        int size;
+
+        void add(long value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+    }
+}
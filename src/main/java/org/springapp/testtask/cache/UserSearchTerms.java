@@ -0,0 +1,121 @@
+package org.springapp.testtask.cache;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+// Index terms are a one-letter field tag followed by a normalized word, so a single sorted dictionary
+// serves every field and a prefix query on one field is one contiguous range of it
+final class UserSearchTerms {
+
+    static final int MIN_PREFIX_LENGTH = 2;
+    static final int MAX_QUERY_TOKENS = 8;
+
+    private static final Pattern SEPARATORS = Pattern.compile("[^\\p{L}\\p{Nd}]+");
+    private static final Pattern MARKS = Pattern.compile("\\p{M}+");
+
+    enum Field {
+        FIRST_NAME('f', 1.0f),
+        LAST_NAME('l', 1.0f),
+        EMAIL('e', 0.8f),
+        PHONE('p', 0.6f);
+
+        final char tag;
+        final float weight;
+
+        Field(char tag, float weight) {
+            this.tag = tag;
+            this.weight = weight;
+        }
+    }
+
+    private UserSearchTerms() {
+    }
+
+    static List<String> of(String firstName, String lastName, String email, String phoneNumber) {
+        Set<String> terms = new LinkedHashSet<>();
+        words(firstName).forEach(word -> terms.add(Field.FIRST_NAME.tag + word));
+        words(lastName).forEach(word -> terms.add(Field.LAST_NAME.tag + word));
+        emailWords(email).forEach(word -> terms.add(Field.EMAIL.tag + word));
+        String digits = digits(phoneNumber);
+        if (!digits.isEmpty()) {
+            terms.add(Field.PHONE.tag + digits);
+        }
+        return List.copyOf(terms);
+    }
+
+    // Runs of digit-only words are joined, so "555 12" and "555-12" both find the phone 555-1234
+    static List<String> queryTokens(String query) {
+        Set<String> tokens = new LinkedHashSet<>();
+        StringBuilder digits = new StringBuilder();
+        for (String word : words(query)) {
+            if (digits(word).length() == word.length()) {
+                digits.append(word);
+                continue;
+            }
+            if (!digits.isEmpty()) {
+                tokens.add(digits.toString());
+                digits.setLength(0);
+            }
+            tokens.add(word);
+        }
+        if (!digits.isEmpty()) {
+            tokens.add(digits.toString());
+        }
+        return tokens.stream().filter(token -> token.length() >= MIN_PREFIX_LENGTH).limit(MAX_QUERY_TOKENS).toList();
+    }
+
+    // The local part's words and the domain without its last label: "com" would match nearly everyone
+    private static List<String> emailWords(String email) {
+        if (email == null) {
+            return List.of();
+        }
+        int at = email.lastIndexOf('@');
+        String domain = at < 0 ? "" : email.substring(at + 1);
+        int lastDot = domain.lastIndexOf('.');
+        List<String> words = new ArrayList<>(words(at < 0 ? email : email.substring(0, at)));
+        words.addAll(words(lastDot > 0 ? domain.substring(0, lastDot) : domain));
+        return words;
+    }
+
+    private static List<String> words(String text) {
+        if (text == null || text.isBlank()) {
+            return List.of();
+        }
+        List<String> words = new ArrayList<>();
+        for (String word : SEPARATORS.split(normalize(text))) {
+            if (!word.isEmpty()) {
+                words.add(word);
+            }
+        }
+        return words;
+    }
+
+    // Lower case without accents, so "José" is found by "jose"
+    private static String normalize(String text) {
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) > 0x7F) {
+                return MARKS.matcher(Normalizer.normalize(text, Normalizer.Form.NFD)).replaceAll("").toLowerCase(Locale.ROOT);
+            }
+        }
+        return text.toLowerCase(Locale.ROOT);
+    }
+
+    private static String digits(String text) {
+        if (text == null) {
+            return "";
+        }
+        StringBuilder digits = new StringBuilder(text.length());
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c >= '0' && c <= '9') {
+                digits.append(c);
+            }
+        }
+        return digits.toString();
+    }
+}
@@ -0,0 +1,13 @@
+package org.springapp.testtask.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+@ConfigurationProperties("users.email-index")
+public record EmailIndexProperties(@DefaultValue("false") boolean enabled,
+                                   @DefaultValue("10000000") long expectedInsertions,
+                                   @DefaultValue("0.01") double falsePositiveRate,
+                                   @DefaultValue("6h") Duration rebuildInterval) {
+}
@@ -0,0 +1,8 @@
+package org.springapp.testtask.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+@ConfigurationProperties("users.slow-query-log")
+public record SlowQueryLogProperties(@DefaultValue("0.1") double sampleRate) {
+}
@@ -0,0 +1,133 @@
+package org.springapp.testtask.config;
+
+import org.springapp.testtask.dto.BatchItemResult;
+import org.springapp.testtask.dto.BatchResult;
+import org.springapp.testtask.dto.UserSummary;
+import org.springapp.testtask.dto.UserView;
+import org.springapp.testtask.entity.UserEntity;
+import org.springapp.testtask.proto.User;
+import org.springapp.testtask.proto.Users;
+
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+// Between the /users bodies and the messages protoc generates from src/main/proto/users.proto
+public final class UserMessages {
+
+    private UserMessages() {
+    }
+
+    // A UserEntity, UserView, UserSummary or ?fields= row
+    public static User toMessage(Object user) {
+        if (user instanceof UserView view) {
+            return toMessage(view.id(), view.firstName(), view.lastName(), view.email(), view.dateOfBirth(),
+                    view.address(), view.phoneNumber());
+        } else if (user instanceof UserEntity entity) {
+            return toMessage(entity.getId(), entity.getFirstName(), entity.getLastName(), entity.getEmail(),
+                    entity.getDateOfBirth(), entity.getAddress(), entity.getPhoneNumber());
+        } else if (user instanceof UserSummary summary) {
+            return toMessage(summary.id(), summary.firstName(), summary.lastName(), null, summary.dateOfBirth(), null, null);
+        } else if (user instanceof Map<?, ?> fields) {
+            return toMessage((Number) fields.get("id"), (String) fields.get("firstName"), (String) fields.get("lastName"),
+                    (String) fields.get("email"), (java.util.Date) fields.get("dateOfBirth"), (String) fields.get("address"),
+                    (String) fields.get("phoneNumber"));
+        }
+        throw new IllegalArgumentException("No protobuf message for " + user.getClass().getName());
+    }
+
+    public static Users toMessage(List<?> users) {
+        Users.Builder message = Users.newBuilder();
+        for (Object user : users) {
+            message.addUsers(toMessage(user));
+        }
+        return message.build();
+    }
+
+    public static org.springapp.testtask.proto.BatchResult toMessage(BatchResult result) {
+        org.springapp.testtask.proto.BatchResult.Builder message = org.springapp.testtask.proto.BatchResult.newBuilder()
+                .setAccepted(result.accepted())
+                .setRejected(result.rejected());
+        for (BatchItemResult item : result.items()) {
+            org.springapp.testtask.proto.BatchItemResult.Builder itemMessage = org.springapp.testtask.proto.BatchItemResult.newBuilder()
+                    .setIndex(item.index())
+                    .setStatus(org.springapp.testtask.proto.BatchItemResult.Status.valueOf(item.status().name()));
+            if (item.id() != null) {
+                itemMessage.setId(item.id());
+            }
+            if (item.error() != null) {
+                itemMessage.setError(item.error());
+            }
+            message.addItems(itemMessage);
+        }
+        return message.build();
+    }
+
+    // Fields the message leaves out stay null
+    public static UserEntity fromMessage(User message) {
+        UserEntity user = new UserEntity();
+        if (message.hasId()) {
+            user.setId(message.getId());
+        }
+        if (message.hasFirstName()) {
+            user.setFirstName(message.getFirstName());
+        }
+        if (message.hasLastName()) {
+            user.setLastName(message.getLastName());
+        }
+        if (message.hasEmail()) {
+            user.setEmail(message.getEmail());
+        }
+        if (message.hasDateOfBirth()) {
+            user.setDateOfBirth(Date.valueOf(LocalDate.ofEpochDay(message.getDateOfBirth())));
+        }
+        if (message.hasAddress()) {
+            user.setAddress(message.getAddress());
+        }
+        if (message.hasPhoneNumber()) {
+            user.setPhoneNumber(message.getPhoneNumber());
+        }
+        return user;
+    }
+
+    public static List<UserEntity> fromMessage(Users message) {
+        List<UserEntity> users = new ArrayList<>(message.getUsersCount());
+        for (User user : message.getUsersList()) {
+            users.add(fromMessage(user));
+        }
+        return users;
+    }
+
+    private static User toMessage(Number id, String firstName, String lastName, String email,
+                                  java.util.Date dateOfBirth, String address, String phoneNumber) {
+        User.Builder message = User.newBuilder();
+        if (id != null) {
+            message.setId(id.longValue());
+        }
+        if (firstName != null) {
+            message.setFirstName(firstName);
+        }
+        if (lastName != null) {
+            message.setLastName(lastName);
+        }
+        if (email != null) {
+            message.setEmail(email);
+        }
+        if (dateOfBirth != null) {
+            message.setDateOfBirth((int) toLocalDate(dateOfBirth).toEpochDay());
+        }
+        if (address != null) {
+            message.setAddress(address);
+        }
+        if (phoneNumber != null) {
+            message.setPhoneNumber(phoneNumber);
+        }
+        return message.build();
+    }
+
+    private static LocalDate toLocalDate(java.util.Date date) {
+        return date instanceof Date sqlDate ? sqlDate.toLocalDate() : new Date(date.getTime()).toLocalDate();
+    }
+}
@@ -0,0 +1,11 @@
+package org.springapp.testtask.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+@ConfigurationProperties("users.analytics")
+public record UsersAnalyticsProperties(@DefaultValue("true") boolean enabled,
+                                       @DefaultValue("1h") Duration rebuildInterval) {
+}
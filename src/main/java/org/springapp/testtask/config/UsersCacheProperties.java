@@ -0,0 +1,12 @@
+package org.springapp.testtask.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+@ConfigurationProperties("users.cache")
+public record UsersCacheProperties(@DefaultValue("10000") long maximumSize,
+                                   @DefaultValue("10m") Duration ttl,
+                                   @DefaultValue("30s") Duration negativeTtl) {
+}
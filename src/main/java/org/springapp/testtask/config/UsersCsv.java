@@ -0,0 +1,31 @@
+package org.springapp.testtask.config;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.dataformat.csv.CsvMapper;
+import com.fasterxml.jackson.dataformat.csv.CsvSchema;
+import org.springapp.testtask.entity.UserEntity;
+
+// Not a bean on purpose: CsvMapper is an ObjectMapper, and registering one would make Boot's JSON mapper back off
+public final class UsersCsv {
+
+    public static final String MEDIA_TYPE_VALUE = "text/csv";
+
+    private static final CsvMapper MAPPER = CsvMapper.builder()
+            .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES)
+            .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+            .build();
+
+    private UsersCsv() {
+    }
+
+    public static CsvMapper mapper() {
+        return MAPPER;
+    }
+
+    public static CsvSchema schema() {
+        return MAPPER.schemaFor(UserEntity.class)
+                .sortedBy("id", "firstName", "lastName", "email", "dateOfBirth", "address", "phoneNumber")
+                .withHeader();
+    }
+}
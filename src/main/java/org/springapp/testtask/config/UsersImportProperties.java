@@ -0,0 +1,18 @@
+package org.springapp.testtask.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+// parallelism 0 means one validation thread per available processor
+@ConfigurationProperties("users.import")
+public record UsersImportProperties(@DefaultValue("500") int chunkSize,
+                                    @DefaultValue("0") int parallelism,
+                                    @DefaultValue("1") int concurrentJobs,
+                                    @DefaultValue("1h") Duration retention) {
+
+    public int effectiveParallelism() {
+        return parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+    }
+}
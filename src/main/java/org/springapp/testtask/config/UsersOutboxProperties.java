@@ -0,0 +1,23 @@
+package org.springapp.testtask.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+// Committed rows are numbered every poll-interval, or right away after a local commit, batch-size rows at a time.
+// Rows older than compact-after are dropped when a newer change of the same user exists; rows older than
+// retention are dropped outright, and offsets before them answer 410. max-subscribers bounds the open
+// SSE streams and waiting long polls together.
+@ConfigurationProperties("users.outbox")
+public record UsersOutboxProperties(@DefaultValue("true") boolean enabled,
+                                    @DefaultValue("200ms") Duration pollInterval,
+                                    @DefaultValue("500") int batchSize,
+                                    @DefaultValue("256") int maxSubscribers,
+                                    @DefaultValue("4") int deliveryThreads,
+                                    @DefaultValue("60s") Duration maxWait,
+                                    @DefaultValue("15s") Duration heartbeatInterval,
+                                    @DefaultValue("1h") Duration compactAfter,
+                                    @DefaultValue("7d") Duration retention,
+                                    @DefaultValue("1m") Duration pruneInterval) {
+}
@@ -0,0 +1,26 @@
+package org.springapp.testtask.config;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.util.List;
+
+@Configuration(proxyBeanMethods = false)
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+public class UsersProtobufConfiguration {
+
+    @Bean
+    public WebMvcConfigurer usersProtobufRegistration() {
+        return new WebMvcConfigurer() {
+            @Override
+            public void extendMessageConverters(List<HttpMessageConverter<?>> converters) {
+                // Last, not as a converter bean which Boot puts first: clients sending Accept: */* keep getting JSON,
+                // protobuf only answers an explicit Accept: application/x-protobuf
+                converters.add(new UsersProtobufHttpMessageConverter());
+            }
+        };
+    }
+}
@@ -0,0 +1,113 @@
+package org.springapp.testtask.config;
+
+import com.google.protobuf.Message;
+import org.springapp.testtask.dto.BatchResult;
+import org.springapp.testtask.dto.UserSummary;
+import org.springapp.testtask.dto.UserView;
+import org.springapp.testtask.entity.UserEntity;
+import org.springapp.testtask.proto.User;
+import org.springapp.testtask.proto.Users;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.GenericHttpMessageConverter;
+import org.springframework.http.converter.HttpMessageNotWritableException;
+import org.springframework.http.converter.protobuf.ProtobufHttpMessageConverter;
+
+import java.io.IOException;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.List;
+import java.util.Set;
+
+// The /users bodies that have a message in users.proto: users, lists of users and batch results out,
+// a user or a batch of users in. Anything else (stats, change feed, errors) stays JSON.
+// Controllers keep returning their own types; they are mapped by UserMessages and the wire format is
+// left to Spring's ProtobufHttpMessageConverter, which only handles Message types itself.
+public class UsersProtobufHttpMessageConverter implements GenericHttpMessageConverter<Object> {
+
+    private static final Set<Class<?>> USER_TYPES = Set.of(UserEntity.class, UserView.class, UserSummary.class);
+    private static final List<MediaType> MEDIA_TYPES = List.of(ProtobufHttpMessageConverter.PROTOBUF);
+
+    private final ProtobufHttpMessageConverter protobuf = new ProtobufHttpMessageConverter();
+
+    @Override
+    public List<MediaType> getSupportedMediaTypes() {
+        return MEDIA_TYPES;
+    }
+
+    // Asked with the raw class once the generic canWrite has said yes, so a List has to be let through here
+    @Override
+    public List<MediaType> getSupportedMediaTypes(Class<?> clazz) {
+        return USER_TYPES.contains(clazz) || clazz == BatchResult.class || List.class.isAssignableFrom(clazz)
+                ? MEDIA_TYPES : List.of();
+    }
+
+    @Override
+    public boolean canRead(Class<?> clazz, MediaType mediaType) {
+        return canRead(clazz, null, mediaType);
+    }
+
+    // The class alone can't tell a List<UserView> from a List<BirthDateBucket>, the generic canRead and canWrite do
+    @Override
+    public boolean canRead(Type type, Class<?> contextClass, MediaType mediaType) {
+        return (mediaType == null || ProtobufHttpMessageConverter.PROTOBUF.includes(mediaType)) && (type == UserEntity.class || isListOf(type, Set.of(UserEntity.class)));
+    }
+
+    @Override
+    public boolean canWrite(Class<?> clazz, MediaType mediaType) {
+        return canWrite(null, clazz, mediaType);
+    }
+
+    @Override
+    public boolean canWrite(Type type, Class<?> clazz, MediaType mediaType) {
+        if (mediaType != null && !ProtobufHttpMessageConverter.PROTOBUF.isCompatibleWith(mediaType)) {
+            return false;
+        }
+        if (List.class.isAssignableFrom(clazz)) {
+            // List<?> is a page of UserViews or of ?fields= rows, MVC resolves it to List<Object>
+            return isListOf(type, USER_TYPES) || isListOf(type, Set.of(Object.class));
+        }
+        return USER_TYPES.contains(clazz) || clazz == BatchResult.class;
+    }
+
+    @Override
+    public Object read(Type type, Class<?> contextClass, HttpInputMessage inputMessage) throws IOException {
+        return type == UserEntity.class
+                ? UserMessages.fromMessage((User) protobuf.read(User.class, inputMessage))
+                : UserMessages.fromMessage((Users) protobuf.read(Users.class, inputMessage));
+    }
+
+    @Override
+    public Object read(Class<?> clazz, HttpInputMessage inputMessage) throws IOException {
+        return read(clazz, null, inputMessage);
+    }
+
+    @Override
+    public void write(Object body, Type type, MediaType contentType, HttpOutputMessage outputMessage) throws IOException {
+        Message message;
+        try {
+            if (body instanceof List<?> users) {
+                message = UserMessages.toMessage(users);
+            } else if (body instanceof BatchResult result) {
+                message = UserMessages.toMessage(result);
+            } else {
+                message = UserMessages.toMessage(body);
+            }
+        } catch (IllegalArgumentException | ClassCastException e) {
+            throw new HttpMessageNotWritableException(e.getMessage(), e);
+        }
+        protobuf.write(message, contentType, outputMessage);
+    }
+
+    @Override
+    public void write(Object body, MediaType contentType, HttpOutputMessage outputMessage) throws IOException {
+        write(body, null, contentType, outputMessage);
+    }
+
+    private static boolean isListOf(Type type, Set<Class<?>> elementTypes) {
+        return type instanceof ParameterizedType listType
+                && listType.getRawType() instanceof Class<?> rawType && List.class.isAssignableFrom(rawType)
+                && listType.getActualTypeArguments()[0] instanceof Class<?> elementType && elementTypes.contains(elementType);
+    }
+}
@@ -0,0 +1,26 @@
+package org.springapp.testtask.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.util.Map;
+
+// Every client has one token bucket of capacity tokens, refilled at refill-per-second; a request takes its
+// endpoint's cost from it. Clients are told apart by client-header when set (behind a gateway that sets it),
+// otherwise by remote address. Independently, at most max-in-flight requests run at once, and at most
+// max-concurrent per endpoint. Endpoints are keyed by controller and handler method,
+// e.g. endpoints[UsersController.getAllUsers].cost=10; a key that matches no handler fails the startup.
+@ConfigurationProperties("users.rate-limit")
+public record UsersRateLimitProperties(@DefaultValue("false") boolean enabled,
+                                       @DefaultValue("100") int capacity,
+                                       @DefaultValue("50") double refillPerSecond,
+                                       String clientHeader,
+                                       @DefaultValue("100000") int maxClients,
+                                       @DefaultValue("64") int maxInFlight,
+                                       @DefaultValue("16") int maxConcurrent,
+                                       @DefaultValue Map<String, Endpoint> endpoints) {
+
+    // max-concurrent defaults to the top-level one
+    public record Endpoint(@DefaultValue("1") int cost, Integer maxConcurrent) {
+    }
+}
@@ -0,0 +1,24 @@
+package org.springapp.testtask.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+import java.util.List;
+
+// A replica serves reads only while its last check (every check-interval) saw a lag of at most max-lag.
+// lag-query defaults to MySQL 8's SHOW REPLICA STATUS; any query whose first row has the lag in seconds,
+// in a Seconds_Behind_Source column or else the first one, works too. No row at all counts as no lag.
+@ConfigurationProperties("users.replicas")
+public record UsersReplicaProperties(@DefaultValue("false") boolean enabled,
+                                     @DefaultValue List<Instance> instances,
+                                     @DefaultValue("5s") Duration maxLag,
+                                     @DefaultValue("2s") Duration checkInterval,
+                                     @DefaultValue("SHOW REPLICA STATUS") String lagQuery,
+                                     @DefaultValue("1s") Duration connectionTimeout,
+                                     @DefaultValue("10s") Duration stickyWindow) {
+
+    // username and password default to spring.datasource's
+    public record Instance(String url, String username, String password, @DefaultValue("10") int maximumPoolSize) {
+    }
+}
@@ -0,0 +1,74 @@
+package org.springapp.testtask.config;
+
+import org.springapp.testtask.dto.AgeBucket;
+import org.springapp.testtask.dto.BatchItemResult;
+import org.springapp.testtask.dto.BatchResult;
+import org.springapp.testtask.dto.BirthDateBucket;
+import org.springapp.testtask.dto.ImportJobStatus;
+import org.springapp.testtask.dto.PendingUserStatus;
+import org.springapp.testtask.dto.UserChange;
+import org.springapp.testtask.dto.UserBirthDate;
+import org.springapp.testtask.dto.UserChanges;
+import org.springapp.testtask.dto.UserCount;
+import org.springapp.testtask.dto.UserSummary;
+import org.springapp.testtask.dto.UserVersion;
+import org.springapp.testtask.dto.UserView;
+import org.springapp.testtask.entity.UserEntity;
+import org.springapp.testtask.entity.UserIdGenerator;
+import org.springapp.testtask.exception.AnalyticsUnavailableException;
+import org.springapp.testtask.exception.BatchSizeException;
+import org.springapp.testtask.exception.BirthdateRangeException;
+import org.springapp.testtask.exception.ChangeOffsetExpiredException;
+import org.springapp.testtask.exception.NoUserException;
+import org.springapp.testtask.exception.PreconditionFailedException;
+import org.springapp.testtask.exception.RateLimitExceededException;
+import org.springapp.testtask.exception.SearchUnavailableException;
+import org.springapp.testtask.exception.ServerBusyException;
+import org.springapp.testtask.exception.UnknownFieldException;
+import org.springapp.testtask.exception.UserCreatedException;
+import org.springapp.testtask.exception.UserYearsException;
+import org.springapp.testtask.exception.WriteQueueFullException;
+import org.springapp.testtask.proto.User;
+import org.springapp.testtask.proto.Users;
+import org.springframework.aot.hint.BindingReflectionHintsRegistrar;
+import org.springframework.aot.hint.MemberCategory;
+import org.springframework.aot.hint.RuntimeHints;
+import org.springframework.aot.hint.RuntimeHintsRegistrar;
+
+import java.util.List;
+
+// What AOT processing can't infer for the native image: controllers declare ResponseEntity<?> and List<?>,
+// projections are built by constructor reflection, and messages are read as a classpath resource
+public class UsersRuntimeHints implements RuntimeHintsRegistrar {
+
+    private static final List<Class<?>> JSON_TYPES = List.of(UserEntity.class, UserView.class, UserSummary.class,
+            UserVersion.class, BirthDateBucket.class, BatchResult.class, BatchItemResult.class, ImportJobStatus.class,
+            PendingUserStatus.class, UserChange.class, UserChanges.class, UserCount.class, AgeBucket.class);
+
+    private static final List<Class<? extends Exception>> EXCEPTIONS = List.of(AnalyticsUnavailableException.class,
+            BatchSizeException.class, BirthdateRangeException.class, ChangeOffsetExpiredException.class, NoUserException.class,
+            PreconditionFailedException.class, RateLimitExceededException.class, SearchUnavailableException.class,
+            ServerBusyException.class, UnknownFieldException.class, UserCreatedException.class, UserYearsException.class,
+            WriteQueueFullException.class);
+
+    @Override
+    public void registerHints(RuntimeHints hints, ClassLoader classLoader) {
+        new BindingReflectionHintsRegistrar().registerReflectionHints(hints.reflection(), JSON_TYPES.toArray(Class[]::new));
+        for (Class<?> type : List.of(UserEntity.class, UserView.class, UserSummary.class, UserVersion.class, BirthDateBucket.class,
+                UserBirthDate.class)) {
+            hints.reflection().registerType(type, MemberCategory.INVOKE_DECLARED_CONSTRUCTORS,
+                    MemberCategory.DECLARED_FIELDS, MemberCategory.INVOKE_PUBLIC_METHODS);
+        }
+        // Hibernate instantiates the id generator named by @GenericGenerator reflectively
+        hints.reflection().registerType(UserIdGenerator.class, MemberCategory.INVOKE_PUBLIC_CONSTRUCTORS);
+        // ProtobufHttpMessageConverter looks up the static newBuilder() of the message it reads
+        for (Class<?> message : List.of(User.class, Users.class)) {
+            hints.reflection().registerType(message, MemberCategory.INVOKE_PUBLIC_METHODS);
+        }
+        for (Class<? extends Exception> exception : EXCEPTIONS) {
+            hints.reflection().registerType(exception, MemberCategory.INVOKE_PUBLIC_CONSTRUCTORS, MemberCategory.INVOKE_PUBLIC_METHODS);
+            hints.serialization().registerType(exception);
+        }
+        hints.resources().registerPattern("constraints.properties");
+    }
+}
@@ -0,0 +1,12 @@
+package org.springapp.testtask.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+@ConfigurationProperties("users.search")
+public record UsersSearchProperties(@DefaultValue("true") boolean enabled,
+                                    @DefaultValue("1h") Duration rebuildInterval,
+                                    @DefaultValue("10000") int maxResultWindow) {
+}
@@ -0,0 +1,25 @@
+package org.springapp.testtask.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+import java.util.List;
+
+// users rows live in shards[n]; spring.datasource keeps what must stay global, the user_emails directory among it.
+// A new user's shard follows from its email, and the shard is part of the id, so nothing else needs to be looked up.
+// worker-id (0-63) must differ between instances. Page, range and stats reads ask every shard, fan-out-threads
+// at a time, and fail after query-timeout. An email reservation older than reservation-timeout whose user never
+// made it into a shard is taken over by the next writer.
+@ConfigurationProperties("users.sharding")
+public record UsersShardingProperties(@DefaultValue("false") boolean enabled,
+                                      @DefaultValue List<Instance> shards,
+                                      @DefaultValue("0") int workerId,
+                                      @DefaultValue("16") int fanOutThreads,
+                                      @DefaultValue("10s") Duration queryTimeout,
+                                      @DefaultValue("5m") Duration reservationTimeout) {
+
+    // username and password default to spring.datasource's
+    public record Instance(String url, String username, String password, @DefaultValue("10") int maximumPoolSize) {
+    }
+}
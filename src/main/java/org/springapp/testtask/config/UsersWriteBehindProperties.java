@@ -0,0 +1,16 @@
+package org.springapp.testtask.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+// max-depth bounds the users accepted but not yet written; past it POST /users answers 503
+@ConfigurationProperties("users.write-behind")
+public record UsersWriteBehindProperties(@DefaultValue("false") boolean enabled,
+                                         @DefaultValue("users-write-behind") Path directory,
+                                         @DefaultValue("10000") int maxDepth,
+                                         @DefaultValue("500") int batchSize,
+                                         @DefaultValue("1h") Duration retention) {
+}
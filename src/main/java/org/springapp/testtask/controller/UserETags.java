@@ -0,0 +1,52 @@
+package org.springapp.testtask.controller;
+
+import org.springapp.testtask.dto.VersionedUser;
+import org.springapp.testtask.entity.UserEntity;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+// Strong ETags: the version for a single user, a hash of the (id, version) pairs for a page of users.
+// Every update bumps the version and inserts or deletes change the ids, so any change to a page changes its tag.
+final class UserETags {
+
+    private UserETags() {
+    }
+
+    static String of(UserEntity user) {
+        return "\"" + user.getVersion() + "\"";
+    }
+
+    static String of(List<? extends VersionedUser> page) {
+        long hash = 0xCBF29CE484222325L;
+        for (VersionedUser user : page) {
+            hash = (hash ^ user.id()) * 0x100000001B3L;
+            hash = (hash ^ user.version()) * 0x100000001B3L;
+        }
+        return "\"" + page.size() + "-" + Long.toHexString(hash) + "\"";
+    }
+
+    // The versions If-Match lets through, or null for a missing If-Match or "*", which only ask for the user to exist.
+    // It is a list of tags compared strongly, so W/ tags and tags this server never issued match nothing.
+    static Set<Long> expectedVersions(String ifMatch) {
+        if (ifMatch == null || ifMatch.isBlank()) {
+            return null;
+        }
+        Set<Long> versions = new HashSet<>();
+        for (String element : ifMatch.split(",")) {
+            String tag = element.trim();
+            if (tag.equals("*")) {
+                return null;
+            }
+            if (tag.length() > 2 && tag.startsWith("\"") && tag.endsWith("\"")) {
+                try {
+                    versions.add(Long.parseLong(tag.substring(1, tag.length() - 1)));
+                } catch (NumberFormatException e) {
+                    // a page tag or another resource's, never this user's version
+                }
+            }
+        }
+        return versions;
+    }
+}
@@ -0,0 +1,34 @@
+package org.springapp.testtask.controller;
+
+import org.springapp.testtask.service.UserRules;
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
+
+import java.util.List;
+import java.util.Map;
+import java.util.function.ToLongFunction;
+
+// Keyset pages: a full page carries Link: <...?after=lastId&limit=n>; rel="next", a shorter one is the last page.
+// A client that follows the links until there is none has seen every user.
+final class UserPages {
+
+    private UserPages() {
+    }
+
+    static <T> HttpHeaders next(List<T> page, int limit, ToLongFunction<? super T> id) {
+        HttpHeaders headers = new HttpHeaders();
+        int pageSize = UserRules.pageSize(limit);
+        if (page.size() >= pageSize) {
+            String next = ServletUriComponentsBuilder.fromCurrentRequest()
+                    .replaceQueryParam("after", id.applyAsLong(page.get(page.size() - 1)))
+                    .replaceQueryParam("limit", pageSize)
+                    .toUriString();
+            headers.add(HttpHeaders.LINK, "<" + next + ">; rel=\"next\"");
+        }
+        return headers;
+    }
+
+    static long rowId(Map<String, Object> row) {
+        return ((Number) row.get("id")).longValue();
+    }
+}
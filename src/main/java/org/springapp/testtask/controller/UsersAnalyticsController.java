@@ -0,0 +1,47 @@
+package org.springapp.testtask.controller;
+
+import org.springapp.testtask.dto.AgeBucket;
+import org.springapp.testtask.dto.BirthDateBucket;
+import org.springapp.testtask.dto.UserCount;
+import org.springapp.testtask.exception.AnalyticsUnavailableException;
+import org.springapp.testtask.exception.BirthdateRangeException;
+import org.springapp.testtask.service.UsersAnalyticsService;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.sql.Date;
+import java.util.List;
+
+@RestController
+@RequestMapping("/users/analytics")
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+public class UsersAnalyticsController {
+
+    private final UsersAnalyticsService service;
+
+    public UsersAnalyticsController(UsersAnalyticsService service) {
+        this.service = service;
+    }
+
+    @GetMapping("/count")
+    public ResponseEntity<UserCount> countByBirthDateRange(@RequestParam("from") Date fromDate,
+                                                           @RequestParam("to") Date toDate)
+            throws BirthdateRangeException, AnalyticsUnavailableException {
+        return ResponseEntity.ok(new UserCount(service.countByBirthDateRange(fromDate, toDate)));
+    }
+
+    @GetMapping("/histogram")
+    public ResponseEntity<List<BirthDateBucket>> countByBirthDate(@RequestParam("from") Date fromDate,
+                                                                  @RequestParam("to") Date toDate,
+                                                                  @RequestParam(value = "groupBy", defaultValue = "YEAR") BirthDateBucket.Grouping grouping)
+            throws BirthdateRangeException, AnalyticsUnavailableException {
+        return ResponseEntity.ok(service.countByBirthDate(fromDate, toDate, grouping));
+    }
+
+    @GetMapping("/ages")
+    public ResponseEntity<List<AgeBucket>> countByAge(@RequestParam(value = "bounds", required = false) List<Integer> bounds)
+            throws BirthdateRangeException, AnalyticsUnavailableException {
+        return ResponseEntity.ok(service.countByAge(bounds == null ? UsersAnalyticsService.DEFAULT_AGE_BOUNDS : bounds));
+    }
+}
@@ -0,0 +1,86 @@
+package org.springapp.testtask.controller;
+
+import org.springapp.testtask.config.UsersOutboxProperties;
+import org.springapp.testtask.dto.UserChanges;
+import org.springapp.testtask.exception.ChangeOffsetExpiredException;
+import org.springapp.testtask.exception.ServerBusyException;
+import org.springapp.testtask.service.UserChangeFeed;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Incremental changes instead of re-reading GET /users. A consumer starts with GET /users/changes without since,
+// loads the users in full, then follows the changes from the offset it got. 410 means its offset was pruned
+// and it has to start over the same way.
+@RestController
+@RequestMapping("/users/changes")
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+@ConditionalOnProperty(prefix = "users.outbox", name = "enabled", havingValue = "true")
+public class UsersChangesController {
+
+    public static final int DEFAULT_BATCH_SIZE = 500;
+    public static final int DEFAULT_WAIT_SECONDS = 30;
+
+    private final UserChangeFeed feed;
+    private final UsersOutboxProperties properties;
+
+    public UsersChangesController(UserChangeFeed feed, UsersOutboxProperties properties) {
+        this.feed = feed;
+        this.properties = properties;
+    }
+
+    // Long poll: answers at once when there are changes after since, otherwise when the next ones commit
+    // or after wait seconds with none
+    @GetMapping
+    public DeferredResult<UserChanges> getChanges(@RequestParam(value = "since", required = false) Long since,
+                                                  @RequestParam(value = "limit", defaultValue = "" + DEFAULT_BATCH_SIZE) int limit,
+                                                  @RequestParam(value = "wait", defaultValue = "" + DEFAULT_WAIT_SECONDS) int waitSeconds)
+            throws ChangeOffsetExpiredException, ServerBusyException {
+        long wait = Math.min(TimeUnit.SECONDS.toMillis(Math.max(0, waitSeconds)), properties.maxWait().toMillis());
+        UserChanges changes = feed.read(since, limit);
+        if (since == null || !changes.changes().isEmpty() || wait == 0) {
+            DeferredResult<UserChanges> result = new DeferredResult<>();
+            result.setResult(changes);
+            return result;
+        }
+
+        DeferredResult<UserChanges> result = new DeferredResult<>(wait, () -> new UserChanges(List.of(), changes.next()));
+        UserChangeFeed.Subscription subscription = feed.subscribe(changes.next(), limit, result::setResult);
+        result.onCompletion(subscription::cancel);
+        return result;
+    }
+
+    // One "changes" event per batch, its id the offset after it, so a reconnecting EventSource resumes
+    // through Last-Event-ID. Comments keep idle connections open through proxies.
+    @GetMapping(produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamChanges(@RequestParam(value = "since", required = false) Long since,
+                                    @RequestHeader(value = "Last-Event-ID", required = false) Long lastEventId,
+                                    @RequestParam(value = "limit", defaultValue = "" + DEFAULT_BATCH_SIZE) int limit)
+            throws ChangeOffsetExpiredException, ServerBusyException {
+        long from = lastEventId != null ? lastEventId : since != null ? since : feed.position();
+        SseEmitter emitter = new SseEmitter();
+        UserChangeFeed.Subscription subscription = feed.subscribe(from, limit, new UserChangeFeed.Sink() {
+            @Override
+            public void send(UserChanges changes) throws IOException {
+                emitter.send(SseEmitter.event()
+                        .id(Long.toString(changes.next()))
+                        .name("changes")
+                        .data(changes.changes(), MediaType.APPLICATION_JSON));
+            }
+
+            @Override
+            public void heartbeat() throws IOException {
+                emitter.send(SseEmitter.event().comment(""));
+            }
+        });
+        emitter.onCompletion(subscription::cancel);
+        return emitter;
+    }
+}
@@ -1,57 +1,171 @@
 package org.springapp.testtask.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SequenceWriter;
+import org.springapp.testtask.dto.BatchResult;
+import org.springapp.testtask.dto.BirthDateBucket;
+import org.springapp.testtask.dto.PendingUserStatus;
+import org.springapp.testtask.dto.UserFields;
+import org.springapp.testtask.dto.UserSummary;
+import org.springapp.testtask.dto.UserView;
 import org.springapp.testtask.entity.UserEntity;
+import org.springapp.testtask.exception.BatchSizeException;
 import org.springapp.testtask.exception.BirthdateRangeException;
 import org.springapp.testtask.exception.NoUserException;
+import org.springapp.testtask.exception.PreconditionFailedException;
+import org.springapp.testtask.exception.UnknownFieldException;
 import org.springapp.testtask.exception.UserCreatedException;
 import org.springapp.testtask.exception.UserYearsException;
+import org.springapp.testtask.exception.WriteQueueFullException;
 import org.springapp.testtask.service.UsersService;
+import org.springapp.testtask.service.UsersWriteBehindService;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.sql.Date;
 import java.util.List;
+import java.util.Map;
 
 @RestController
 @RequestMapping("/users")
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
 public class UsersController {
 
     private final UsersService service;
+    private final ObjectMapper objectMapper;
+    private final ObjectProvider<UsersWriteBehindService> writeBehindService;
 
-    public UsersController(UsersService userService) {
+    public UsersController(UsersService userService, ObjectMapper objectMapper,
+                           ObjectProvider<UsersWriteBehindService> writeBehindService) {
         this.service = userService;
+        this.objectMapper = objectMapper;
+        this.writeBehindService = writeBehindService;
     }
 
+    // Pages of at most limit users by ascending id; follow the Link rel="next" header, or use the NDJSON stream below
     @GetMapping
-    public ResponseEntity<List<UserEntity>> getAllUsers() {
-        return ResponseEntity.ok(service.getAllUsers());
+    public ResponseEntity<List<?>> getAllUsers(@RequestParam(value = "after", defaultValue = "0") Long after,
+                                               @RequestParam(value = "limit", defaultValue = "" + UsersService.DEFAULT_PAGE_SIZE) int limit,
+                                               @RequestParam(value = "fields", required = false) String fields,
+                                               WebRequest request) throws UnknownFieldException {
+        if (fields == null) {
+            if (request.getHeader(HttpHeaders.IF_NONE_MATCH) != null
+                    && request.checkNotModified(UserETags.of(service.getUserVersions(after, limit)))) {
+                return null;
+            }
+            List<UserView> users = service.getAllUsers(after, limit);
+            return ResponseEntity.ok().headers(UserPages.next(users, limit, UserView::id)).eTag(UserETags.of(users)).body(users);
+        }
+        List<Map<String, Object>> rows = service.getUserFields(UserFields.parse(fields), after, limit);
+        return ResponseEntity.ok().headers(UserPages.next(rows, limit, UserPages::rowId)).body(rows);
     }
 
+    @GetMapping(produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamAllUsers() {
+        StreamingResponseBody body = out -> {
+            try (SequenceWriter writer = objectMapper.writer().withRootValueSeparator("\n").writeValues(out)) {
+                service.streamAllUsers(user -> {
+                    try {
+                        writer.write(user);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+                writer.flush();
+                out.write('\n');
+            }
+        };
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).body(body);
+    }
+
+    // A matching If-None-Match gets a 304 from the ETag alone, the cached user is never serialized
     @GetMapping("/{id}")
     public ResponseEntity<UserEntity> getUser(@PathVariable Long id) throws NoUserException {
-        return ResponseEntity.ok(service.getUser(id));
+        UserEntity user = service.getUser(id);
+        return ResponseEntity.ok().eTag(UserETags.of(user)).body(user);
     }
 
     @GetMapping("/range")
-    public ResponseEntity<List<UserEntity>> getUsersByBirthDateRange(@RequestParam("from") Date fromDate,
-                                                                     @RequestParam("to") Date toDate) throws BirthdateRangeException {
-        return ResponseEntity.ok(service.getUsersByBirthDateRange(fromDate, toDate));
+    public ResponseEntity<List<?>> getUsersByBirthDateRange(@RequestParam("from") Date fromDate,
+                                                            @RequestParam("to") Date toDate,
+                                                            @RequestParam(value = "after", defaultValue = "0") Long after,
+                                                            @RequestParam(value = "limit", defaultValue = "" + UsersService.DEFAULT_PAGE_SIZE) int limit,
+                                                            @RequestParam(value = "fields", required = false) String fields,
+                                                            WebRequest request) throws BirthdateRangeException, UnknownFieldException {
+        if (fields == null) {
+            if (request.getHeader(HttpHeaders.IF_NONE_MATCH) != null
+                    && request.checkNotModified(UserETags.of(service.getUserVersionsByBirthDateRange(fromDate, toDate, after, limit)))) {
+                return null;
+            }
+            List<UserView> users = service.getUsersByBirthDateRange(fromDate, toDate, after, limit);
+            return ResponseEntity.ok().headers(UserPages.next(users, limit, UserView::id)).eTag(UserETags.of(users)).body(users);
+        }
+        List<Map<String, Object>> rows = service.getUserFieldsByBirthDateRange(UserFields.parse(fields), fromDate, toDate, after, limit);
+        return ResponseEntity.ok().headers(UserPages.next(rows, limit, UserPages::rowId)).body(rows);
+    }
+
+    @GetMapping("/range/summary")
+    public ResponseEntity<List<UserSummary>> getUserSummariesByBirthDateRange(@RequestParam("from") Date fromDate,
+                                                                              @RequestParam("to") Date toDate,
+                                                                              @RequestParam(value = "after", defaultValue = "0") Long after,
+                                                                              @RequestParam(value = "limit", defaultValue = "" + UsersService.DEFAULT_PAGE_SIZE) int limit) throws BirthdateRangeException {
+        List<UserSummary> users = service.getUserSummariesByBirthDateRange(fromDate, toDate, after, limit);
+        return ResponseEntity.ok().headers(UserPages.next(users, limit, UserSummary::id)).body(users);
+    }
+
+    @GetMapping("/range/stats")
+    public ResponseEntity<List<BirthDateBucket>> countUsersByBirthDateRange(@RequestParam("from") Date fromDate,
+                                                                            @RequestParam("to") Date toDate,
+                                                                            @RequestParam(value = "groupBy", defaultValue = "YEAR") BirthDateBucket.Grouping grouping) throws BirthdateRangeException {
+        return ResponseEntity.ok(service.countUsersByBirthDateRange(fromDate, toDate, grouping));
     }
 
+    // With users.write-behind.enabled the user is only queued: 202 and a Location to poll for its id
     @PostMapping
-    public ResponseEntity<UserEntity> createUser(@RequestBody UserEntity newUser) throws UserCreatedException, UserYearsException, NoUserException {
-        return ResponseEntity.ok(service.createUser(newUser));
+    public ResponseEntity<?> createUser(@RequestBody UserEntity newUser) throws UserCreatedException, UserYearsException,
+            WriteQueueFullException, IOException {
+        UsersWriteBehindService writeBehind = writeBehindService.getIfAvailable();
+        if (writeBehind != null) {
+            PendingUserStatus status = writeBehind.enqueue(newUser);
+            return ResponseEntity.accepted()
+                    .location(ServletUriComponentsBuilder.fromCurrentRequest().path("/pending/{id}").buildAndExpand(status.id()).toUri())
+                    .body(status);
+        }
+        UserEntity createdUser = service.createUser(newUser);
+        return ResponseEntity.ok().eTag(UserETags.of(createdUser)).body(createdUser);
+    }
+
+    @PostMapping("/batch")
+    public ResponseEntity<BatchResult> createUsers(@RequestBody List<UserEntity> newUsers) throws BatchSizeException {
+        return ResponseEntity.ok(service.createUsers(newUsers));
+    }
+
+    @PutMapping("/batch")
+    public ResponseEntity<BatchResult> updateUsers(@RequestBody List<UserEntity> updatedUsers) throws BatchSizeException {
+        return ResponseEntity.ok(service.updateUsers(updatedUsers));
     }
 
     @PutMapping("/{id}")
-    public ResponseEntity<UserEntity> updateAllUserInfo(@PathVariable Long id, @RequestBody UserEntity updatedUser) throws UserYearsException, UserCreatedException, NoUserException {
-        return ResponseEntity.ok(service.updateAllUserInfo(id, updatedUser));
+    public ResponseEntity<UserEntity> updateAllUserInfo(@PathVariable Long id, @RequestBody UserEntity updatedUser,
+                                                        @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) throws UserYearsException, UserCreatedException, NoUserException, PreconditionFailedException {
+        UserEntity user = service.updateAllUserInfo(id, updatedUser, UserETags.expectedVersions(ifMatch));
+        return ResponseEntity.ok().eTag(UserETags.of(user)).body(user);
     }
 
     @PatchMapping("/{id}")
-    public ResponseEntity<UserEntity> updateUserInfo(@PathVariable Long id, @RequestBody UserEntity updatedUser) throws UserYearsException, UserCreatedException, NoUserException {
-        return ResponseEntity.ok(service.updateUserInfo(id, updatedUser));
+    public ResponseEntity<UserEntity> updateUserInfo(@PathVariable Long id, @RequestBody UserEntity updatedUser,
+                                                     @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) throws UserYearsException, UserCreatedException, NoUserException, PreconditionFailedException {
+        UserEntity user = service.updateUserInfo(id, updatedUser, UserETags.expectedVersions(ifMatch));
+        return ResponseEntity.ok().eTag(UserETags.of(user)).body(user);
     }
 
     @DeleteMapping("/{id}")
@@ -0,0 +1,81 @@
+package org.springapp.testtask.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SequenceWriter;
+import org.springapp.testtask.config.UsersCsv;
+import org.springapp.testtask.dto.UserExportFilter;
+import org.springapp.testtask.dto.UsersFileFormat;
+import org.springapp.testtask.exception.BirthdateRangeException;
+import org.springapp.testtask.service.UserRules;
+import org.springapp.testtask.service.UsersService;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.sql.Date;
+import java.util.Locale;
+
+// Rows go from a forward-only cursor straight to the response, so heap use doesn't depend on the row count.
+// Gzip is left to the container, see server.compression in application.properties.
+@RestController
+@RequestMapping("/users/export")
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+public class UsersExportController {
+
+    private final UsersService service;
+    private final ObjectMapper objectMapper;
+
+    public UsersExportController(UsersService service, ObjectMapper objectMapper) {
+        this.service = service;
+        this.objectMapper = objectMapper;
+    }
+
+    @GetMapping
+    public ResponseEntity<StreamingResponseBody> exportUsers(@RequestParam(value = "format", defaultValue = "NDJSON") UsersFileFormat format,
+                                                             @RequestParam(value = "from", required = false) Date fromDate,
+                                                             @RequestParam(value = "to", required = false) Date toDate,
+                                                             @RequestParam(value = "fromId", required = false) Long fromId,
+                                                             @RequestParam(value = "toId", required = false) Long toId) throws BirthdateRangeException {
+        UserExportFilter filter = new UserExportFilter(fromDate, toDate, fromId, toId);
+        // Checked up front, the response is already committed once the body starts streaming
+        UserRules.checkExportFilter(filter);
+
+        StreamingResponseBody body = out -> {
+            try (SequenceWriter writer = writerFor(format).writeValues(out)) {
+                service.exportUsers(filter, user -> {
+                    try {
+                        writer.write(user);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+                writer.flush();
+                if (format == UsersFileFormat.NDJSON) {
+                    out.write('\n');
+                }
+            } catch (BirthdateRangeException e) {
+                throw new IllegalStateException(e);
+            }
+        };
+
+        return ResponseEntity.ok()
+                .contentType(format == UsersFileFormat.CSV ? MediaType.parseMediaType(UsersCsv.MEDIA_TYPE_VALUE) : MediaType.APPLICATION_NDJSON)
+                .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment()
+                        .filename("users." + format.name().toLowerCase(Locale.ROOT)).build().toString())
+                .body(body);
+    }
+
+    private ObjectWriter writerFor(UsersFileFormat format) {
+        return switch (format) {
+            case NDJSON -> objectMapper.writer().withRootValueSeparator("\n");
+            case CSV -> UsersCsv.mapper().writer(UsersCsv.schema());
+        };
+    }
+}
@@ -0,0 +1,55 @@
+package org.springapp.testtask.controller;
+
+import org.springapp.testtask.config.UsersCsv;
+import org.springapp.testtask.dto.ImportJobStatus;
+import org.springapp.testtask.dto.UsersFileFormat;
+import org.springapp.testtask.service.UsersImportService;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+@RestController
+@RequestMapping("/users/import")
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+public class UsersImportController {
+
+    private final UsersImportService service;
+
+    public UsersImportController(UsersImportService service) {
+        this.service = service;
+    }
+
+    @PostMapping(consumes = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<ImportJobStatus> importNdjson(InputStream body) throws IOException {
+        return accepted(service.submit(body, UsersFileFormat.NDJSON));
+    }
+
+    // The first line is the header naming the UserEntity properties, e.g. firstName,lastName,email,dateOfBirth
+    @PostMapping(consumes = UsersCsv.MEDIA_TYPE_VALUE)
+    public ResponseEntity<ImportJobStatus> importCsv(InputStream body) throws IOException {
+        return accepted(service.submit(body, UsersFileFormat.CSV));
+    }
+
+    @GetMapping("/{id}")
+    public ResponseEntity<ImportJobStatus> getStatus(@PathVariable String id) {
+        return ResponseEntity.of(service.getStatus(id));
+    }
+
+    @GetMapping(value = "/{id}/rejects", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<Resource> getRejects(@PathVariable String id) {
+        return ResponseEntity.of(service.getRejects(id).map(FileSystemResource::new));
+    }
+
+    private static ResponseEntity<ImportJobStatus> accepted(ImportJobStatus status) {
+        return ResponseEntity.accepted()
+                .location(ServletUriComponentsBuilder.fromCurrentRequest().path("/{id}").buildAndExpand(status.id()).toUri())
+                .body(status);
+    }
+}
@@ -0,0 +1,32 @@
+package org.springapp.testtask.controller;
+
+import org.springapp.testtask.dto.UserView;
+import org.springapp.testtask.exception.SearchUnavailableException;
+import org.springapp.testtask.service.UsersSearchService;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("/users/search")
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+public class UsersSearchController {
+
+    public static final int DEFAULT_PAGE_SIZE = 20;
+
+    private final UsersSearchService service;
+
+    public UsersSearchController(UsersSearchService service) {
+        this.service = service;
+    }
+
+    @GetMapping
+    public ResponseEntity<List<UserView>> search(@RequestParam("q") String query,
+                                                 @RequestParam(value = "offset", defaultValue = "0") int offset,
+                                                 @RequestParam(value = "limit", defaultValue = "" + DEFAULT_PAGE_SIZE) int limit)
+            throws SearchUnavailableException {
+        return ResponseEntity.ok(service.search(query, offset, limit));
+    }
+}
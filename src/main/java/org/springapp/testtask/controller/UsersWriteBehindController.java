@@ -0,0 +1,26 @@
+package org.springapp.testtask.controller;
+
+import org.springapp.testtask.dto.PendingUserStatus;
+import org.springapp.testtask.service.UsersWriteBehindService;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+@RestController
+@RequestMapping("/users/pending")
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+@ConditionalOnProperty(prefix = "users.write-behind", name = "enabled", havingValue = "true")
+public class UsersWriteBehindController {
+
+    private final UsersWriteBehindService service;
+
+    public UsersWriteBehindController(UsersWriteBehindService service) {
+        this.service = service;
+    }
+
+    @GetMapping("/{id}")
+    public ResponseEntity<PendingUserStatus> getStatus(@PathVariable String id) {
+        return ResponseEntity.of(service.getStatus(id));
+    }
+}
@@ -0,0 +1,89 @@
+package org.springapp.testtask.datasource;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.Cookie;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpMethod;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.time.Duration;
+
+// A client that wrote gets a cookie for sticky-window; while it lasts its reads skip the replicas,
+// so it sees its own writes even before they have replicated. The pin is per thread: reads that run on the
+// task executor after the request thread (StreamingResponseBody for /users/stream and the export) get it
+// through propagatePin, which ReplicaRoutingConfiguration registers as the executor's TaskDecorator.
+public class ReadYourWritesFilter extends OncePerRequestFilter {
+
+    static final String COOKIE = "users-primary-until";
+
+    private static final ThreadLocal<Boolean> PINNED = new ThreadLocal<>();
+
+    private final Duration stickyWindow;
+
+    public ReadYourWritesFilter(Duration stickyWindow) {
+        this.stickyWindow = stickyWindow;
+    }
+
+    static boolean isPinnedToPrimary() {
+        return PINNED.get() != null;
+    }
+
+    static Runnable propagatePin(Runnable task) {
+        if (!isPinnedToPrimary()) {
+            return task;
+        }
+        return () -> {
+            PINNED.set(Boolean.TRUE);
+            try {
+                task.run();
+            } finally {
+                PINNED.remove();
+            }
+        };
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        boolean write = !HttpMethod.GET.matches(request.getMethod()) && !HttpMethod.HEAD.matches(request.getMethod())
+                && !HttpMethod.OPTIONS.matches(request.getMethod());
+        if (write) {
+            // Set before the chain runs, the response may be committed by the time it returns
+            Cookie cookie = new Cookie(COOKIE, Long.toString(System.currentTimeMillis() + stickyWindow.toMillis()));
+            cookie.setPath("/");
+            cookie.setHttpOnly(true);
+            cookie.setMaxAge((int) stickyWindow.toSeconds());
+            response.addCookie(cookie);
+        }
+        if (!write && !wroteRecently(request)) {
+            chain.doFilter(request, response);
+            return;
+        }
+
+        PINNED.set(Boolean.TRUE);
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            PINNED.remove();
+        }
+    }
+
+    private static boolean wroteRecently(HttpServletRequest request) {
+        if (request.getCookies() == null) {
+            return false;
+        }
+        for (Cookie cookie : request.getCookies()) {
+            if (COOKIE.equals(cookie.getName())) {
+                try {
+                    return Long.parseLong(cookie.getValue()) > System.currentTimeMillis();
+                } catch (NumberFormatException e) {
+                    return false;
+                }
+            }
+        }
+        return false;
+    }
+}
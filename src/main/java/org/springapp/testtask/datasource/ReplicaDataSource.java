@@ -0,0 +1,163 @@
+package org.springapp.testtask.datasource;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Where LazyConnectionDataSourceProxy gets connections for read-only transactions: round robin over the replicas
+// that passed their last check. Reads go to the primary instead while no replica is healthy, when a replica
+// refuses a connection, or when ReadYourWritesFilter pinned the request. Replicas start out unchecked, so the
+// first reads after startup go to the primary.
+public class ReplicaDataSource extends AbstractDataSource implements MeterBinder {
+
+    private static final String MYSQL_LAG_COLUMN = "Seconds_Behind_Source";
+
+    private final DataSource primary;
+    private final List<Replica> replicas;
+    private final String lagQuery;
+    private final Duration maxLag;
+    private final Duration checkInterval;
+    private final AtomicInteger next = new AtomicInteger();
+    private final AtomicLong replicaReads = new AtomicLong();
+    private final AtomicLong fallbackReads = new AtomicLong();
+    private final AtomicLong pinnedReads = new AtomicLong();
+    private ScheduledExecutorService checker;
+
+    public ReplicaDataSource(DataSource primary, List<HikariDataSource> replicas, String lagQuery,
+                             Duration maxLag, Duration checkInterval) {
+        this.primary = primary;
+        this.replicas = replicas.stream().map(Replica::new).toList();
+        this.lagQuery = lagQuery;
+        this.maxLag = maxLag;
+        this.checkInterval = checkInterval;
+    }
+
+    @PostConstruct
+    public void start() {
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("replica-check-");
+        threadFactory.setDaemon(true);
+        checker = Executors.newSingleThreadScheduledExecutor(threadFactory);
+        checker.scheduleWithFixedDelay(this::checkReplicas, 0, checkInterval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (checker != null) {
+            checker.shutdownNow();
+        }
+        replicas.forEach(replica -> replica.dataSource.close());
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        if (ReadYourWritesFilter.isPinnedToPrimary()) {
+            pinnedReads.incrementAndGet();
+            return primary.getConnection();
+        }
+        for (int attempt = 0; attempt < replicas.size(); attempt++) {
+            Replica replica = replicas.get(Math.floorMod(next.getAndIncrement(), replicas.size()));
+            if (!replica.healthy) {
+                continue;
+            }
+            try {
+                Connection connection = replica.dataSource.getConnection();
+                replicaReads.incrementAndGet();
+                return connection;
+            } catch (SQLException e) {
+                // out of rotation until the next check says otherwise
+                replica.healthy = false;
+            }
+        }
+        fallbackReads.incrementAndGet();
+        return primary.getConnection();
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        throw new SQLFeatureNotSupportedException("Replica credentials come from users.replicas.instances");
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        for (Replica replica : replicas) {
+            Gauge.builder("users.datasource.replica.lag", replica, r -> r.lagSeconds)
+                    .description("Replication lag reported by the last check, NaN when it failed")
+                    .baseUnit("seconds")
+                    .tag("replica", replica.dataSource.getPoolName())
+                    .register(registry);
+            Gauge.builder("users.datasource.replica.healthy", replica, r -> r.healthy ? 1 : 0)
+                    .tag("replica", replica.dataSource.getPoolName())
+                    .register(registry);
+        }
+        readCounter(registry, "replica", replicaReads);
+        readCounter(registry, "primary-fallback", fallbackReads);
+        readCounter(registry, "primary-pinned", pinnedReads);
+    }
+
+    void checkReplicas() {
+        replicas.forEach(this::check);
+    }
+
+    private void check(Replica replica) {
+        try (Connection connection = replica.dataSource.getConnection();
+             Statement statement = connection.createStatement();
+             ResultSet result = statement.executeQuery(lagQuery)) {
+            // No row: not replicating from anything, e.g. a stand-in database in a local setup
+            Double lag = result.next() ? readLag(result) : Double.valueOf(0);
+            // MySQL reports NULL lag while replication is stopped or broken
+            replica.lagSeconds = lag == null ? Double.NaN : lag;
+            replica.healthy = lag != null && lag <= maxLag.toSeconds();
+        } catch (SQLException e) {
+            replica.lagSeconds = Double.NaN;
+            replica.healthy = false;
+        }
+    }
+
+    private static Double readLag(ResultSet result) throws SQLException {
+        int column;
+        try {
+            column = result.findColumn(MYSQL_LAG_COLUMN);
+        } catch (SQLException e) {
+            column = 1;
+        }
+        double lag = result.getDouble(column);
+        return result.wasNull() ? null : lag;
+    }
+
+    private static void readCounter(MeterRegistry registry, String target, AtomicLong reads) {
+        FunctionCounter.builder("users.datasource.read.connections", reads, AtomicLong::get)
+                .description("Connections handed out for read-only transactions")
+                .tag("target", target)
+                .register(registry);
+    }
+
+    private static final class Replica {
+        final HikariDataSource dataSource;
+        volatile boolean healthy;
+        volatile double lagSeconds = Double.NaN;
+
+        Replica(HikariDataSource dataSource) {
+            this.dataSource = dataSource;
+        }
+    }
+}
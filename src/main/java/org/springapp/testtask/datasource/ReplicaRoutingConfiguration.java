@@ -0,0 +1,83 @@
+package org.springapp.testtask.datasource;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springapp.testtask.config.UsersReplicaProperties;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.Ordered;
+import org.springframework.core.task.TaskDecorator;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Read-only transactions (@Transactional(readOnly = true) and Spring Data's own read methods) go to the replicas,
+// everything else to spring.datasource. Spring marks the connection read-only before the first statement, and the
+// lazy proxy only picks the real DataSource at that point, so the choice needs nothing from the service layer.
+@Configuration(proxyBeanMethods = false)
+@ConditionalOnProperty(prefix = "users.replicas", name = "enabled", havingValue = "true")
+@EnableConfigurationProperties(DataSourceProperties.class)
+public class ReplicaRoutingConfiguration {
+
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource primaryDataSource(DataSourceProperties properties) {
+        return properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+    }
+
+    @Bean
+    public ReplicaDataSource replicaDataSource(HikariDataSource primaryDataSource, DataSourceProperties primaryProperties,
+                                              UsersReplicaProperties properties, MeterRegistry meterRegistry) {
+        List<HikariDataSource> replicas = new ArrayList<>();
+        for (int i = 0; i < properties.instances().size(); i++) {
+            UsersReplicaProperties.Instance instance = properties.instances().get(i);
+            HikariDataSource replica = new HikariDataSource();
+            replica.setPoolName("replica-" + i);
+            replica.setJdbcUrl(instance.url());
+            replica.setUsername(instance.username() != null ? instance.username() : primaryProperties.determineUsername());
+            replica.setPassword(instance.password() != null ? instance.password() : primaryProperties.determinePassword());
+            replica.setMaximumPoolSize(instance.maximumPoolSize());
+            replica.setReadOnly(true);
+            // A replica that is down must neither stop startup nor hold a read for long before the fallback
+            replica.setInitializationFailTimeout(-1);
+            replica.setConnectionTimeout(properties.connectionTimeout().toMillis());
+            replica.setMetricRegistry(meterRegistry);
+            replicas.add(replica);
+        }
+        return new ReplicaDataSource(primaryDataSource, replicas, properties.lagQuery(),
+                properties.maxLag(), properties.checkInterval());
+    }
+
+    @Bean
+    @Primary
+    public LazyConnectionDataSourceProxy dataSource(HikariDataSource primaryDataSource, ReplicaDataSource replicaDataSource) {
+        LazyConnectionDataSourceProxy dataSource = new LazyConnectionDataSourceProxy(primaryDataSource);
+        dataSource.setReadOnlyDataSource(replicaDataSource);
+        return dataSource;
+    }
+
+    @Bean
+    @ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+    public FilterRegistrationBean<ReadYourWritesFilter> readYourWritesFilter(UsersReplicaProperties properties) {
+        FilterRegistrationBean<ReadYourWritesFilter> registration =
+                new FilterRegistrationBean<>(new ReadYourWritesFilter(properties.stickyWindow()));
+        registration.addUrlPatterns("/users/*", "/users");
+        registration.setOrder(Ordered.HIGHEST_PRECEDENCE);
+        return registration;
+    }
+
+    // Boot applies it to applicationTaskExecutor, which Spring MVC runs StreamingResponseBody on
+    @Bean
+    @ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+    public TaskDecorator readYourWritesTaskDecorator() {
+        return ReadYourWritesFilter::propagatePin;
+    }
+}
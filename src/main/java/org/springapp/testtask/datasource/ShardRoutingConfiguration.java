@@ -0,0 +1,107 @@
+package org.springapp.testtask.datasource;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.flywaydb.core.Flyway;
+import org.springapp.testtask.config.UsersShardingProperties;
+import org.springapp.testtask.entity.UserIdGenerator;
+import org.springapp.testtask.repository.UserEmailDirectory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.flyway.FlywayProperties;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// The users table is split across users.sharding.shards; the EntityManagerFactory and every @Transactional see one
+// DataSource that routes by the shard UserShards bound to the thread. The lazy proxy defers the choice to the first
+// statement, after the service has bound the shard of the user it is about to touch.
+@Configuration(proxyBeanMethods = false)
+@ConditionalOnProperty(prefix = "users.sharding", name = "enabled", havingValue = "true")
+@EnableConfigurationProperties(DataSourceProperties.class)
+public class ShardRoutingConfiguration {
+
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource primaryDataSource(DataSourceProperties properties) {
+        return properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+    }
+
+    @Bean
+    public ShardRoutingDataSource shardRoutingDataSource(HikariDataSource primaryDataSource,
+                                                         DataSourceProperties primaryProperties,
+                                                         UsersShardingProperties properties,
+                                                         ObjectProvider<FlywayProperties> flywayProperties,
+                                                         Environment environment, MeterRegistry meterRegistry) {
+        check(properties, environment);
+        List<HikariDataSource> shards = new ArrayList<>();
+        for (int i = 0; i < properties.shards().size(); i++) {
+            UsersShardingProperties.Instance instance = properties.shards().get(i);
+            HikariDataSource shard = new HikariDataSource();
+            shard.setPoolName("shard-" + i);
+            shard.setJdbcUrl(instance.url());
+            shard.setUsername(instance.username() != null ? instance.username() : primaryProperties.determineUsername());
+            shard.setPassword(instance.password() != null ? instance.password() : primaryProperties.determinePassword());
+            shard.setMaximumPoolSize(instance.maximumPoolSize());
+            shard.setMetricRegistry(meterRegistry);
+            shards.add(shard);
+        }
+        // Boot's Flyway only sees the global database; the shards get the same scripts and baseline
+        FlywayProperties flyway = flywayProperties.getIfAvailable();
+        if (flyway != null && flyway.isEnabled()) {
+            for (HikariDataSource shard : shards) {
+                Flyway.configure()
+                        .dataSource(shard)
+                        .locations(flyway.getLocations().toArray(String[]::new))
+                        .baselineOnMigrate(flyway.isBaselineOnMigrate())
+                        .baselineVersion(flyway.getBaselineVersion())
+                        .load()
+                        .migrate();
+            }
+        }
+        return new ShardRoutingDataSource(primaryDataSource, shards);
+    }
+
+    @Bean
+    @Primary
+    public LazyConnectionDataSourceProxy dataSource(ShardRoutingDataSource shardRoutingDataSource) {
+        return new LazyConnectionDataSourceProxy(shardRoutingDataSource);
+    }
+
+    @Bean
+    public UserEmailDirectory userEmailDirectory(HikariDataSource primaryDataSource,
+                                                 ShardRoutingDataSource shardRoutingDataSource,
+                                                 UsersShardingProperties properties) {
+        return new UserEmailDirectory(primaryDataSource, shardRoutingDataSource.shards(), properties.reservationTimeout());
+    }
+
+    @Bean
+    public HibernatePropertiesCustomizer userIdWorkerCustomizer(UsersShardingProperties properties) {
+        return hibernateProperties -> hibernateProperties.put(UserIdGenerator.WORKER_ID, properties.workerId());
+    }
+
+    private static void check(UsersShardingProperties properties, Environment environment) {
+        if (properties.shards().isEmpty() || properties.shards().size() > UserIdGenerator.MAX_SHARDS) {
+            throw new IllegalStateException("users.sharding.shards needs 1 to " + UserIdGenerator.MAX_SHARDS
+                    + " entries, got " + properties.shards().size());
+        }
+        if (properties.workerId() < 0 || properties.workerId() >= UserIdGenerator.MAX_WORKERS) {
+            throw new IllegalStateException("users.sharding.worker-id must be within 0-" + (UserIdGenerator.MAX_WORKERS - 1));
+        }
+        // Both route or relay through the one primary database
+        for (String feature : List.of("users.replicas.enabled", "users.outbox.enabled")) {
+            if (environment.getProperty(feature, Boolean.class, false)) {
+                throw new IllegalStateException(feature + " cannot be combined with users.sharding.enabled");
+            }
+        }
+    }
+}
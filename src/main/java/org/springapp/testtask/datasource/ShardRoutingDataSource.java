@@ -0,0 +1,42 @@
+package org.springapp.testtask.datasource;
+
+import com.zaxxer.hikari.HikariDataSource;
+import jakarta.annotation.PreDestroy;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+
+import javax.sql.DataSource;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Connections for the shard bound by UserShards.bind, spring.datasource's when none is. An unknown shard is
+// an error rather than a silent fallback to the global database.
+public class ShardRoutingDataSource extends AbstractRoutingDataSource {
+
+    private final List<HikariDataSource> shards;
+
+    public ShardRoutingDataSource(DataSource global, List<HikariDataSource> shards) {
+        this.shards = shards;
+        Map<Object, Object> targets = new HashMap<>();
+        for (int i = 0; i < shards.size(); i++) {
+            targets.put(i, shards.get(i));
+        }
+        setTargetDataSources(targets);
+        setDefaultTargetDataSource(global);
+        setLenientFallback(false);
+    }
+
+    public List<HikariDataSource> shards() {
+        return shards;
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        return UserShards.boundShard();
+    }
+
+    @PreDestroy
+    public void stop() {
+        shards.forEach(HikariDataSource::close);
+    }
+}
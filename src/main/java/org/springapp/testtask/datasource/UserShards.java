@@ -0,0 +1,205 @@
+package org.springapp.testtask.datasource;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springapp.testtask.config.UsersShardingProperties;
+import org.springapp.testtask.entity.UserIdGenerator;
+import org.springapp.testtask.service.UserRules;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.function.ToLongFunction;
+
+// Which shard a user lives on and how work gets there. A shard is bound to the thread (bind) before a transaction's
+// first statement: ShardRoutingDataSource hands that transaction its connection, UserIdGenerator puts the shard
+// into new ids. With users.sharding off there is one implicit shard, bind does nothing and the fan-out methods
+// run once in the caller's transaction.
+@Component
+public class UserShards {
+
+    private static final ThreadLocal<Integer> BOUND = new ThreadLocal<>();
+    private static final Binding UNBOUND = () -> {
+    };
+
+    private final UsersShardingProperties properties;
+    private final TransactionTemplate readTransaction;
+    private final TransactionTemplate writeTransaction;
+    private final List<Timer> queryTimers;
+    private ExecutorService fanOut;
+
+    public UserShards(UsersShardingProperties properties, PlatformTransactionManager transactionManager,
+                      MeterRegistry meterRegistry) {
+        this.properties = properties;
+        // Always a transaction of its own: the caller's may already hold another shard's connection
+        this.readTransaction = new TransactionTemplate(transactionManager);
+        this.readTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.readTransaction.setReadOnly(true);
+        this.writeTransaction = new TransactionTemplate(transactionManager);
+        this.writeTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.queryTimers = new ArrayList<>();
+        for (int shard = 0; properties.enabled() && shard < properties.shards().size(); shard++) {
+            queryTimers.add(Timer.builder("users.shards.query")
+                    .description("One shard's part of a fanned-out read")
+                    .tag("shard", Integer.toString(shard))
+                    .register(meterRegistry));
+        }
+    }
+
+    public interface Binding extends AutoCloseable {
+        @Override
+        void close();
+    }
+
+    public static Integer boundShard() {
+        return BOUND.get();
+    }
+
+    @PostConstruct
+    public void start() {
+        if (enabled()) {
+            CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("shard-fan-out-");
+            threadFactory.setDaemon(true);
+            fanOut = Executors.newFixedThreadPool(properties.fanOutThreads(), threadFactory);
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (fanOut != null) {
+            fanOut.shutdownNow();
+        }
+    }
+
+    public boolean enabled() {
+        return properties.enabled();
+    }
+
+    public int count() {
+        return enabled() ? properties.shards().size() : 1;
+    }
+
+    // An id naming a shard that does not exist is looked for on shard 0, where it is not found either
+    public int shardOf(long id) {
+        int shard = UserIdGenerator.shardOf(id);
+        return shard < count() ? shard : 0;
+    }
+
+    // Where a new user goes: spread evenly by email
+    public int shardFor(String email) {
+        return email == null ? 0 : Math.floorMod(UserRules.normalizeEmail(email).hashCode(), count());
+    }
+
+    // try (var ignored = shards.bind(shard)) { ... } around everything that opens the transaction's connection
+    public Binding bind(int shard) {
+        if (!enabled()) {
+            return UNBOUND;
+        }
+        Integer previous = BOUND.get();
+        BOUND.set(shard);
+        return () -> {
+            if (previous == null) {
+                BOUND.remove();
+            } else {
+                BOUND.set(previous);
+            }
+        };
+    }
+
+    // A page after an id cursor: every shard returns its first limit rows, the merge keeps the first limit of those
+    public <T> List<T> gather(int limit, ToLongFunction<T> id, Supplier<List<T>> query) {
+        if (!enabled()) {
+            return query.get();
+        }
+        return onEveryShard(query).stream()
+                .flatMap(List::stream)
+                .sorted(Comparator.comparingLong(id))
+                .limit(limit)
+                .toList();
+    }
+
+    // Every shard's rows, in no particular order
+    public <T> List<T> collect(Supplier<List<T>> query) {
+        if (!enabled()) {
+            return query.get();
+        }
+        return onEveryShard(query).stream().flatMap(List::stream).toList();
+    }
+
+    // Streams and rebuilds over all users: one shard after the other on this thread, each in a read-only
+    // transaction of its own. Rows are in id order within a shard, not across them.
+    public void forEachShard(Runnable read) {
+        if (!enabled()) {
+            read.run();
+            return;
+        }
+        for (int shard = 0; shard < count(); shard++) {
+            try (Binding ignored = bind(shard)) {
+                readTransaction.executeWithoutResult(status -> read.run());
+            }
+        }
+    }
+
+    // A batch split by shard: each part commits on its own, so a failing part leaves the parts before it written
+    public <T> void writeEachShard(Map<Integer, List<T>> parts, Consumer<List<T>> write) {
+        if (!enabled()) {
+            parts.values().forEach(write);
+            return;
+        }
+        parts.forEach((shard, part) -> {
+            try (Binding ignored = bind(shard)) {
+                writeTransaction.executeWithoutResult(status -> write.accept(part));
+            }
+        });
+    }
+
+    private <T> List<List<T>> onEveryShard(Supplier<List<T>> query) {
+        List<Future<List<T>>> parts = new ArrayList<>(count());
+        for (int shard = 0; shard < count(); shard++) {
+            int target = shard;
+            parts.add(fanOut.submit(() -> {
+                long startedAt = System.nanoTime();
+                try (Binding ignored = bind(target)) {
+                    return readTransaction.execute(status -> query.get());
+                } finally {
+                    queryTimers.get(target).record(System.nanoTime() - startedAt, TimeUnit.NANOSECONDS);
+                }
+            }));
+        }
+
+        long deadline = System.nanoTime() + properties.queryTimeout().toNanos();
+        List<List<T>> results = new ArrayList<>(parts.size());
+        try {
+            for (Future<List<T>> part : parts) {
+                results.add(part.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS));
+            }
+            return results;
+        } catch (TimeoutException e) {
+            throw new QueryTimeoutException("A shard did not answer within " + properties.queryTimeout(), e);
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof RuntimeException cause ? cause : new IllegalStateException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for the shards", e);
+        } finally {
+            parts.forEach(part -> part.cancel(true));
+        }
+    }
+}
@@ -0,0 +1,8 @@
+package org.springapp.testtask.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+// maxAge is null for the open-ended oldest bucket
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record AgeBucket(Integer minAge, Integer maxAge, long count) {
+}
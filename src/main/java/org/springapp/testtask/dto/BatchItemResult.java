@@ -0,0 +1,16 @@
+package org.springapp.testtask.dto;
+
+public record BatchItemResult(int index, Status status, Long id, String error) {
+
+    public enum Status {
+        CREATED, UPDATED, REJECTED
+    }
+
+    public static BatchItemResult accepted(int index, Status status, Long id) {
+        return new BatchItemResult(index, status, id, null);
+    }
+
+    public static BatchItemResult rejected(int index, String error) {
+        return new BatchItemResult(index, Status.REJECTED, null, error);
+    }
+}
@@ -0,0 +1,11 @@
+package org.springapp.testtask.dto;
+
+import java.util.List;
+
+public record BatchResult(int accepted, int rejected, List<BatchItemResult> items) {
+
+    public static BatchResult of(List<BatchItemResult> items) {
+        int rejected = (int) items.stream().filter(item -> item.status() == BatchItemResult.Status.REJECTED).count();
+        return new BatchResult(items.size() - rejected, rejected, items);
+    }
+}
@@ -0,0 +1,15 @@
+package org.springapp.testtask.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record BirthDateBucket(Integer year, Integer month, Long count) {
+
+    public BirthDateBucket(Integer year, Long count) {
+        this(year, null, count);
+    }
+
+    public enum Grouping {
+        YEAR, MONTH
+    }
+}
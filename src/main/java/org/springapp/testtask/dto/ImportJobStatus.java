@@ -0,0 +1,14 @@
+package org.springapp.testtask.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.time.Instant;
+
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record ImportJobStatus(String id, State state, long processed, long accepted, long rejected,
+                              String error, Instant submittedAt, Instant finishedAt) {
+
+    public enum State {
+        QUEUED, RUNNING, COMPLETED, FAILED
+    }
+}
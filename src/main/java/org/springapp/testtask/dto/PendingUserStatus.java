@@ -0,0 +1,14 @@
+package org.springapp.testtask.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.time.Instant;
+
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record PendingUserStatus(String id, State state, Long userId, String error,
+                                Instant queuedAt, Instant finishedAt) {
+
+    public enum State {
+        QUEUED, CREATED, REJECTED
+    }
+}
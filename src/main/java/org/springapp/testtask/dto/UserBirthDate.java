@@ -0,0 +1,6 @@
+package org.springapp.testtask.dto;
+
+import java.util.Date;
+
+public record UserBirthDate(Long id, Date dateOfBirth) {
+}
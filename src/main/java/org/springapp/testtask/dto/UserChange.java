@@ -0,0 +1,11 @@
+package org.springapp.testtask.dto;
+
+// One outbox entry. user is the state written by the change and null for DELETED; version lets a consumer
+// ignore a change older than what it already has. Older changes of a user may have been compacted away,
+// so consumers apply CREATED and UPDATED alike as upserts.
+public record UserChange(long position, Type type, long id, long version, UserView user) {
+
+    public enum Type {
+        CREATED, UPDATED, DELETED
+    }
+}
@@ -0,0 +1,7 @@
+package org.springapp.testtask.dto;
+
+import java.util.List;
+
+// next is the offset to ask for next time; it can move past the last change when compaction left a gap
+public record UserChanges(List<UserChange> changes, long next) {
+}
@@ -0,0 +1,4 @@
+package org.springapp.testtask.dto;
+
+public record UserCount(long count) {
+}
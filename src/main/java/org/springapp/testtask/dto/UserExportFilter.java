@@ -0,0 +1,7 @@
+package org.springapp.testtask.dto;
+
+import java.util.Date;
+
+// Every bound is inclusive and optional
+public record UserExportFilter(Date fromDate, Date toDate, Long fromId, Long toId) {
+}
@@ -0,0 +1,29 @@
+package org.springapp.testtask.dto;
+
+import org.springapp.testtask.exception.UnknownFieldException;
+
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+// A ?fields=id,email sparse fieldset. id is always selected, it is the cursor for the next page.
+public record UserFields(List<String> names) {
+
+    public static final List<String> ALL = List.of("id", "firstName", "lastName", "email", "dateOfBirth", "address", "phoneNumber");
+
+    public static UserFields parse(String fields) throws UnknownFieldException {
+        Set<String> names = new LinkedHashSet<>();
+        names.add("id");
+        for (String field : fields.split(",")) {
+            String name = field.trim();
+            if (name.isEmpty()) {
+                continue;
+            }
+            if (!ALL.contains(name)) {
+                throw new UnknownFieldException("Unknown field: " + name);
+            }
+            names.add(name);
+        }
+        return new UserFields(List.copyOf(names));
+    }
+}
@@ -0,0 +1,6 @@
+package org.springapp.testtask.dto;
+
+import java.util.Date;
+
+public record UserSummary(Long id, String firstName, String lastName, Date dateOfBirth) {
+}
@@ -0,0 +1,5 @@
+package org.springapp.testtask.dto;
+
+// Just enough of a row to tell whether a page changed
+public record UserVersion(Long id, long version) implements VersionedUser {
+}
@@ -0,0 +1,10 @@
+package org.springapp.testtask.dto;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+import java.sql.Date;
+
+// Read-side user, built by a constructor expression straight from the row; same JSON as UserEntity
+public record UserView(Long id, String firstName, String lastName, String email, Date dateOfBirth,
+                       String address, String phoneNumber, @JsonIgnore long version) implements VersionedUser {
+}
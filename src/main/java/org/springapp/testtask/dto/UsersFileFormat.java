@@ -0,0 +1,5 @@
+package org.springapp.testtask.dto;
+
+public enum UsersFileFormat {
+    NDJSON, CSV
+}
@@ -0,0 +1,8 @@
+package org.springapp.testtask.dto;
+
+public interface VersionedUser {
+
+    Long id();
+
+    long version();
+}
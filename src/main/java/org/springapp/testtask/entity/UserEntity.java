@@ -1,9 +1,13 @@
 package org.springapp.testtask.entity;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
 import jakarta.validation.constraints.NotEmpty;
 import jakarta.validation.constraints.Past;
 import jakarta.validation.constraints.Pattern;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
+import org.hibernate.id.enhanced.SequenceStyleGenerator;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
@@ -14,10 +18,16 @@ import java.sql.Date;
 @Data
 @AllArgsConstructor
 @NoArgsConstructor
-@Table(name = "users")
+@Table(name = "users", indexes = @Index(name = "idx_users_date_of_birth", columnList = "dateOfBirth"))
 public class UserEntity {
+    public static final int ID_ALLOCATION_SIZE = 50;
+
+    // @GenericGenerator rather than @IdGeneratorType: only the former gets users_seq created and configured in Hibernate 6.4
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(generator = "users_seq")
+    @GenericGenerator(name = "users_seq", type = UserIdGenerator.class, parameters = {
+            @Parameter(name = SequenceStyleGenerator.SEQUENCE_PARAM, value = "users_seq"),
+            @Parameter(name = SequenceStyleGenerator.INCREMENT_PARAM, value = "" + UserEntity.ID_ALLOCATION_SIZE)})
     @Column(name = "id", nullable = false)
     private Long id;
 
@@ -43,4 +53,15 @@ public class UserEntity {
 
     private String address;
     private String phoneNumber;
+
+    // Bumped by Hibernate on every update; travels in the ETag header instead of the body
+    @Version
+    @JsonIgnore
+    @Column(nullable = false)
+    private long version;
+
+    public UserEntity(Long id, String firstName, String lastName, String email, Date dateOfBirth,
+                      String address, String phoneNumber) {
+        this(id, firstName, lastName, email, dateOfBirth, address, phoneNumber, 0L);
+    }
 }
\ No newline at end of file
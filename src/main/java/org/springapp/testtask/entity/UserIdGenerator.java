@@ -0,0 +1,68 @@
+package org.springapp.testtask.entity;
+
+import org.hibernate.engine.config.spi.ConfigurationService;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.id.enhanced.SequenceStyleGenerator;
+import org.hibernate.service.ServiceRegistry;
+import org.hibernate.type.Type;
+import org.springapp.testtask.datasource.UserShards;
+
+import java.time.Instant;
+import java.util.Properties;
+
+// users_seq while no shard is bound. A write bound to a shard (UserShards.bind) gets an id that is unique across
+// shards without a round trip and names its shard: milliseconds since 2024 | shard | worker | sequence.
+// Those ids grow with time, so the id cursors of GET /users keep paging in creation order across shards.
+public class UserIdGenerator extends SequenceStyleGenerator {
+
+    public static final String WORKER_ID = "users.sharding.worker-id";
+    public static final int MAX_SHARDS = 64;
+    public static final int MAX_WORKERS = 64;
+
+    private static final long EPOCH = Instant.parse("2024-01-01T00:00:00Z").toEpochMilli();
+    private static final int SEQUENCE_BITS = 10;
+    private static final int WORKER_SHIFT = SEQUENCE_BITS;
+    private static final int SHARD_SHIFT = WORKER_SHIFT + 6;
+    private static final int MILLIS_SHIFT = SHARD_SHIFT + 6;
+    private static final long SEQUENCE_MASK = (1L << SEQUENCE_BITS) - 1;
+    // Anything generated after the first days of 2024 is above it; users_seq will never get there
+    private static final long FIRST_SHARDED_ID = 1L << 50;
+
+    private int workerId;
+    private long lastMillis;
+    private long sequence;
+
+    // Ids from users_seq belong to the rows there were before sharding, which stay on shard 0
+    public static int shardOf(long id) {
+        return id < FIRST_SHARDED_ID ? 0 : (int) (id >>> SHARD_SHIFT) & (MAX_SHARDS - 1);
+    }
+
+    @Override
+    public void configure(Type type, Properties parameters, ServiceRegistry serviceRegistry) {
+        super.configure(type, parameters, serviceRegistry);
+        Object workerId = serviceRegistry.requireService(ConfigurationService.class).getSettings().get(WORKER_ID);
+        this.workerId = workerId == null ? 0 : Integer.parseInt(workerId.toString());
+    }
+
+    @Override
+    public Object generate(SharedSessionContractImplementor session, Object object) {
+        Integer shard = UserShards.boundShard();
+        return shard == null ? super.generate(session, object) : nextId(shard);
+    }
+
+    private synchronized long nextId(int shard) {
+        // A clock that steps back keeps counting from the last millisecond instead of repeating ids
+        long millis = Math.max(System.currentTimeMillis() - EPOCH, lastMillis);
+        if (millis == lastMillis) {
+            sequence = (sequence + 1) & SEQUENCE_MASK;
+            if (sequence == 0) {
+                // 1024 ids in one millisecond: borrow the next one
+                millis++;
+            }
+        } else {
+            sequence = 0;
+        }
+        lastMillis = millis;
+        return millis << MILLIS_SHIFT | (long) shard << SHARD_SHIFT | (long) workerId << WORKER_SHIFT | sequence;
+    }
+}
@@ -0,0 +1,7 @@
+package org.springapp.testtask.exception;
+
+public class AnalyticsUnavailableException extends Exception {
+    public AnalyticsUnavailableException(String message) {
+        super(message);
+    }
+}
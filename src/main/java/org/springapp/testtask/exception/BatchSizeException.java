@@ -0,0 +1,8 @@
+package org.springapp.testtask.exception;
+
+public class BatchSizeException extends Exception {
+
+    public BatchSizeException(String message) {
+        super(message);
+    }
+}
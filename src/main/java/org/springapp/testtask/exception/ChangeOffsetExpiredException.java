@@ -0,0 +1,7 @@
+package org.springapp.testtask.exception;
+
+public class ChangeOffsetExpiredException extends Exception {
+    public ChangeOffsetExpiredException(String message) {
+        super(message);
+    }
+}
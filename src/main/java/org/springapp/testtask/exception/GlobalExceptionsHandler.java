@@ -1,6 +1,9 @@
 package org.springapp.testtask.exception;
 
 import jakarta.validation.ConstraintViolationException;
+import org.springapp.testtask.metrics.UsersMetrics;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
@@ -10,23 +13,33 @@ import org.springframework.web.bind.annotation.ExceptionHandler;
 @ControllerAdvice
 public class GlobalExceptionsHandler {
 
+    private final UsersMetrics metrics;
+
+    public GlobalExceptionsHandler(UsersMetrics metrics) {
+        this.metrics = metrics;
+    }
+
     @ExceptionHandler(BirthdateRangeException.class)
     public ResponseEntity<String> handleBadBirthdateException(BirthdateRangeException ex) {
+        metrics.countError(ex);
         return ResponseEntity.badRequest().contentType(MediaType.APPLICATION_JSON).body(ex.getMessage());
     }
 
     @ExceptionHandler(NoUserException.class)
     public ResponseEntity<String> handleUserNotFound(NoUserException ex) {
+        metrics.countError(ex);
         return ResponseEntity.badRequest().contentType(MediaType.APPLICATION_JSON).body(ex.getMessage());
     }
 
     @ExceptionHandler(UserCreatedException.class)
     public ResponseEntity<String> handleUserExists(UserCreatedException ex) {
+        metrics.countError(ex);
         return ResponseEntity.badRequest().contentType(MediaType.APPLICATION_JSON).body(ex.getMessage());
     }
 
     @ExceptionHandler(ConstraintViolationException.class)
     public ResponseEntity<String> handleValidationException(ConstraintViolationException ex) {
+        metrics.countError(ex);
         StringBuilder errorMessage = new StringBuilder();
         ex.getConstraintViolations().forEach(violation -> {
             errorMessage.append(violation.getMessage());
@@ -37,11 +50,84 @@ public class GlobalExceptionsHandler {
 
     @ExceptionHandler(UserYearsException.class)
     public ResponseEntity<String> handleUserExists(UserYearsException ex) {
+        metrics.countError(ex);
         return ResponseEntity.badRequest().contentType(MediaType.APPLICATION_JSON).body(ex.getMessage());
     }
 
+    @ExceptionHandler(BatchSizeException.class)
+    public ResponseEntity<String> handleBatchSize(BatchSizeException ex) {
+        metrics.countError(ex);
+        return ResponseEntity.badRequest().contentType(MediaType.APPLICATION_JSON).body(ex.getMessage());
+    }
+
+    @ExceptionHandler(UnknownFieldException.class)
+    public ResponseEntity<String> handleUnknownField(UnknownFieldException ex) {
+        metrics.countError(ex);
+        return ResponseEntity.badRequest().contentType(MediaType.APPLICATION_JSON).body(ex.getMessage());
+    }
+
+    @ExceptionHandler(PreconditionFailedException.class)
+    public ResponseEntity<String> handlePreconditionFailed(PreconditionFailedException ex) {
+        metrics.countError(ex);
+        return ResponseEntity.status(HttpStatus.PRECONDITION_FAILED).contentType(MediaType.APPLICATION_JSON).body(ex.getMessage());
+    }
+
+    // The version check on UPDATE lost against a concurrent writer
+    @ExceptionHandler(OptimisticLockingFailureException.class)
+    public ResponseEntity<String> handleConcurrentUpdate(OptimisticLockingFailureException ex) {
+        metrics.countError(ex);
+        return ResponseEntity.status(HttpStatus.CONFLICT).contentType(MediaType.APPLICATION_JSON).body("User was modified concurrently");
+    }
+
+    // Write-behind queue at max-depth: shed the request rather than grow the backlog
+    @ExceptionHandler(WriteQueueFullException.class)
+    public ResponseEntity<String> handleWriteQueueFull(WriteQueueFullException ex) {
+        metrics.countError(ex);
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).header(HttpHeaders.RETRY_AFTER, "1")
+                .contentType(MediaType.APPLICATION_JSON).body(ex.getMessage());
+    }
+
+    @ExceptionHandler(RateLimitExceededException.class)
+    public ResponseEntity<String> handleRateLimitExceeded(RateLimitExceededException ex) {
+        metrics.countError(ex);
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS).header(HttpHeaders.RETRY_AFTER, String.valueOf(ex.getRetryAfterSeconds()))
+                .contentType(MediaType.APPLICATION_JSON).body(ex.getMessage());
+    }
+
+    // Load shedding: too many requests in flight, on this node or for this endpoint
+    @ExceptionHandler(ServerBusyException.class)
+    public ResponseEntity<String> handleServerBusy(ServerBusyException ex) {
+        metrics.countError(ex);
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).header(HttpHeaders.RETRY_AFTER, "1")
+                .contentType(MediaType.APPLICATION_JSON).body(ex.getMessage());
+    }
+
+    // The search index is still being built after startup, or search is turned off
+    @ExceptionHandler(SearchUnavailableException.class)
+    public ResponseEntity<String> handleSearchUnavailable(SearchUnavailableException ex) {
+        metrics.countError(ex);
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).header(HttpHeaders.RETRY_AFTER, "5")
+                .contentType(MediaType.APPLICATION_JSON).body(ex.getMessage());
+    }
+
+    // The birth date snapshot is still being built after startup, or analytics is turned off
+    @ExceptionHandler(AnalyticsUnavailableException.class)
+    public ResponseEntity<String> handleAnalyticsUnavailable(AnalyticsUnavailableException ex) {
+        metrics.countError(ex);
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).header(HttpHeaders.RETRY_AFTER, "5")
+                .contentType(MediaType.APPLICATION_JSON).body(ex.getMessage());
+    }
+
+    // The offset is older than the outbox retention; the consumer reloads and follows from the current offset
+    @ExceptionHandler(ChangeOffsetExpiredException.class)
+    public ResponseEntity<String> handleChangeOffsetExpired(ChangeOffsetExpiredException ex) {
+        metrics.countError(ex);
+        return ResponseEntity.status(HttpStatus.GONE).contentType(MediaType.APPLICATION_JSON).body(ex.getMessage());
+    }
+
     @ExceptionHandler(Exception.class)
     public ResponseEntity<String> handleServerError(Exception ex) {
+        metrics.countError(ex);
         return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).contentType(MediaType.APPLICATION_JSON).body(ex.getMessage());
     }
 }
@@ -0,0 +1,8 @@
+package org.springapp.testtask.exception;
+
+public class PreconditionFailedException extends Exception {
+
+    public PreconditionFailedException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,7 @@
+package org.springapp.testtask.exception;
+
+public class SearchUnavailableException extends Exception {
+    public SearchUnavailableException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,7 @@
+package org.springapp.testtask.exception;
+
+public class ServerBusyException extends Exception {
+    public ServerBusyException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,8 @@
+package org.springapp.testtask.exception;
+
+public class UnknownFieldException extends Exception {
+
+    public UnknownFieldException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,7 @@
+package org.springapp.testtask.exception;
+
+public class WriteQueueFullException extends Exception {
+    public WriteQueueFullException(String message) {
+        super(message);
+    }
+}
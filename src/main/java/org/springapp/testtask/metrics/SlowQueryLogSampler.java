@@ -0,0 +1,65 @@
+package org.springapp.testtask.metrics;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.turbo.TurboFilter;
+import ch.qos.logback.core.spi.FilterReply;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.LoggerFactory;
+import org.slf4j.Marker;
+import org.springapp.testtask.config.SlowQueryLogProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Hibernate's log_slow_query logs every statement over the threshold, so a slow database floods the log exactly when
+// it is already struggling. Only a sample-rate share of those lines is written; users.slow.queries counts them all.
+@Component
+public class SlowQueryLogSampler extends TurboFilter implements MeterBinder {
+
+    static final String SLOW_QUERY_LOGGER = "org.hibernate.SQL_SLOW";
+
+    private final double sampleRate;
+    private final AtomicLong slowQueries = new AtomicLong();
+    private final LoggerContext loggerContext;
+
+    public SlowQueryLogSampler(SlowQueryLogProperties properties) {
+        this.sampleRate = properties.sampleRate();
+        this.loggerContext = LoggerFactory.getILoggerFactory() instanceof LoggerContext context ? context : null;
+        if (loggerContext != null) {
+            setName("slow-query-sampler");
+            setContext(loggerContext);
+            start();
+            loggerContext.addTurboFilter(this);
+        }
+    }
+
+    @PreDestroy
+    public void remove() {
+        if (loggerContext != null) {
+            loggerContext.getTurboFilterList().remove(this);
+        }
+    }
+
+    @Override
+    public FilterReply decide(Marker marker, Logger logger, Level level, String format, Object[] params, Throwable t) {
+        // format is null for isEnabled checks, which must not draw or count
+        if (format == null || !SLOW_QUERY_LOGGER.equals(logger.getName())) {
+            return FilterReply.NEUTRAL;
+        }
+        slowQueries.incrementAndGet();
+        return ThreadLocalRandom.current().nextDouble() < sampleRate ? FilterReply.NEUTRAL : FilterReply.DENY;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("users.slow.queries", slowQueries, AtomicLong::get)
+                .description("Statements over hibernate.log_slow_query, logged or not")
+                .register(registry);
+    }
+}
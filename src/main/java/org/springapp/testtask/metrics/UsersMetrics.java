@@ -0,0 +1,49 @@
+package org.springapp.testtask.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+
+@Component
+public class UsersMetrics {
+
+    private final MeterRegistry registry;
+
+    public UsersMetrics(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    public <T extends Collection<?>> T recordResultSize(String operation, T result) {
+        recordResultSize(operation, result.size());
+        return result;
+    }
+
+    public void recordResultSize(String operation, long size) {
+        DistributionSummary.builder("users.result.size")
+                .description("Rows returned by list, range and export operations")
+                .baseUnit("rows")
+                .tag("operation", operation)
+                .publishPercentileHistogram()
+                .register(registry)
+                .record(size);
+    }
+
+    public void countImported(String outcome, long rows) {
+        Counter.builder("users.import.rows")
+                .description("Rows processed by bulk import jobs")
+                .tag("outcome", outcome)
+                .register(registry)
+                .increment(rows);
+    }
+
+    public void countError(Exception ex) {
+        Counter.builder("users.errors")
+                .description("Exceptions mapped to error responses by GlobalExceptionsHandler")
+                .tag("exception", ex.getClass().getSimpleName())
+                .register(registry)
+                .increment();
+    }
+}
@@ -0,0 +1,45 @@
+package org.springapp.testtask.ratelimit;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springapp.testtask.config.UsersRateLimitProperties;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+import org.springframework.web.servlet.mvc.method.annotation.RequestMappingHandlerMapping;
+
+@Configuration(proxyBeanMethods = false)
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+@ConditionalOnProperty(prefix = "users.rate-limit", name = "enabled", havingValue = "true")
+public class RateLimitConfiguration {
+
+    @Bean
+    public RateLimitInterceptor rateLimitInterceptor(UsersRateLimitProperties properties, MeterRegistry meterRegistry) {
+        return new RateLimitInterceptor(properties, meterRegistry);
+    }
+
+    @Bean
+    public WebMvcConfigurer rateLimitInterceptorRegistration(RateLimitInterceptor interceptor) {
+        return new WebMvcConfigurer() {
+            @Override
+            public void addInterceptors(InterceptorRegistry registry) {
+                // Change streams and long polls stay open for minutes and would hold in-flight permits all along;
+                // UserChangeFeed caps them with users.outbox.max-subscribers instead
+                registry.addInterceptor(interceptor).addPathPatterns("/users", "/users/**")
+                        .excludePathPatterns("/users/changes").order(Ordered.HIGHEST_PRECEDENCE);
+            }
+        };
+    }
+
+    // Runs once every handler is mapped, so a bad endpoints key stops the startup
+    @Bean
+    public SmartInitializingSingleton rateLimitEndpointsCheck(RateLimitInterceptor interceptor,
+            @Qualifier("requestMappingHandlerMapping") RequestMappingHandlerMapping handlerMapping) {
+        return () -> interceptor.checkEndpoints(handlerMapping.getHandlerMethods().values());
+    }
+}
@@ -0,0 +1,204 @@
+package org.springapp.testtask.ratelimit;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.DispatcherType;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springapp.testtask.config.UsersRateLimitProperties;
+import org.springapp.testtask.exception.RateLimitExceededException;
+import org.springapp.testtask.exception.ServerBusyException;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.AsyncHandlerInterceptor;
+
+import java.lang.reflect.Method;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+// Runs after the handler is resolved and before it is invoked, so a rejected request never reaches the
+// service layer or takes a pooled connection. Concurrency is checked first so a shed request costs no tokens.
+// Buckets are GCRA: one AtomicLong per client holding when its bucket will be full again, updated by CAS.
+// A streaming response keeps its permits until the async dispatch that completes it.
+// Endpoints are named Controller.method, since method names alone repeat across controllers (getStatus).
+public class RateLimitInterceptor implements AsyncHandlerInterceptor {
+
+    private static final String ADMITTED = RateLimitInterceptor.class.getName() + ".ADMITTED";
+
+    private final UsersRateLimitProperties properties;
+    private final MeterRegistry registry;
+    private final long nanosPerToken;
+    private final long burstNanos;
+    private final Cache<String, AtomicLong> buckets;
+    private final Map<Method, Endpoint> endpoints = new ConcurrentHashMap<>();
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    public RateLimitInterceptor(UsersRateLimitProperties properties, MeterRegistry registry) {
+        this.properties = properties;
+        this.registry = registry;
+        this.nanosPerToken = (long) (TimeUnit.SECONDS.toNanos(1) / properties.refillPerSecond());
+        this.burstNanos = nanosPerToken * properties.capacity();
+        // A bucket idle for longer than it takes to refill is indistinguishable from a new one
+        this.buckets = Caffeine.newBuilder()
+                .maximumSize(properties.maxClients())
+                .expireAfterAccess(Duration.ofNanos(Math.max(burstNanos, TimeUnit.SECONDS.toNanos(1))))
+                .build();
+        Gauge.builder("users.rate.limit.clients", buckets, Cache::estimatedSize)
+                .description("Clients with a token bucket")
+                .register(registry);
+        Gauge.builder("users.rate.limit.in.flight", inFlight, AtomicInteger::get)
+                .description("Requests running now")
+                .tag("endpoint", "all")
+                .register(registry);
+        Gauge.builder("users.rate.limit.max.concurrent", properties, UsersRateLimitProperties::maxInFlight)
+                .tag("endpoint", "all")
+                .register(registry);
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler)
+            throws RateLimitExceededException, ServerBusyException {
+        if (!(handler instanceof HandlerMethod handlerMethod) || request.getDispatcherType() == DispatcherType.ASYNC) {
+            return true;
+        }
+        Endpoint endpoint = endpoints.computeIfAbsent(handlerMethod.getMethod(), method -> endpoint(nameOf(method)));
+
+        if (inFlight.incrementAndGet() > properties.maxInFlight()) {
+            inFlight.decrementAndGet();
+            throw endpoint.shed("Server is busy, try again shortly");
+        }
+        if (endpoint.inFlight.incrementAndGet() > endpoint.maxConcurrent) {
+            endpoint.inFlight.decrementAndGet();
+            inFlight.decrementAndGet();
+            throw endpoint.shed("Too many concurrent " + endpoint.name + " requests, try again shortly");
+        }
+
+        long wait = take(clientOf(request), endpoint.cost);
+        if (wait > 0) {
+            endpoint.inFlight.decrementAndGet();
+            inFlight.decrementAndGet();
+            endpoint.rateLimited.increment();
+            throw new RateLimitExceededException("Rate limit exceeded",
+                    Math.max(1, (wait + TimeUnit.SECONDS.toNanos(1) - 1) / TimeUnit.SECONDS.toNanos(1)));
+        }
+        request.setAttribute(ADMITTED, endpoint);
+        return true;
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        if (request.getAttribute(ADMITTED) instanceof Endpoint endpoint) {
+            request.removeAttribute(ADMITTED);
+            endpoint.inFlight.decrementAndGet();
+            inFlight.decrementAndGet();
+        }
+    }
+
+    // A misspelled or stale key would otherwise leave its endpoint at cost 1 without a word
+    public void checkEndpoints(Collection<HandlerMethod> handlers) {
+        if (properties.endpoints() == null) {
+            return;
+        }
+        Set<String> known = handlers.stream().map(handler -> nameOf(handler.getMethod())).collect(Collectors.toSet());
+        Set<String> unknown = properties.endpoints().keySet().stream()
+                .filter(name -> !known.contains(name))
+                .collect(Collectors.toCollection(TreeSet::new));
+        if (!unknown.isEmpty()) {
+            throw new IllegalStateException("users.rate-limit.endpoints has keys that match no handler: " + unknown
+                    + "; keys are Controller.method, e.g. UsersController.getAllUsers");
+        }
+    }
+
+    static String nameOf(Method method) {
+        return method.getDeclaringClass().getSimpleName() + "." + method.getName();
+    }
+
+    // 0 when the cost was taken, otherwise how long until it would fit; a cost above the
+    // capacity is capped so such a request still goes through on a full bucket
+    long take(String client, int cost) {
+        AtomicLong fullAt = buckets.get(client, c -> new AtomicLong(System.nanoTime()));
+        long spend = Math.min(cost, properties.capacity()) * nanosPerToken;
+        while (true) {
+            long now = System.nanoTime();
+            long current = fullAt.get();
+            long next = (current - now < 0 ? now : current) + spend;
+            long wait = next - now - burstNanos;
+            if (wait > 0) {
+                return wait;
+            }
+            if (fullAt.compareAndSet(current, next)) {
+                return 0;
+            }
+        }
+    }
+
+    private String clientOf(HttpServletRequest request) {
+        if (properties.clientHeader() != null) {
+            String client = request.getHeader(properties.clientHeader());
+            if (client != null && !client.isBlank()) {
+                return client;
+            }
+        }
+        return request.getRemoteAddr();
+    }
+
+    private Endpoint endpoint(String name) {
+        UsersRateLimitProperties.Endpoint configured = properties.endpoints() == null ? null : properties.endpoints().get(name);
+        int cost = configured == null ? 1 : configured.cost();
+        int maxConcurrent = configured == null || configured.maxConcurrent() == null
+                ? properties.maxConcurrent() : configured.maxConcurrent();
+        Endpoint endpoint = new Endpoint(name, cost, maxConcurrent, registry);
+        Gauge.builder("users.rate.limit.in.flight", endpoint.inFlight, AtomicInteger::get)
+                .description("Requests running now")
+                .tag("endpoint", name)
+                .register(registry);
+        Gauge.builder("users.rate.limit.max.concurrent", endpoint, e -> e.maxConcurrent)
+                .tag("endpoint", name)
+                .register(registry);
+        Gauge.builder("users.rate.limit.cost", endpoint, e -> e.cost)
+                .description("Tokens one request takes from its client's bucket")
+                .tag("endpoint", name)
+                .register(registry);
+        return endpoint;
+    }
+
+    private static final class Endpoint {
+        final String name;
+        final int cost;
+        final int maxConcurrent;
+        final AtomicInteger inFlight = new AtomicInteger();
+        final Counter rateLimited;
+        final Counter shed;
+
+        Endpoint(String name, int cost, int maxConcurrent, MeterRegistry registry) {
+            this.name = name;
+            this.cost = cost;
+            this.maxConcurrent = maxConcurrent;
+            this.rateLimited = rejections(registry, name, "rate");
+            this.shed = rejections(registry, name, "concurrency");
+        }
+
+        ServerBusyException shed(String message) {
+            shed.increment();
+            return new ServerBusyException(message);
+        }
+
+        private static Counter rejections(MeterRegistry registry, String endpoint, String reason) {
+            return Counter.builder("users.rate.limit.rejections")
+                    .description("Requests turned away before reaching the handler")
+                    .tag("endpoint", endpoint)
+                    .tag("reason", reason)
+                    .register(registry);
+        }
+    }
+}
@@ -0,0 +1,205 @@
+package org.springapp.testtask.repository;
+
+import org.springapp.testtask.entity.UserEntity;
+import org.springapp.testtask.entity.UserIdGenerator;
+import org.springapp.testtask.service.UserRules;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Consumer;
+
+// user_emails on spring.datasource, which keeps emails unique across shards. A write reserves its emails before it
+// inserts, sets their user ids once it has them and keeps them if its transaction commits; a rollback takes the
+// whole reservation back. A deleted user's or replaced email goes after the commit. A row left behind by a writer
+// that died in between is taken over once it is older than the reservation timeout and no shard has its user
+// with that email. Statements run outside the shard transaction, one autocommit each.
+public class UserEmailDirectory {
+
+    // Owner of an email whose user is not inserted yet
+    public static final long RESERVED = 0L;
+
+    private static final int CHUNK_SIZE = 1000;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final List<JdbcTemplate> shards;
+    private final Duration reservationTimeout;
+
+    public UserEmailDirectory(DataSource global, List<? extends DataSource> shards, Duration reservationTimeout) {
+        this.jdbcTemplate = new JdbcTemplate(global);
+        this.shards = shards.stream().map(JdbcTemplate::new).toList();
+        this.reservationTimeout = reservationTimeout;
+    }
+
+    public interface Reservation {
+
+        // Unsharded, the users table's unique key does the job alone
+        Reservation NONE = new Reservation() {
+            @Override
+            public boolean holds(String email) {
+                return true;
+            }
+
+            @Override
+            public void assign(Collection<UserEntity> users) {
+            }
+        };
+
+        boolean holds(String email);
+
+        // Records the ids of inserted users whose emails this reservation holds
+        void assign(Collection<UserEntity> users);
+    }
+
+    // Keyed by normalized email
+    public Map<String, Long> findOwners(Collection<String> emails) {
+        Map<String, Long> owners = new HashMap<>();
+        forEachChunk(normalize(emails), chunk -> jdbcTemplate.query(
+                "select email, user_id from user_emails where email in (" + placeholders(chunk.size()) + ")",
+                row -> {
+                    long userId = row.getLong(2);
+                    owners.put(row.getString(1), row.wasNull() ? RESERVED : userId);
+                }, chunk.toArray()));
+        return owners;
+    }
+
+    // Must run in the transaction that inserts or updates the users
+    public Reservation reserve(Collection<String> emails) {
+        DirectoryReservation reservation = new DirectoryReservation(ThreadLocalRandom.current().nextLong());
+        List<String> wanted = normalize(emails);
+        if (wanted.isEmpty()) {
+            return reservation;
+        }
+        Timestamp now = Timestamp.from(Instant.now());
+        jdbcTemplate.batchUpdate("insert ignore into user_emails (email, reservation, reserved_at) values (?, ?, ?)",
+                wanted, CHUNK_SIZE, (statement, email) -> {
+                    statement.setString(1, email);
+                    statement.setLong(2, reservation.id);
+                    statement.setTimestamp(3, now);
+                });
+        reservation.emails.addAll(jdbcTemplate.queryForList(
+                "select email from user_emails where reservation = ?", String.class, reservation.id));
+        if (reservation.emails.size() < wanted.size()) {
+            takeOverAbandoned(wanted.stream().filter(email -> !reservation.emails.contains(email)).toList(), reservation, now);
+        }
+
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                // Committed: only emails that were reserved but not used go
+                jdbcTemplate.update(status == STATUS_COMMITTED
+                        ? "delete from user_emails where reservation = ? and user_id is null"
+                        : "delete from user_emails where reservation = ?", reservation.id);
+            }
+        });
+        return reservation;
+    }
+
+    // Emails users gave up for new ones, once the change is committed
+    public void releaseAfterCommit(Map<String, Long> emailOwners) {
+        if (emailOwners.isEmpty()) {
+            return;
+        }
+        List<Object[]> rows = emailOwners.entrySet().stream()
+                .map(owner -> new Object[]{UserRules.normalizeEmail(owner.getKey()), owner.getValue()})
+                .toList();
+        afterCommit(() -> jdbcTemplate.batchUpdate("delete from user_emails where email = ? and user_id = ?", rows));
+    }
+
+    public void releaseOwnerAfterCommit(long userId) {
+        afterCommit(() -> jdbcTemplate.update("delete from user_emails where user_id = ?", userId));
+    }
+
+    private void takeOverAbandoned(List<String> emails, DirectoryReservation reservation, Timestamp now) {
+        Timestamp abandonedBefore = Timestamp.from(now.toInstant().minus(reservationTimeout));
+        forEachChunk(emails, chunk -> {
+            List<Object> arguments = new ArrayList<>(chunk);
+            arguments.add(abandonedBefore);
+            jdbcTemplate.query("select email, user_id, reservation from user_emails where email in ("
+                    + placeholders(chunk.size()) + ") and reserved_at < ?", row -> {
+                String email = row.getString(1);
+                long userId = row.getLong(2);
+                boolean reservedOnly = row.wasNull();
+                if (!reservedOnly && hasUser(userId, email)) {
+                    return;
+                }
+                // Only if nobody took it over in the meantime
+                int updated = jdbcTemplate.update("""
+                                update user_emails set user_id = null, reservation = ?, reserved_at = ?
+                                where email = ? and reservation = ?""",
+                        reservation.id, now, email, row.getLong(3));
+                if (updated == 1) {
+                    reservation.emails.add(email);
+                }
+            }, arguments.toArray());
+        });
+    }
+
+    private boolean hasUser(long userId, String email) {
+        int shard = UserIdGenerator.shardOf(userId);
+        return shard < shards.size() && !shards.get(shard).queryForList(
+                "select id from users where id = ? and lower(email) = ?", Long.class, userId, email).isEmpty();
+    }
+
+    private static void afterCommit(Runnable action) {
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+
+    private static List<String> normalize(Collection<String> emails) {
+        return emails.stream().filter(Objects::nonNull).map(UserRules::normalizeEmail).distinct().toList();
+    }
+
+    private static void forEachChunk(List<String> emails, Consumer<List<String>> action) {
+        for (int from = 0; from < emails.size(); from += CHUNK_SIZE) {
+            action.accept(emails.subList(from, Math.min(emails.size(), from + CHUNK_SIZE)));
+        }
+    }
+
+    private static String placeholders(int count) {
+        return String.join(", ", java.util.Collections.nCopies(count, "?"));
+    }
+
+    private final class DirectoryReservation implements Reservation {
+
+        private final long id;
+        private final Set<String> emails = new HashSet<>();
+
+        DirectoryReservation(long id) {
+            this.id = id;
+        }
+
+        @Override
+        public boolean holds(String email) {
+            return email == null || emails.contains(UserRules.normalizeEmail(email));
+        }
+
+        @Override
+        public void assign(Collection<UserEntity> users) {
+            List<Object[]> rows = users.stream()
+                    .filter(user -> user.getEmail() != null && holds(user.getEmail()))
+                    .map(user -> new Object[]{user.getId(), UserRules.normalizeEmail(user.getEmail()), id})
+                    .toList();
+            if (!rows.isEmpty()) {
+                jdbcTemplate.batchUpdate("update user_emails set user_id = ? where email = ? and reservation = ?", rows);
+            }
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package org.springapp.testtask.repository;
+
+import org.springapp.testtask.dto.UserChange;
+import org.springapp.testtask.dto.UserView;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+// Plain JDBC: outbox rows are appended in one batch per transaction and read by position range,
+// neither needs the persistence context. JdbcTemplate joins the JPA transaction when one is active.
+@Repository
+public class UserOutboxRepository {
+
+    public record Head(long lastPosition, long compactedThrough, long prunedThrough) {
+    }
+
+    private static final String CHANGE_COLUMNS =
+            "position, type, user_id, version, first_name, last_name, email, date_of_birth, address, phone_number";
+
+    private static final RowMapper<UserChange> CHANGE = (rs, rowNum) -> {
+        UserChange.Type type = UserChange.Type.valueOf(rs.getString("type"));
+        long id = rs.getLong("user_id");
+        long version = rs.getLong("version");
+        UserView user = type == UserChange.Type.DELETED ? null : new UserView(id, rs.getString("first_name"),
+                rs.getString("last_name"), rs.getString("email"), rs.getDate("date_of_birth"), rs.getString("address"),
+                rs.getString("phone_number"), version);
+        return new UserChange(rs.getLong("position"), type, id, version, user);
+    };
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public UserOutboxRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    // The changes' positions are ignored, the relay numbers the rows once they are committed
+    public void append(List<UserChange> changes, Instant at) {
+        Timestamp createdAt = Timestamp.from(at);
+        jdbcTemplate.batchUpdate("""
+                insert into user_outbox (type, user_id, version, first_name, last_name, email, date_of_birth,
+                address, phone_number, created_at) values (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)""", changes, changes.size(),
+                (statement, change) -> {
+                    UserView user = change.user();
+                    statement.setString(1, change.type().name());
+                    statement.setLong(2, change.id());
+                    statement.setLong(3, change.version());
+                    statement.setString(4, user == null ? null : user.firstName());
+                    statement.setString(5, user == null ? null : user.lastName());
+                    statement.setString(6, user == null ? null : user.email());
+                    if (user == null || user.dateOfBirth() == null) {
+                        statement.setNull(7, Types.DATE);
+                    } else {
+                        statement.setDate(7, user.dateOfBirth());
+                    }
+                    statement.setString(8, user == null ? null : user.address());
+                    statement.setString(9, user == null ? null : user.phoneNumber());
+                    statement.setTimestamp(10, createdAt);
+                });
+    }
+
+    public Head findHead() {
+        return jdbcTemplate.queryForObject("select last_position, compacted_through, pruned_through from user_outbox_head where id = 1",
+                (rs, rowNum) -> new Head(rs.getLong(1), rs.getLong(2), rs.getLong(3)));
+    }
+
+    // Holds the head row until the transaction ends, so only one relay numbers rows at a time
+    public long lockHead() {
+        return jdbcTemplate.queryForObject("select last_position from user_outbox_head where id = 1 for update", Long.class);
+    }
+
+    public boolean hasUnsequenced() {
+        return !jdbcTemplate.queryForList("select id from user_outbox where position is null limit 1", Long.class).isEmpty();
+    }
+
+    public List<Long> findUnsequenced(int limit) {
+        return jdbcTemplate.queryForList("select id from user_outbox where position is null order by id limit ?", Long.class, limit);
+    }
+
+    // Numbers the rows after the given position, in the order given, and moves the head past them
+    public void assignPositions(List<Long> ids, long after) {
+        List<Object[]> positions = new ArrayList<>(ids.size());
+        for (int i = 0; i < ids.size(); i++) {
+            positions.add(new Object[]{after + i + 1, ids.get(i)});
+        }
+        jdbcTemplate.batchUpdate("update user_outbox set position = ? where id = ?", positions);
+        jdbcTemplate.update("update user_outbox_head set last_position = ? where id = 1", after + ids.size());
+    }
+
+    public List<UserChange> findSince(long position, int limit) {
+        return jdbcTemplate.query("select " + CHANGE_COLUMNS + " from user_outbox where position > ? order by position limit ?",
+                CHANGE, position, limit);
+    }
+
+    // created_at and position grow together up to the relay's delay, close enough for retention
+    public Long findLastPositionBefore(Instant before) {
+        List<Long> positions = jdbcTemplate.queryForList("""
+                select position from user_outbox where created_at < ? and position is not null
+                order by created_at desc limit 1""", Long.class, Timestamp.from(before));
+        return positions.isEmpty() ? null : positions.get(0);
+    }
+
+    // Positions in (after, through] whose user has a later change
+    public List<Long> findSuperseded(long after, long through, int limit) {
+        return jdbcTemplate.queryForList("""
+                select o.position from user_outbox o
+                where o.position > ? and o.position <= ?
+                and exists (select 1 from user_outbox n where n.user_id = o.user_id and n.position > o.position)
+                order by o.position limit ?""", Long.class, after, through, limit);
+    }
+
+    public List<Long> findThrough(long position, int limit) {
+        return jdbcTemplate.queryForList("select position from user_outbox where position <= ? order by position limit ?",
+                Long.class, position, limit);
+    }
+
+    public void deleteByPositions(List<Long> positions) {
+        jdbcTemplate.batchUpdate("delete from user_outbox where position = ?",
+                positions.stream().map(position -> new Object[]{position}).toList());
+    }
+
+    public void markCompacted(long through) {
+        jdbcTemplate.update("update user_outbox_head set compacted_through = ? where id = 1 and compacted_through < ?", through, through);
+    }
+
+    public void markPruned(long through) {
+        jdbcTemplate.update("update user_outbox_head set pruned_through = ? where id = 1 and pruned_through < ?", through, through);
+    }
+}
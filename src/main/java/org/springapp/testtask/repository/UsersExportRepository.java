@@ -0,0 +1,11 @@
+package org.springapp.testtask.repository;
+
+import org.springapp.testtask.dto.UserExportFilter;
+import org.springapp.testtask.dto.UserView;
+
+import java.util.stream.Stream;
+
+public interface UsersExportRepository {
+
+    Stream<UserView> streamForExport(UserExportFilter filter);
+}
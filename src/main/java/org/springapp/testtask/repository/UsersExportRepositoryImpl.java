@@ -0,0 +1,57 @@
+package org.springapp.testtask.repository;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.TypedQuery;
+import org.springapp.testtask.dto.UserExportFilter;
+import org.springapp.testtask.dto.UserView;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.HibernateHints.HINT_FETCH_SIZE;
+
+// Only the bounds that are set end up in the query; "(:from is null or ...)" would keep MySQL off the indexes
+class UsersExportRepositoryImpl implements UsersExportRepository {
+
+    private final EntityManager entityManager;
+
+    UsersExportRepositoryImpl(EntityManager entityManager) {
+        this.entityManager = entityManager;
+    }
+
+    @Override
+    public Stream<UserView> streamForExport(UserExportFilter filter) {
+        List<String> conditions = new ArrayList<>();
+        if (filter.fromDate() != null) {
+            conditions.add("u.dateOfBirth >= :fromDate");
+        }
+        if (filter.toDate() != null) {
+            conditions.add("u.dateOfBirth <= :toDate");
+        }
+        if (filter.fromId() != null) {
+            conditions.add("u.id >= :fromId");
+        }
+        if (filter.toId() != null) {
+            conditions.add("u.id <= :toId");
+        }
+
+        String where = conditions.isEmpty() ? "" : " where " + String.join(" and ", conditions);
+        TypedQuery<UserView> query = entityManager
+                .createQuery("select " + UsersRepository.USER_VIEW + " from UserEntity u" + where + " order by u.id", UserView.class)
+                .setHint(HINT_FETCH_SIZE, UsersRepository.STREAM_FETCH_SIZE);
+        if (filter.fromDate() != null) {
+            query.setParameter("fromDate", filter.fromDate());
+        }
+        if (filter.toDate() != null) {
+            query.setParameter("toDate", filter.toDate());
+        }
+        if (filter.fromId() != null) {
+            query.setParameter("fromId", filter.fromId());
+        }
+        if (filter.toId() != null) {
+            query.setParameter("toId", filter.toId());
+        }
+        return query.getResultStream();
+    }
+}
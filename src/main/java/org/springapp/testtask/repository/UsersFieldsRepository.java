@@ -0,0 +1,13 @@
+package org.springapp.testtask.repository;
+
+import org.springapp.testtask.dto.UserFields;
+
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+public interface UsersFieldsRepository {
+
+    // fromDate and toDate are either both set or both null
+    List<Map<String, Object>> findFields(UserFields fields, Date fromDate, Date toDate, Long after, int limit);
+}
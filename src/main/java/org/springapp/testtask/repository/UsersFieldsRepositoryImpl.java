@@ -0,0 +1,50 @@
+package org.springapp.testtask.repository;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.Tuple;
+import jakarta.persistence.TypedQuery;
+import org.springapp.testtask.dto.UserFields;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+// Selects only the requested columns as tuples, nothing enters the persistence context.
+// Field names are whitelisted by UserFields.parse, so they are safe to put into the JPQL.
+class UsersFieldsRepositoryImpl implements UsersFieldsRepository {
+
+    private final EntityManager entityManager;
+
+    UsersFieldsRepositoryImpl(EntityManager entityManager) {
+        this.entityManager = entityManager;
+    }
+
+    @Override
+    public List<Map<String, Object>> findFields(UserFields fields, Date fromDate, Date toDate, Long after, int limit) {
+        String select = fields.names().stream()
+                .map(name -> "u." + name + " as " + name)
+                .collect(Collectors.joining(", "));
+        String range = fromDate != null ? " and u.dateOfBirth between :fromDate and :toDate" : "";
+        TypedQuery<Tuple> query = entityManager
+                .createQuery("select " + select + " from UserEntity u where u.id > :after" + range + " order by u.id", Tuple.class)
+                .setParameter("after", after)
+                .setMaxResults(limit);
+        if (fromDate != null) {
+            query.setParameter("fromDate", fromDate).setParameter("toDate", toDate);
+        }
+
+        List<Tuple> rows = query.getResultList();
+        List<Map<String, Object>> result = new ArrayList<>(rows.size());
+        for (Tuple row : rows) {
+            Map<String, Object> values = new LinkedHashMap<>();
+            for (String name : fields.names()) {
+                values.put(name, row.get(name));
+            }
+            result.add(values);
+        }
+        return result;
+    }
+}
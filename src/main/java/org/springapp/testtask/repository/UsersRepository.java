@@ -1,14 +1,80 @@
 package org.springapp.testtask.repository;
 
+import jakarta.persistence.QueryHint;
+import org.springapp.testtask.dto.BirthDateBucket;
+import org.springapp.testtask.dto.UserBirthDate;
+import org.springapp.testtask.dto.UserView;
 import org.springapp.testtask.entity.UserEntity;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collection;
 import java.util.Date;
 import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
 
+import static org.hibernate.jpa.HibernateHints.HINT_FETCH_SIZE;
+
+// Declared query methods get no transaction of their own otherwise; read-only ones go to a replica when users.replicas is on
 @Repository
-public interface UsersRepository extends JpaRepository<UserEntity, Long> {
-    List<UserEntity> getUserEntitiesByDateOfBirthBetween(Date from, Date to);
-    Boolean existsByEmail(String email);
+@Transactional(readOnly = true)
+public interface UsersRepository extends JpaRepository<UserEntity, Long>, UsersExportRepository, UsersFieldsRepository {
+    int STREAM_FETCH_SIZE = 1000;
+    String USER_VIEW = "new org.springapp.testtask.dto.UserView(u.id, u.firstName, u.lastName, u.email, u.dateOfBirth, u.address, u.phoneNumber, u.version)";
+
+    <T> List<T> findByDateOfBirthBetweenAndIdGreaterThanOrderByIdAsc(Date from, Date to, Long id, Limit limit, Class<T> type);
+
+    @Query("""
+            select new org.springapp.testtask.dto.BirthDateBucket(year(u.dateOfBirth), count(u))
+            from UserEntity u where u.dateOfBirth between :from and :to
+            group by year(u.dateOfBirth) order by year(u.dateOfBirth)""")
+    List<BirthDateBucket> countByBirthYear(Date from, Date to);
+
+    @Query("""
+            select new org.springapp.testtask.dto.BirthDateBucket(year(u.dateOfBirth), month(u.dateOfBirth), count(u))
+            from UserEntity u where u.dateOfBirth between :from and :to
+            group by year(u.dateOfBirth), month(u.dateOfBirth) order by year(u.dateOfBirth), month(u.dateOfBirth)""")
+    List<BirthDateBucket> countByBirthMonth(Date from, Date to);
+
+    Optional<UserEntity> findByEmail(String email);
+
+    // Not read-only, so with users.replicas enabled it runs on the primary: this is what UserCache loads through,
+    // and a lagging replica could put a row back in the cache right after its update invalidated it
+    @Override
+    @Transactional
+    Optional<UserEntity> findById(Long id);
+
+    List<EmailOwner> findByEmailIn(Collection<String> emails);
+
+    @Modifying
+    @Transactional
+    @Query("delete from UserEntity u where u.id = :id")
+    int deleteUserById(Long id);
+
+    <T> List<T> findByIdGreaterThanOrderByIdAsc(Long id, Limit limit, Class<T> type);
+
+    <T> List<T> findByIdIn(Collection<Long> ids, Class<T> type);
+
+    @Query("select " + USER_VIEW + " from UserEntity u order by u.id")
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "" + STREAM_FETCH_SIZE))
+    Stream<UserView> streamAll();
+
+    @Query("select u.email from UserEntity u")
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "" + STREAM_FETCH_SIZE))
+    Stream<String> streamAllEmails();
+
+    @Query("select new org.springapp.testtask.dto.UserBirthDate(u.id, u.dateOfBirth) from UserEntity u order by u.id")
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "" + STREAM_FETCH_SIZE))
+    Stream<UserBirthDate> streamBirthDates();
+
+    interface EmailOwner {
+        Long getId();
+        String getEmail();
+    }
 }
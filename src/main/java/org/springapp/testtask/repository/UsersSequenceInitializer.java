@@ -0,0 +1,31 @@
+package org.springapp.testtask.repository;
+
+import org.springapp.testtask.entity.UserEntity;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+// MySQL has no sequences, so Hibernate emulates users_seq with a one-row table that starts at 1.
+// Tables that were filled through AUTO_INCREMENT need it moved past the highest id before the first insert.
+@Component
+@DependsOn("entityManagerFactory")
+@ConditionalOnProperty(name = "spring.jpa.properties.hibernate.dialect", havingValue = "org.hibernate.dialect.MySQLDialect")
+public class UsersSequenceInitializer implements InitializingBean {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public UsersSequenceInitializer(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        // The pooled optimizer hands out (next_val - allocationSize, next_val], so next_val must clear max(id) by a full block
+        jdbcTemplate.update("""
+                update users_seq set next_val = (select coalesce(max(id), 0) + ? from users)
+                where next_val < (select coalesce(max(id), 0) + ? from users)
+                """, UserEntity.ID_ALLOCATION_SIZE, UserEntity.ID_ALLOCATION_SIZE);
+    }
+}
@@ -0,0 +1,460 @@
+package org.springapp.testtask.service;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.annotation.PreDestroy;
+import org.springapp.testtask.config.UsersOutboxProperties;
+import org.springapp.testtask.dto.UserChange;
+import org.springapp.testtask.dto.UserChanges;
+import org.springapp.testtask.dto.UserView;
+import org.springapp.testtask.entity.UserEntity;
+import org.springapp.testtask.exception.ChangeOffsetExpiredException;
+import org.springapp.testtask.exception.ServerBusyException;
+import org.springapp.testtask.repository.UserOutboxRepository;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Change feed over the user outbox. The UserChangedEvents of a write transaction are collected and written to
+// user_outbox in one batch right before it commits, so a change and its outbox row commit or roll back together.
+// A relay thread numbers committed rows under a lock on the head row, so positions follow commit order across
+// instances, and hands the new ones to this instance's subscribers in batches. The latest TAIL_SIZE changes stay
+// in memory: polls and subscribers that are caught up never read the table. Writes of the reactive stack bypass it.
+@Service
+@ConditionalOnProperty(prefix = "users.outbox", name = "enabled", havingValue = "true")
+public class UserChangeFeed implements MeterBinder {
+
+    private static final int TAIL_SIZE = 2000;
+    private static final int DELETE_BATCH_SIZE = 1000;
+
+    // Gets the pages of a subscription in order; an IOException ends it
+    public interface Sink {
+        void send(UserChanges changes) throws IOException;
+
+        default void heartbeat() throws IOException {
+        }
+    }
+
+    public interface Subscription {
+        void cancel();
+    }
+
+    // Every change in (from, through], oldest first
+    private record Tail(long from, long through, List<UserChange> changes) {
+
+        List<UserChange> after(long position, int limit) {
+            int low = 0;
+            int high = changes.size();
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (changes.get(middle).position() <= position) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            return changes.subList(low, Math.min(changes.size(), low + limit));
+        }
+    }
+
+    private final UsersOutboxProperties properties;
+    private final UserOutboxRepository repository;
+    private final TransactionTemplate transaction;
+    private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+    private final Semaphore wakeUp = new Semaphore(0);
+    private final AtomicLong sequenced = new AtomicLong();
+    private final AtomicLong delivered = new AtomicLong();
+    private final AtomicLong compacted = new AtomicLong();
+    private final AtomicLong pruned = new AtomicLong();
+    private final AtomicLong relayFailures = new AtomicLong();
+    private final AtomicLong deliveryFailures = new AtomicLong();
+    private final AtomicLong pruneFailures = new AtomicLong();
+    private volatile UserOutboxRepository.Head head;
+    private volatile Tail tail;
+    private volatile boolean running;
+    private Thread relay;
+    private ExecutorService deliveries;
+    private ScheduledExecutorService pruner;
+
+    public UserChangeFeed(UsersOutboxProperties properties, UserOutboxRepository repository,
+                          PlatformTransactionManager transactionManager) {
+        this.properties = properties;
+        this.repository = repository;
+        this.transaction = new TransactionTemplate(transactionManager);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        head = repository.findHead();
+        tail = new Tail(head.lastPosition(), head.lastPosition(), List.of());
+        running = true;
+        deliveries = Executors.newFixedThreadPool(properties.deliveryThreads(), daemonThreads("user-change-delivery-"));
+        pruner = Executors.newSingleThreadScheduledExecutor(daemonThreads("user-outbox-pruner-"));
+        pruner.scheduleWithFixedDelay(this::prune, properties.pruneInterval().toMillis(),
+                properties.pruneInterval().toMillis(), TimeUnit.MILLISECONDS);
+        relay = daemonThreads("user-outbox-relay-").newThread(this::relay);
+        relay.start();
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        if (relay != null) {
+            wakeUp.release();
+            relay.join(properties.pollInterval().toMillis() * 10);
+        }
+        if (deliveries != null) {
+            deliveries.shutdownNow();
+            pruner.shutdownNow();
+        }
+    }
+
+    // Runs inside the writing transaction; the rows are written by PendingChanges just before it commits
+    @EventListener
+    public void onUserWritten(UserChangedEvent event) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            repository.append(List.of(toChange(event)), Instant.now());
+            wakeUp.release();
+            return;
+        }
+        pendingChanges().events.add(event);
+    }
+
+    // The offset of the newest change this instance has seen
+    public long position() {
+        return tail.through();
+    }
+
+    // Changes after since, at most limit of them; empty when there are none yet. Without since, none and the current offset.
+    public UserChanges read(Long since, int limit) throws ChangeOffsetExpiredException {
+        if (since == null) {
+            return new UserChanges(List.of(), position());
+        }
+        checkOffset(since);
+        return changesAfter(since, UserRules.pageSize(limit));
+    }
+
+    // The sink gets everything after since as it commits, in pages of at most limit changes, until cancelled
+    public Subscription subscribe(long since, int limit, Sink sink) throws ChangeOffsetExpiredException, ServerBusyException {
+        checkOffset(since);
+        if (subscribers.size() >= properties.maxSubscribers()) {
+            throw new ServerBusyException("Too many change subscribers, try again shortly");
+        }
+        Subscriber subscriber = new Subscriber(since, UserRules.pageSize(limit), sink);
+        subscribers.add(subscriber);
+        if (since < position()) {
+            deliverLater(subscriber);
+        }
+        return subscriber;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("users.outbox.subscribers", subscribers, Set::size)
+                .description("Open change streams and waiting long polls")
+                .register(registry);
+        Gauge.builder("users.outbox.position", this, feed -> feed.tail == null ? 0 : feed.tail.through())
+                .description("Offset of the newest change this instance has published")
+                .register(registry);
+        FunctionCounter.builder("users.outbox.sequenced", sequenced, AtomicLong::get)
+                .description("Outbox rows numbered by this instance's relay")
+                .register(registry);
+        FunctionCounter.builder("users.outbox.delivered", delivered, AtomicLong::get)
+                .description("Changes sent to subscribers")
+                .register(registry);
+        FunctionCounter.builder("users.outbox.removed", compacted, AtomicLong::get)
+                .tag("reason", "compacted")
+                .register(registry);
+        FunctionCounter.builder("users.outbox.removed", pruned, AtomicLong::get)
+                .tag("reason", "expired")
+                .register(registry);
+        FunctionCounter.builder("users.outbox.failures", relayFailures, AtomicLong::get)
+                .tag("stage", "relay")
+                .register(registry);
+        FunctionCounter.builder("users.outbox.failures", deliveryFailures, AtomicLong::get)
+                .tag("stage", "delivery")
+                .register(registry);
+        FunctionCounter.builder("users.outbox.failures", pruneFailures, AtomicLong::get)
+                .tag("stage", "prune")
+                .register(registry);
+    }
+
+    // Numbers one batch of committed rows and publishes whatever the head moved past, ours or another instance's.
+    // True when the batch was full and more rows are probably waiting.
+    synchronized boolean relayOnce() {
+        int numbered = !repository.hasUnsequenced() ? 0 : transaction.execute(status -> {
+            long last = repository.lockHead();
+            List<Long> ids = repository.findUnsequenced(properties.batchSize());
+            if (!ids.isEmpty()) {
+                repository.assignPositions(ids, last);
+            }
+            return ids.size();
+        });
+        sequenced.addAndGet(numbered);
+        head = repository.findHead();
+        if (head.lastPosition() > tail.through()) {
+            publish(head.lastPosition());
+        }
+        return numbered == properties.batchSize();
+    }
+
+    void prune() {
+        try {
+            Instant now = Instant.now();
+            compact(now.minus(properties.compactAfter()));
+            expire(now.minus(properties.retention()));
+        } catch (RuntimeException e) {
+            // the next run picks up where this one stopped
+            pruneFailures.incrementAndGet();
+        }
+    }
+
+    // Drops the changes written before the cutoff that a later change of the same user supersedes
+    void compact(Instant before) {
+        Long through = repository.findLastPositionBefore(before);
+        long after = repository.findHead().compactedThrough();
+        if (through == null || through <= after) {
+            return;
+        }
+        List<Long> positions;
+        do {
+            positions = repository.findSuperseded(after, through, DELETE_BATCH_SIZE);
+            if (!positions.isEmpty()) {
+                repository.deleteByPositions(positions);
+                compacted.addAndGet(positions.size());
+                after = positions.get(positions.size() - 1);
+            }
+        } while (positions.size() == DELETE_BATCH_SIZE);
+        repository.markCompacted(through);
+    }
+
+    // Offsets before the cutoff are refused from now on, but their rows only go on the next run:
+    // by then every instance has read the new horizon and none serves a page with a hole in it
+    void expire(Instant before) {
+        UserOutboxRepository.Head current = repository.findHead();
+        List<Long> positions;
+        do {
+            positions = repository.findThrough(current.prunedThrough(), DELETE_BATCH_SIZE);
+            if (!positions.isEmpty()) {
+                repository.deleteByPositions(positions);
+                pruned.addAndGet(positions.size());
+            }
+        } while (positions.size() == DELETE_BATCH_SIZE);
+        Long through = repository.findLastPositionBefore(before);
+        if (through != null && through > current.prunedThrough()) {
+            repository.markPruned(through);
+        }
+    }
+
+    private void relay() {
+        long lastHeartbeat = System.nanoTime();
+        while (running) {
+            try {
+                if (relayOnce()) {
+                    continue;
+                }
+            } catch (RuntimeException e) {
+                // database unavailable, try again after the next poll interval
+                relayFailures.incrementAndGet();
+            }
+            if (System.nanoTime() - lastHeartbeat >= properties.heartbeatInterval().toNanos()) {
+                subscribers.forEach(this::heartbeatLater);
+                lastHeartbeat = System.nanoTime();
+            }
+            try {
+                // a local commit releases a permit, so its changes go out without waiting for the poll
+                wakeUp.tryAcquire(properties.pollInterval().toMillis(), TimeUnit.MILLISECONDS);
+                wakeUp.drainPermits();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private void publish(long through) {
+        Tail previous = tail;
+        long from = Math.max(previous.from(), through - TAIL_SIZE);
+        List<UserChange> changes = new ArrayList<>();
+        long readAfter = from;
+        if (from <= previous.through()) {
+            changes.addAll(previous.after(from, TAIL_SIZE));
+            readAfter = previous.through();
+        }
+        for (UserChange change : repository.findSince(readAfter, TAIL_SIZE)) {
+            if (change.position() > through) {
+                break;
+            }
+            changes.add(change);
+        }
+        tail = new Tail(from, through, Collections.unmodifiableList(changes));
+        subscribers.forEach(this::deliverLater);
+    }
+
+    // Pages come from the tail when it reaches back far enough, from the table otherwise.
+    // A short page means nothing else exists up to the tail's end, so next can skip to it.
+    private UserChanges changesAfter(long position, int limit) {
+        Tail current = tail;
+        List<UserChange> changes = position >= current.from()
+                ? current.after(position, limit)
+                : repository.findSince(position, limit);
+        long last = changes.isEmpty() ? position : changes.get(changes.size() - 1).position();
+        return new UserChanges(changes, changes.size() < limit ? Math.max(last, current.through()) : last);
+    }
+
+    private void checkOffset(long since) throws ChangeOffsetExpiredException {
+        if (since < head.prunedThrough()) {
+            throw new ChangeOffsetExpiredException("Changes before offset " + head.prunedThrough()
+                    + " are no longer kept, reload the users and continue from the current offset");
+        }
+    }
+
+    private void deliverLater(Subscriber subscriber) {
+        runLater(subscriber, () -> {
+            while (!subscriber.cancelled) {
+                UserChanges page = changesAfter(subscriber.position, subscriber.limit);
+                if (!page.changes().isEmpty()) {
+                    subscriber.sink.send(page);
+                    delivered.addAndGet(page.changes().size());
+                }
+                subscriber.position = page.next();
+                if (page.changes().size() < subscriber.limit) {
+                    return true;
+                }
+            }
+            return false;
+        });
+    }
+
+    private void heartbeatLater(Subscriber subscriber) {
+        runLater(subscriber, () -> {
+            subscriber.sink.heartbeat();
+            return true;
+        });
+    }
+
+    // One task per subscriber at a time, so its pages go out in order. Whoever finds the subscriber busy
+    // leaves it be; the running task checks for newer changes once it is done.
+    private void runLater(Subscriber subscriber, SubscriberTask task) {
+        if (subscriber.cancelled || !subscriber.busy.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            deliveries.execute(() -> {
+                boolean recheck = false;
+                try {
+                    recheck = task.run();
+                } catch (IOException e) {
+                    // the client went away
+                    subscriber.cancel();
+                } catch (RuntimeException e) {
+                    // retried with the next published change
+                    deliveryFailures.incrementAndGet();
+                } finally {
+                    subscriber.busy.set(false);
+                }
+                if (recheck && subscriber.position < tail.through()) {
+                    deliverLater(subscriber);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // shutting down
+            subscriber.busy.set(false);
+        }
+    }
+
+    private PendingChanges pendingChanges() {
+        for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+            if (synchronization instanceof PendingChanges pending) {
+                return pending;
+            }
+        }
+        PendingChanges pending = new PendingChanges();
+        TransactionSynchronizationManager.registerSynchronization(pending);
+        return pending;
+    }
+
+    private static UserChange toChange(UserChangedEvent event) {
+        UserChange.Type type = UserChange.Type.valueOf(event.type().name());
+        UserEntity user = event.user();
+        if (user == null) {
+            return new UserChange(0, type, event.id(), 0, null);
+        }
+        return new UserChange(0, type, user.getId(), user.getVersion(), new UserView(user.getId(), user.getFirstName(),
+                user.getLastName(), user.getEmail(), user.getDateOfBirth(), user.getAddress(), user.getPhoneNumber(),
+                user.getVersion()));
+    }
+
+    private static CustomizableThreadFactory daemonThreads(String prefix) {
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory(prefix);
+        threadFactory.setDaemon(true);
+        return threadFactory;
+    }
+
+    @FunctionalInterface
+    private interface SubscriberTask {
+        // true when the subscriber got everything up to the tail as it was then
+        boolean run() throws IOException;
+    }
+
+    // Entities are read at commit time, after the last flush, so versions are the committed ones
+    private final class PendingChanges implements TransactionSynchronization {
+
+        private final List<UserChangedEvent> events = new ArrayList<>();
+
+        @Override
+        public void beforeCommit(boolean readOnly) {
+            repository.append(events.stream().map(UserChangeFeed::toChange).toList(), Instant.now());
+        }
+
+        @Override
+        public void afterCommit() {
+            wakeUp.release();
+        }
+    }
+
+    private final class Subscriber implements Subscription {
+
+        private final Sink sink;
+        private final int limit;
+        private final AtomicBoolean busy = new AtomicBoolean();
+        private volatile long position;
+        private volatile boolean cancelled;
+
+        Subscriber(long position, int limit, Sink sink) {
+            this.position = position;
+            this.limit = limit;
+            this.sink = sink;
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+            subscribers.remove(this);
+        }
+    }
+}
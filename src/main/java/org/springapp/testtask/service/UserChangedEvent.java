@@ -0,0 +1,22 @@
+package org.springapp.testtask.service;
+
+import org.springapp.testtask.entity.UserEntity;
+
+public record UserChangedEvent(Type type, Long id, UserEntity user) {
+
+    public enum Type {
+        CREATED, UPDATED, DELETED
+    }
+
+    public static UserChangedEvent created(UserEntity user) {
+        return new UserChangedEvent(Type.CREATED, user.getId(), user);
+    }
+
+    public static UserChangedEvent updated(UserEntity user) {
+        return new UserChangedEvent(Type.UPDATED, user.getId(), user);
+    }
+
+    public static UserChangedEvent deleted(Long id) {
+        return new UserChangedEvent(Type.DELETED, id, null);
+    }
+}
@@ -0,0 +1,131 @@
+package org.springapp.testtask.service;
+
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import org.springapp.testtask.dto.UserExportFilter;
+import org.springapp.testtask.entity.UserEntity;
+import org.springapp.testtask.exception.BatchSizeException;
+import org.springapp.testtask.exception.BirthdateRangeException;
+import org.springapp.testtask.exception.UserCreatedException;
+import org.springapp.testtask.exception.UserYearsException;
+import org.springframework.dao.DataIntegrityViolationException;
+
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+// Business rules shared by the blocking and the reactive users stacks
+public final class UserRules {
+
+    public static final int MINIMUM_AGE = 18;
+
+    // 1062 is MySQL's duplicate key error code, 23505 the standard unique violation SQLState
+    private static final int MYSQL_DUPLICATE_KEY = 1062;
+    private static final String UNIQUE_VIOLATION = "23505";
+
+    private UserRules() {
+    }
+
+    public static boolean isAdult(Date dateOfBirth) {
+        LocalDate minimumAgeAgo = LocalDate.now().minusYears(MINIMUM_AGE);
+        return !toLocalDate(dateOfBirth).isAfter(minimumAgeAgo);
+    }
+
+    public static void checkAge(Date dateOfBirth) throws UserYearsException {
+        if (!isAdult(dateOfBirth)) {
+            throw new UserYearsException("User must be " + MINIMUM_AGE + " years or older");
+        }
+    }
+
+    // MySQL compares emails case-insensitively, so the in-memory checks have to as well
+    public static String normalizeEmail(String email) {
+        return email.toLowerCase(Locale.ROOT);
+    }
+
+    // email is the only unique column a client can collide on, so a duplicate key means the email is taken
+    public static UserCreatedException translateDuplicateEmail(DataIntegrityViolationException e) {
+        if (isDuplicateKey(e)) {
+            return new UserCreatedException("User already created");
+        }
+        throw e;
+    }
+
+    public static boolean isDuplicateKey(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof SQLException sql && isDuplicateKey(sql.getErrorCode(), sql.getSQLState())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // For drivers whose exceptions aren't SQLExceptions, like the reactive stack's R2DBC one
+    public static boolean isDuplicateKey(int errorCode, String sqlState) {
+        return errorCode == MYSQL_DUPLICATE_KEY || UNIQUE_VIOLATION.equals(sqlState);
+    }
+
+    public static int pageSize(int limit) {
+        return Math.max(1, Math.min(limit, UsersService.MAX_PAGE_SIZE));
+    }
+
+    public static void checkRange(Date fromDate, Date toDate) throws BirthdateRangeException {
+        if (toDate.compareTo(fromDate) <= 0) {
+            throw new BirthdateRangeException("Range can't be equal or less than 0");
+        }
+    }
+
+    public static void checkExportFilter(UserExportFilter filter) throws BirthdateRangeException {
+        if (filter.fromDate() != null && filter.toDate() != null) {
+            checkRange(filter.fromDate(), filter.toDate());
+        }
+    }
+
+    public static void checkBatchSize(List<UserEntity> users) throws BatchSizeException {
+        if (users.isEmpty() || users.size() > UsersService.MAX_BATCH_SIZE) {
+            throw new BatchSizeException("Batch must contain from 1 to " + UsersService.MAX_BATCH_SIZE + " users");
+        }
+    }
+
+    // Per-item version of the single-user checks, used by the batch paths to report instead of throw.
+    // emailOwners maps normalized emails already taken (in the database or earlier in the batch) to their user id.
+    public static String findProblem(Validator validator, UserEntity user, Long ownId, Map<String, Long> emailOwners) {
+        Set<ConstraintViolation<UserEntity>> violations = validator.validate(user);
+        if (!violations.isEmpty()) {
+            StringBuilder errorMessage = new StringBuilder();
+            violations.forEach(violation -> errorMessage.append(violation.getMessage()).append("!"));
+            return errorMessage.toString();
+        }
+        if (user.getEmail() == null) {
+            return "Invalid email";
+        }
+        if (user.getDateOfBirth() == null) {
+            return "Date of birth can't be empty";
+        }
+
+        String conflict = findEmailConflict(user, ownId, emailOwners);
+        if (conflict != null) {
+            return conflict;
+        }
+        if (!isAdult(user.getDateOfBirth())) {
+            return "User must be " + MINIMUM_AGE + " years or older";
+        }
+        return null;
+    }
+
+    public static String findEmailConflict(UserEntity user, Long ownId, Map<String, Long> emailOwners) {
+        Long owner = emailOwners.get(normalizeEmail(user.getEmail()));
+        return owner != null && !owner.equals(ownId) ? "User already created" : null;
+    }
+
+    public static long epochDay(Date dateOfBirth) {
+        return toLocalDate(dateOfBirth).toEpochDay();
+    }
+
+    private static LocalDate toLocalDate(Date date) {
+        return date instanceof java.sql.Date sqlDate ? sqlDate.toLocalDate() : new java.sql.Date(date.getTime()).toLocalDate();
+    }
+}
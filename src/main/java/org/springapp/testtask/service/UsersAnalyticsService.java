@@ -0,0 +1,134 @@
+package org.springapp.testtask.service;
+
+import io.micrometer.observation.annotation.Observed;
+import org.springapp.testtask.cache.BirthDateColumns;
+import org.springapp.testtask.cache.BirthDateIndex;
+import org.springapp.testtask.config.UsersAnalyticsProperties;
+import org.springapp.testtask.dto.AgeBucket;
+import org.springapp.testtask.dto.BirthDateBucket;
+import org.springapp.testtask.exception.AnalyticsUnavailableException;
+import org.springapp.testtask.exception.BirthdateRangeException;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+// Counts by birth date and age from BirthDateIndex, never from the table. Date ranges include both ends,
+// like the /users/range endpoints, and ages follow UserRules.isAdult: a user is n on the n-th birthday.
+@Service
+@Observed(name = "users.service")
+public class UsersAnalyticsService {
+
+    public static final List<Integer> DEFAULT_AGE_BOUNDS = List.of(18, 26, 36, 46, 56, 66);
+    private static final int MAX_AGE = 150;
+
+    private final BirthDateIndex index;
+    private final UsersAnalyticsProperties properties;
+
+    public UsersAnalyticsService(BirthDateIndex index, UsersAnalyticsProperties properties) {
+        this.index = index;
+        this.properties = properties;
+    }
+
+    public long countByBirthDateRange(Date fromDate, Date toDate) throws BirthdateRangeException, AnalyticsUnavailableException {
+        UserRules.checkRange(fromDate, toDate);
+        return counts(day(fromDate), day(toDate) + 1)[0];
+    }
+
+    // Same buckets as UsersService.countUsersByBirthDateRange, empty ones left out
+    public List<BirthDateBucket> countByBirthDate(Date fromDate, Date toDate, BirthDateBucket.Grouping grouping)
+            throws BirthdateRangeException, AnalyticsUnavailableException {
+        UserRules.checkRange(fromDate, toDate);
+        // Nobody is counted outside the snapshot's span, which also bounds the number of buckets
+        LocalDate first = max(toLocalDate(fromDate), BirthDateColumns.FIRST_DATE);
+        LocalDate last = min(toLocalDate(toDate), BirthDateColumns.LAST_DATE);
+        if (first.isAfter(last)) {
+            return List.of();
+        }
+        List<LocalDate> starts = new ArrayList<>();
+        for (LocalDate start = first; !start.isAfter(last); start = nextPeriod(start, grouping)) {
+            starts.add(start);
+        }
+        int[] boundaries = new int[starts.size() + 1];
+        for (int i = 0; i < starts.size(); i++) {
+            boundaries[i] = (int) starts.get(i).toEpochDay();
+        }
+        boundaries[starts.size()] = (int) last.toEpochDay() + 1;
+
+        long[] counts = counts(boundaries);
+        List<BirthDateBucket> buckets = new ArrayList<>();
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] > 0) {
+                LocalDate start = starts.get(i);
+                buckets.add(grouping == BirthDateBucket.Grouping.YEAR
+                        ? new BirthDateBucket(start.getYear(), counts[i])
+                        : new BirthDateBucket(start.getYear(), start.getMonthValue(), counts[i]));
+            }
+        }
+        return buckets;
+    }
+
+    // bounds 18, 26, 36 give the buckets 18-25, 26-35 and 36 and over
+    public List<AgeBucket> countByAge(List<Integer> bounds) throws BirthdateRangeException, AnalyticsUnavailableException {
+        checkAgeBounds(bounds);
+        LocalDate today = LocalDate.now();
+        int n = bounds.size();
+        // Ascending birth days run from the oldest bucket to the youngest; aged a or more means born by today - a years
+        int[] boundaries = new int[n + 1];
+        boundaries[0] = Integer.MIN_VALUE;
+        for (int i = 0; i < n; i++) {
+            boundaries[n - i] = (int) today.minusYears(bounds.get(i)).toEpochDay() + 1;
+        }
+
+        long[] counts = counts(boundaries);
+        List<AgeBucket> buckets = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            Integer maxAge = i + 1 < n ? bounds.get(i + 1) - 1 : null;
+            buckets.add(new AgeBucket(bounds.get(i), maxAge, counts[n - 1 - i]));
+        }
+        return buckets;
+    }
+
+    private long[] counts(int... boundaries) throws AnalyticsUnavailableException {
+        if (!properties.enabled()) {
+            throw new AnalyticsUnavailableException("Analytics is disabled");
+        }
+        return index.count(boundaries)
+                .orElseThrow(() -> new AnalyticsUnavailableException("Birth date snapshot is still being built"));
+    }
+
+    private static void checkAgeBounds(List<Integer> bounds) throws BirthdateRangeException {
+        boolean valid = !bounds.isEmpty() && bounds.get(0) >= 0 && bounds.get(bounds.size() - 1) <= MAX_AGE;
+        for (int i = 1; valid && i < bounds.size(); i++) {
+            valid = bounds.get(i) > bounds.get(i - 1);
+        }
+        if (!valid) {
+            throw new BirthdateRangeException("Age bounds must be ascending ages from 0 to " + MAX_AGE);
+        }
+    }
+
+    private static LocalDate nextPeriod(LocalDate start, BirthDateBucket.Grouping grouping) {
+        return switch (grouping) {
+            case YEAR -> start.withDayOfYear(1).plusYears(1);
+            case MONTH -> start.withDayOfMonth(1).plusMonths(1);
+        };
+    }
+
+    private static int day(Date date) {
+        return BirthDateColumns.clamp(UserRules.epochDay(date));
+    }
+
+    private static LocalDate toLocalDate(Date date) {
+        return LocalDate.ofEpochDay(UserRules.epochDay(date));
+    }
+
+    private static LocalDate max(LocalDate a, LocalDate b) {
+        return a.isAfter(b) ? a : b;
+    }
+
+    private static LocalDate min(LocalDate a, LocalDate b) {
+        return a.isBefore(b) ? a : b;
+    }
+}
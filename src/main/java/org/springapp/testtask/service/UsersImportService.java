@@ -0,0 +1,374 @@
+package org.springapp.testtask.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.SequenceWriter;
+import com.fasterxml.jackson.dataformat.csv.CsvMapper;
+import com.fasterxml.jackson.dataformat.csv.CsvParser;
+import com.fasterxml.jackson.dataformat.csv.CsvSchema;
+import jakarta.annotation.PreDestroy;
+import jakarta.validation.Validator;
+import org.springapp.testtask.config.UsersCsv;
+import org.springapp.testtask.config.UsersImportProperties;
+import org.springapp.testtask.dto.BatchItemResult;
+import org.springapp.testtask.dto.BatchResult;
+import org.springapp.testtask.dto.ImportJobStatus;
+import org.springapp.testtask.dto.UsersFileFormat;
+import org.springapp.testtask.entity.UserEntity;
+import org.springapp.testtask.metrics.UsersMetrics;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Imports run as background jobs over a spooled copy of the upload, so the file is never held in memory.
+// The job thread reads records in chunks, validation workers parse and check chunks in parallel, and the
+// job thread writes them back in file order, one transaction per chunk. At most two chunks per worker
+// are in flight, so reading stalls whenever the database falls behind.
+@Service
+public class UsersImportService {
+
+    private final UsersService usersService;
+    private final Validator validator;
+    private final ObjectMapper objectMapper;
+    private final CsvMapper csvMapper;
+    private final UsersMetrics metrics;
+    private final UsersImportProperties properties;
+    private final ExecutorService jobExecutor;
+    private final ExecutorService validationExecutor;
+    private final Map<String, ImportJob> jobs = new ConcurrentHashMap<>();
+
+    public UsersImportService(UsersService usersService, Validator validator, ObjectMapper objectMapper,
+                              UsersMetrics metrics, UsersImportProperties properties) {
+        this.usersService = usersService;
+        this.validator = validator;
+        this.objectMapper = objectMapper;
+        this.csvMapper = UsersCsv.mapper();
+        this.metrics = metrics;
+        this.properties = properties;
+        this.jobExecutor = Executors.newFixedThreadPool(properties.concurrentJobs(), threadFactory("users-import-"));
+        this.validationExecutor = Executors.newFixedThreadPool(properties.effectiveParallelism(),
+                threadFactory("users-import-validation-"));
+    }
+
+    public ImportJobStatus submit(InputStream upload, UsersFileFormat format) throws IOException {
+        evictExpiredJobs();
+        Path spooled = Files.createTempFile("users-import-", "." + format.name().toLowerCase(Locale.ROOT));
+        try {
+            Files.copy(upload, spooled, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            Files.deleteIfExists(spooled);
+            throw e;
+        }
+
+        ImportJob job = new ImportJob(UUID.randomUUID().toString(), format, spooled,
+                Files.createTempFile("users-import-rejects-", ".ndjson"));
+        jobs.put(job.id, job);
+        jobExecutor.execute(() -> run(job));
+        return job.status();
+    }
+
+    public Optional<ImportJobStatus> getStatus(String id) {
+        return Optional.ofNullable(jobs.get(id)).map(ImportJob::status);
+    }
+
+    // Rejects are only served once the job is done writing them
+    public Optional<Path> getRejects(String id) {
+        return Optional.ofNullable(jobs.get(id))
+                .filter(job -> job.finishedAt != null)
+                .map(job -> job.rejects);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        jobExecutor.shutdownNow();
+        validationExecutor.shutdownNow();
+    }
+
+    private void run(ImportJob job) {
+        job.state = ImportJobStatus.State.RUNNING;
+        Deque<Future<ValidatedChunk>> inFlight = new ArrayDeque<>();
+        int window = 2 * properties.effectiveParallelism();
+        ImportJobStatus.State outcome = ImportJobStatus.State.COMPLETED;
+        String error = null;
+        try (BufferedReader reader = Files.newBufferedReader(job.upload, StandardCharsets.UTF_8);
+             SequenceWriter rejects = objectMapper.writer().withRootValueSeparator("\n").writeValues(job.rejects.toFile())) {
+            Iterator<RawRecord> records = job.format == UsersFileFormat.CSV ? csvRecords(reader) : ndjsonRecords(reader);
+            ObjectReader lineReader = objectMapper.readerFor(UserEntity.class);
+
+            List<RawRecord> chunk = new ArrayList<>(properties.chunkSize());
+            while (records.hasNext()) {
+                chunk.add(records.next());
+                if (chunk.size() == properties.chunkSize()) {
+                    List<RawRecord> full = chunk;
+                    inFlight.add(validationExecutor.submit(() -> validate(full, lineReader)));
+                    chunk = new ArrayList<>(properties.chunkSize());
+                    if (inFlight.size() >= window) {
+                        write(job, inFlight.poll().get(), rejects);
+                    }
+                }
+            }
+            if (!chunk.isEmpty()) {
+                List<RawRecord> last = chunk;
+                inFlight.add(validationExecutor.submit(() -> validate(last, lineReader)));
+            }
+            while (!inFlight.isEmpty()) {
+                write(job, inFlight.poll().get(), rejects);
+            }
+        } catch (Exception e) {
+            if (e instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
+            inFlight.forEach(future -> future.cancel(true));
+            outcome = ImportJobStatus.State.FAILED;
+            error = e.getMessage();
+        } finally {
+            try {
+                Files.deleteIfExists(job.upload);
+            } catch (IOException ignored) {
+                // the temp directory gets cleaned up eventually
+            }
+        }
+        // Set only after the rejects writer is closed, since finishedAt is what getRejects waits for
+        job.finish(outcome, error);
+    }
+
+    // One JSON document per line, a line never holds more than one user; parsing is left to the validation workers
+    private static Iterator<RawRecord> ndjsonRecords(BufferedReader reader) {
+        return new Iterator<>() {
+            private long lineNumber;
+            private RawRecord next;
+
+            @Override
+            public boolean hasNext() {
+                try {
+                    String line;
+                    while (next == null && (line = reader.readLine()) != null) {
+                        lineNumber++;
+                        if (!line.isBlank()) {
+                            next = RawRecord.unparsed(lineNumber, line);
+                        }
+                    }
+                    return next != null;
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+
+            @Override
+            public RawRecord next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                RawRecord record = next;
+                next = null;
+                return record;
+            }
+        };
+    }
+
+    // A quoted CSV value may hold line breaks (the CSV export writes multi-line addresses that way), so records
+    // are split by the CSV parser itself, on the job thread, and reach the workers already parsed
+    private Iterator<RawRecord> csvRecords(BufferedReader reader) throws IOException {
+        String header = reader.readLine();
+        if (header == null || header.isBlank()) {
+            throw new IOException("CSV header is missing");
+        }
+        String[] columns = csvMapper.readerFor(String[].class).with(CsvParser.Feature.WRAP_AS_ARRAY)
+                .<String[]>readValues(header).next();
+        CsvSchema.Builder schema = CsvSchema.builder();
+        for (String column : columns) {
+            schema.addColumn(column.trim());
+        }
+        MappingIterator<UserEntity> users = csvMapper.readerFor(UserEntity.class)
+                .with(schema.build())
+                .with(CsvParser.Feature.SKIP_EMPTY_LINES)
+                .readValues(reader);
+
+        return new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                try {
+                    return users.hasNextValue();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+
+            @Override
+            public RawRecord next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                // The parser counts from the line after the header
+                long lineNumber = users.getParser().currentLocation().getLineNr() + 1;
+                try {
+                    return RawRecord.parsed(lineNumber, users.nextValue());
+                } catch (JsonMappingException e) {
+                    // The iterator skips the rest of this record before reading the next one
+                    return RawRecord.malformed(lineNumber, "Malformed record: " + e.getOriginalMessage());
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        };
+    }
+
+    // Everything except the email uniqueness check, which needs the rows written before this chunk
+    private ValidatedChunk validate(List<RawRecord> records, ObjectReader lineReader) {
+        List<UserEntity> users = new ArrayList<>(records.size());
+        List<Long> userLines = new ArrayList<>(records.size());
+        List<Reject> rejects = new ArrayList<>();
+        for (RawRecord record : records) {
+            UserEntity user = record.user();
+            String problem = record.problem();
+            if (record.text() != null) {
+                try {
+                    user = lineReader.readValue(record.text());
+                } catch (JsonProcessingException e) {
+                    problem = "Malformed record: " + e.getOriginalMessage();
+                }
+            }
+            if (problem == null && user == null) {
+                problem = "Empty record";
+            }
+            if (problem == null) {
+                problem = UserRules.findProblem(validator, user, null, Map.of());
+            }
+
+            if (problem != null) {
+                rejects.add(new Reject(record.line(), problem));
+            } else {
+                users.add(user);
+                userLines.add(record.line());
+            }
+        }
+        return new ValidatedChunk(records.size(), users, userLines, rejects);
+    }
+
+    private void write(ImportJob job, ValidatedChunk chunk, SequenceWriter rejectsWriter) throws IOException {
+        List<Reject> rejects = new ArrayList<>(chunk.rejects());
+        int accepted = 0;
+        if (!chunk.users().isEmpty()) {
+            BatchResult result = usersService.importUsers(chunk.users());
+            for (BatchItemResult item : result.items()) {
+                if (item.status() == BatchItemResult.Status.REJECTED) {
+                    rejects.add(new Reject(chunk.userLines().get(item.index()), item.error()));
+                }
+            }
+            accepted = result.accepted();
+        }
+
+        rejects.sort(Comparator.comparingLong(Reject::line));
+        for (Reject reject : rejects) {
+            rejectsWriter.write(reject);
+        }
+        job.processed.addAndGet(chunk.size());
+        job.accepted.addAndGet(accepted);
+        job.rejected.addAndGet(rejects.size());
+        metrics.countImported("accepted", accepted);
+        metrics.countImported("rejected", rejects.size());
+    }
+
+    private void evictExpiredJobs() {
+        Instant expiry = Instant.now().minus(properties.retention());
+        jobs.values().removeIf(job -> {
+            if (job.finishedAt == null || job.finishedAt.isAfter(expiry)) {
+                return false;
+            }
+            try {
+                Files.deleteIfExists(job.rejects);
+            } catch (IOException ignored) {
+                // the temp directory gets cleaned up eventually
+            }
+            return true;
+        });
+    }
+
+    private static CustomizableThreadFactory threadFactory(String prefix) {
+        CustomizableThreadFactory factory = new CustomizableThreadFactory(prefix);
+        factory.setDaemon(true);
+        return factory;
+    }
+
+    record Reject(long line, String error) {
+    }
+
+    // An NDJSON line still to be parsed, or a CSV record the job thread has already parsed or found malformed
+    private record RawRecord(long line, String text, UserEntity user, String problem) {
+
+        static RawRecord unparsed(long line, String text) {
+            return new RawRecord(line, text, null, null);
+        }
+
+        static RawRecord parsed(long line, UserEntity user) {
+            return new RawRecord(line, null, user, null);
+        }
+
+        static RawRecord malformed(long line, String problem) {
+            return new RawRecord(line, null, null, problem);
+        }
+    }
+
+    private record ValidatedChunk(int size, List<UserEntity> users, List<Long> userLines, List<Reject> rejects) {
+    }
+
+    private static final class ImportJob {
+        final String id;
+        final UsersFileFormat format;
+        final Path upload;
+        final Path rejects;
+        final Instant submittedAt = Instant.now();
+        final AtomicLong processed = new AtomicLong();
+        final AtomicLong accepted = new AtomicLong();
+        final AtomicLong rejected = new AtomicLong();
+        volatile ImportJobStatus.State state = ImportJobStatus.State.QUEUED;
+        volatile String error;
+        volatile Instant finishedAt;
+
+        ImportJob(String id, UsersFileFormat format, Path upload, Path rejects) {
+            this.id = id;
+            this.format = format;
+            this.upload = upload;
+            this.rejects = rejects;
+        }
+
+        void finish(ImportJobStatus.State finalState, String finalError) {
+            error = finalError;
+            state = finalState;
+            finishedAt = Instant.now();
+        }
+
+        ImportJobStatus status() {
+            return new ImportJobStatus(id, state, processed.get(), accepted.get(), rejected.get(),
+                    error, submittedAt, finishedAt);
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package org.springapp.testtask.service;
+
+import io.micrometer.observation.annotation.Observed;
+import org.springapp.testtask.cache.UserSearchIndex;
+import org.springapp.testtask.config.UsersSearchProperties;
+import org.springapp.testtask.datasource.UserShards;
+import org.springapp.testtask.dto.UserView;
+import org.springapp.testtask.exception.SearchUnavailableException;
+import org.springapp.testtask.metrics.UsersMetrics;
+import org.springapp.testtask.repository.UsersRepository;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+@Service
+@Observed(name = "users.service")
+public class UsersSearchService {
+
+    private final UserSearchIndex index;
+    private final UsersRepository repository;
+    private final UsersSearchProperties properties;
+    private final UsersMetrics metrics;
+    private final UserShards shards;
+
+    public UsersSearchService(UserSearchIndex index, UsersRepository repository, UsersSearchProperties properties,
+                              UsersMetrics metrics, UserShards shards) {
+        this.index = index;
+        this.repository = repository;
+        this.properties = properties;
+        this.metrics = metrics;
+        this.shards = shards;
+    }
+
+    // The index ranks, the table supplies the current rows; a user deleted in between is left out of the page.
+    // Pages end at max-result-window, deeper ones would make every query rank that many users.
+    @Transactional(readOnly = true)
+    public List<UserView> search(String query, int offset, int limit) throws SearchUnavailableException {
+        if (!properties.enabled()) {
+            throw new SearchUnavailableException("Search is disabled");
+        }
+        int pageSize = UserRules.pageSize(limit);
+        int from = Math.max(0, offset);
+        if (from >= properties.maxResultWindow()) {
+            return List.of();
+        }
+        List<Long> ids = index.search(query, from, Math.min(pageSize, properties.maxResultWindow() - from))
+                .orElseThrow(() -> new SearchUnavailableException("Search index is still being built"));
+        if (ids.isEmpty()) {
+            return metrics.recordResultSize("search", List.of());
+        }
+        Map<Long, UserView> users = shards.collect(() -> repository.findByIdIn(ids, UserView.class)).stream()
+                .collect(Collectors.toMap(UserView::id, Function.identity()));
+        return metrics.recordResultSize("search", ids.stream().map(users::get).filter(Objects::nonNull).toList());
+    }
+}
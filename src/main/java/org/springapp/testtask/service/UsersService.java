@@ -1,95 +1,519 @@
 package org.springapp.testtask.service;
 
+import io.micrometer.observation.annotation.Observed;
+import jakarta.persistence.EntityManager;
+import jakarta.validation.Validator;
+import org.springapp.testtask.cache.EmailIndex;
+import org.springapp.testtask.cache.UserCache;
+import org.springapp.testtask.datasource.UserShards;
+import org.springapp.testtask.dto.BatchItemResult;
+import org.springapp.testtask.dto.BatchResult;
+import org.springapp.testtask.dto.BirthDateBucket;
+import org.springapp.testtask.dto.UserExportFilter;
+import org.springapp.testtask.dto.UserFields;
+import org.springapp.testtask.dto.UserSummary;
+import org.springapp.testtask.dto.UserVersion;
+import org.springapp.testtask.dto.UserView;
 import org.springapp.testtask.entity.UserEntity;
+import org.springapp.testtask.exception.BatchSizeException;
 import org.springapp.testtask.exception.BirthdateRangeException;
 import org.springapp.testtask.exception.NoUserException;
+import org.springapp.testtask.exception.PreconditionFailedException;
 import org.springapp.testtask.exception.UserCreatedException;
 import org.springapp.testtask.exception.UserYearsException;
+import org.springapp.testtask.metrics.UsersMetrics;
+import org.springapp.testtask.repository.UserEmailDirectory;
 import org.springapp.testtask.repository.UsersRepository;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.sql.Date;
-import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.Function;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
+// Each public method gets a users.service timer (tagged by method) and a span.
+// With users.sharding on, single-user calls bind the user's shard first, reads ask every shard and merge,
+// and batches write one transaction per shard.
 @Service
+@Observed(name = "users.service")
 public class UsersService {
 
+    public static final int DEFAULT_PAGE_SIZE = 100;
+    public static final int MAX_PAGE_SIZE = 1000;
+    public static final int MAX_BATCH_SIZE = 10_000;
+    // Keep in step with spring.jpa.properties.hibernate.jdbc.batch_size
+    private static final int JDBC_BATCH_SIZE = 50;
+    private static final int MAX_DUPLICATE_RETRIES = 3;
+    private static final Comparator<BirthDateBucket> BUCKET_ORDER = Comparator.comparing(BirthDateBucket::year)
+            .thenComparing(BirthDateBucket::month, Comparator.nullsFirst(Comparator.naturalOrder()));
+
     private final UsersRepository repository;
+    private final EntityManager entityManager;
+    private final Validator validator;
+    private final UserCache userCache;
+    private final ApplicationEventPublisher eventPublisher;
+    private final UsersMetrics metrics;
+    private final EmailIndex emailIndex;
+    private final UserShards shards;
+    // Only there when sharded
+    private final UserEmailDirectory emailDirectory;
+    // Batches run their attempts in it themselves, see retryOnDuplicateEmail
+    private final TransactionTemplate writeTransaction;
 
-    public UsersService(UsersRepository repository) {
+    public UsersService(UsersRepository repository, EntityManager entityManager, Validator validator,
+                        UserCache userCache, ApplicationEventPublisher eventPublisher, UsersMetrics metrics,
+                        EmailIndex emailIndex, UserShards shards, ObjectProvider<UserEmailDirectory> emailDirectory,
+                        PlatformTransactionManager transactionManager) {
         this.repository = repository;
+        this.entityManager = entityManager;
+        this.validator = validator;
+        this.userCache = userCache;
+        this.eventPublisher = eventPublisher;
+        this.metrics = metrics;
+        this.emailIndex = emailIndex;
+        this.shards = shards;
+        this.emailDirectory = emailDirectory.getIfAvailable();
+        this.writeTransaction = new TransactionTemplate(transactionManager);
+    }
+
+    // Reads return UserView projections, so list and range queries never load entities into the persistence context
+    public List<UserView> getAllUsers() {
+        return getAllUsers(0L, DEFAULT_PAGE_SIZE);
+    }
+
+    @Transactional(readOnly = true)
+    public List<UserView> getAllUsers(Long after, int limit) {
+        return metrics.recordResultSize("list", shards.gather(UserRules.pageSize(limit), UserView::id,
+                () -> repository.findByIdGreaterThanOrderByIdAsc(after == null ? 0L : after, pageLimit(limit), UserView.class)));
+    }
+
+    // Cheap validator for a page: only ids and versions, so pollers can get a 304 without loading the page
+    @Transactional(readOnly = true)
+    public List<UserVersion> getUserVersions(Long after, int limit) {
+        return shards.gather(UserRules.pageSize(limit), UserVersion::id,
+                () -> repository.findByIdGreaterThanOrderByIdAsc(after == null ? 0L : after, pageLimit(limit), UserVersion.class));
+    }
+
+    @Transactional(readOnly = true)
+    public List<Map<String, Object>> getUserFields(UserFields fields, Long after, int limit) {
+        return metrics.recordResultSize("list", shards.gather(UserRules.pageSize(limit), UsersService::rowId,
+                () -> repository.findFields(fields, null, null, after == null ? 0L : after, UserRules.pageSize(limit))));
     }
 
-    public List<UserEntity> getAllUsers() {
-        return repository.findAll();
+    @Transactional(readOnly = true)
+    public void streamAllUsers(Consumer<UserView> consumer) {
+        forEachCounted(repository::streamAll, "stream", consumer);
+    }
+
+    @Transactional(readOnly = true)
+    public void exportUsers(UserExportFilter filter, Consumer<UserView> consumer) throws BirthdateRangeException {
+        UserRules.checkExportFilter(filter);
+        forEachCounted(() -> repository.streamForExport(filter), "export", consumer);
     }
 
     public UserEntity getUser(Long id) throws NoUserException {
-        return repository.findById(id).orElseThrow(() -> new NoUserException("No user by this id"));
+        return userCache.get(id, this::findById).orElseThrow(() -> new NoUserException("No user by this id"));
+    }
+
+    public List<UserView> getUsersByBirthDateRange(Date fromDate,
+                                                   Date toDate) throws BirthdateRangeException {
+        return getUsersByBirthDateRange(fromDate, toDate, 0L, DEFAULT_PAGE_SIZE);
+    }
+
+    @Transactional(readOnly = true)
+    public List<UserView> getUsersByBirthDateRange(Date fromDate, Date toDate,
+                                                   Long after, int limit) throws BirthdateRangeException {
+        UserRules.checkRange(fromDate, toDate);
+        return metrics.recordResultSize("range", shards.gather(UserRules.pageSize(limit), UserView::id,
+                () -> repository.findByDateOfBirthBetweenAndIdGreaterThanOrderByIdAsc(
+                        fromDate, toDate, after == null ? 0L : after, pageLimit(limit), UserView.class)));
+    }
+
+    @Transactional(readOnly = true)
+    public List<UserVersion> getUserVersionsByBirthDateRange(Date fromDate, Date toDate,
+                                                             Long after, int limit) throws BirthdateRangeException {
+        UserRules.checkRange(fromDate, toDate);
+        return shards.gather(UserRules.pageSize(limit), UserVersion::id,
+                () -> repository.findByDateOfBirthBetweenAndIdGreaterThanOrderByIdAsc(
+                        fromDate, toDate, after == null ? 0L : after, pageLimit(limit), UserVersion.class));
+    }
+
+    @Transactional(readOnly = true)
+    public List<Map<String, Object>> getUserFieldsByBirthDateRange(UserFields fields, Date fromDate, Date toDate,
+                                                                   Long after, int limit) throws BirthdateRangeException {
+        UserRules.checkRange(fromDate, toDate);
+        return metrics.recordResultSize("range", shards.gather(UserRules.pageSize(limit), UsersService::rowId,
+                () -> repository.findFields(fields, fromDate, toDate, after == null ? 0L : after, UserRules.pageSize(limit))));
+    }
+
+    @Transactional(readOnly = true)
+    public List<UserSummary> getUserSummariesByBirthDateRange(Date fromDate, Date toDate,
+                                                              Long after, int limit) throws BirthdateRangeException {
+        UserRules.checkRange(fromDate, toDate);
+        return metrics.recordResultSize("range.summary", shards.gather(UserRules.pageSize(limit), UserSummary::id,
+                () -> repository.findByDateOfBirthBetweenAndIdGreaterThanOrderByIdAsc(
+                        fromDate, toDate, after == null ? 0L : after, pageLimit(limit), UserSummary.class)));
+    }
+
+    @Transactional(readOnly = true)
+    public List<BirthDateBucket> countUsersByBirthDateRange(Date fromDate, Date toDate,
+                                                            BirthDateBucket.Grouping grouping) throws BirthdateRangeException {
+        UserRules.checkRange(fromDate, toDate);
+        List<BirthDateBucket> buckets = shards.collect(() -> switch (grouping) {
+            case YEAR -> repository.countByBirthYear(fromDate, toDate);
+            case MONTH -> repository.countByBirthMonth(fromDate, toDate);
+        });
+        return shards.count() == 1 ? buckets : mergeBuckets(buckets);
     }
 
-    public List<UserEntity> getUsersByBirthDateRange(Date fromDate,
-                                                     Date toDate) throws BirthdateRangeException {
-        if (toDate.compareTo(fromDate) <= 0) {
-            throw new BirthdateRangeException("Range can't be equal or less than 0");
+    // Single-email form of the batch lookup, so the email index can answer for emails it has never seen
+    public boolean isEmailTaken(String email) {
+        return !emailIndex.findOwners(Set.of(email), this::lookUpEmailOwners).isEmpty();
+    }
+
+    public Optional<UserEntity> findUserByEmail(String email) {
+        return shards.collect(() -> repository.findByEmail(email).stream().toList()).stream().findFirst();
+    }
+
+    @Transactional(rollbackFor = Exception.class)
+    public UserEntity createUser(UserEntity newUser) throws UserCreatedException, UserYearsException {
+        isUserHasNoTrouble(newUser);
+        newUser.setId(null);
+        UserEntity createdUser;
+        try (UserShards.Binding ignored = shards.bind(shards.shardFor(newUser.getEmail()))) {
+            UserEmailDirectory.Reservation reservation = reserve(Collections.singletonList(newUser.getEmail()));
+            if (!reservation.holds(newUser.getEmail())) {
+                throw new UserCreatedException("User already created");
+            }
+            createdUser = repository.saveAndFlush(newUser);
+            reservation.assign(List.of(createdUser));
+        } catch (DataIntegrityViolationException e) {
+            throw UserRules.translateDuplicateEmail(e);
         }
-        return repository.getUserEntitiesByDateOfBirthBetween(fromDate, toDate);
+        eventPublisher.publishEvent(UserChangedEvent.created(createdUser));
+        return createdUser;
+    }
+
+    public BatchResult createUsers(List<UserEntity> newUsers) throws BatchSizeException {
+        UserRules.checkBatchSize(newUsers);
+        return retryOnDuplicateEmail(useEmailIndex -> persistNewUsers(newUsers, true, useEmailIndex));
+    }
+
+    // Import rows already went through UserRules.findProblem in parallel, only their emails are left to check
+    public BatchResult importUsers(List<UserEntity> validatedUsers) {
+        return retryOnDuplicateEmail(useEmailIndex -> persistNewUsers(validatedUsers, false, useEmailIndex));
     }
 
-    public UserEntity createUser(UserEntity newUser) throws UserCreatedException, UserYearsException, NoUserException {
-        isUserHasNoTrouble(0L, newUser);
-        return repository.save(newUser);
+    public BatchResult updateUsers(List<UserEntity> updatedUsers) throws BatchSizeException {
+        UserRules.checkBatchSize(updatedUsers);
+        return retryOnDuplicateEmail(useEmailIndex -> updateAll(updatedUsers, useEmailIndex));
     }
 
-    public UserEntity updateAllUserInfo(Long id, UserEntity updatedUser) throws UserYearsException, UserCreatedException, NoUserException {
-        isUserHasNoTrouble(id, updatedUser);
-        updatedUser.setId(id);
-        return repository.save(updatedUser);
+    private BatchResult updateAll(List<UserEntity> updatedUsers, boolean useEmailIndex) {
+        Map<String, Long> emailOwners = findEmailOwners(updatedUsers, useEmailIndex);
+        BatchItemResult[] results = new BatchItemResult[updatedUsers.size()];
+        // Users without an id are rejected by whichever part they land in
+        Map<Integer, List<Integer>> parts = new TreeMap<>();
+        for (int i = 0; i < updatedUsers.size(); i++) {
+            Long id = updatedUsers.get(i).getId();
+            parts.computeIfAbsent(id == null ? 0 : shards.shardOf(id), shard -> new ArrayList<>()).add(i);
+        }
+        shards.writeEachShard(parts, positions -> updatePart(updatedUsers, positions, emailOwners, results));
+        return BatchResult.of(Arrays.asList(results));
     }
 
-    public UserEntity updateUserInfo(Long id, UserEntity updatedUser) throws UserYearsException, UserCreatedException, NoUserException {
-        UserEntity existingUser = isUserHasNoTrouble(id, updatedUser);
+    @Transactional(rollbackFor = Exception.class)
+    public UserEntity updateAllUserInfo(Long id, UserEntity updatedUser) throws UserYearsException, UserCreatedException, NoUserException, PreconditionFailedException {
+        return updateAllUserInfo(id, updatedUser, null);
+    }
 
-        existingUser.setFirstName(updatedUser.getFirstName());
-        existingUser.setLastName(updatedUser.getLastName());
-        existingUser.setEmail(updatedUser.getEmail());
-        existingUser.setDateOfBirth(updatedUser.getDateOfBirth());
-        existingUser.setAddress(updatedUser.getAddress());
-        existingUser.setPhoneNumber(updatedUser.getPhoneNumber());
+    // expectedVersions come from If-Match; null keeps the update unconditional, an empty set always fails it
+    @Transactional(rollbackFor = Exception.class)
+    public UserEntity updateAllUserInfo(Long id, UserEntity updatedUser, Set<Long> expectedVersions) throws UserYearsException, UserCreatedException, NoUserException, PreconditionFailedException {
+        return updateExistingUser(id, updatedUser, expectedVersions);
+    }
 
-        return repository.save(existingUser);
+    @Transactional(rollbackFor = Exception.class)
+    public UserEntity updateUserInfo(Long id, UserEntity updatedUser) throws UserYearsException, UserCreatedException, NoUserException, PreconditionFailedException {
+        return updateUserInfo(id, updatedUser, null);
     }
 
+    @Transactional(rollbackFor = Exception.class)
+    public UserEntity updateUserInfo(Long id, UserEntity updatedUser, Set<Long> expectedVersions) throws UserYearsException, UserCreatedException, NoUserException, PreconditionFailedException {
+        return updateExistingUser(id, updatedUser, expectedVersions);
+    }
+
+    @Transactional
     public void deleteUser(Long id) throws NoUserException {
-        Optional<UserEntity> user = repository.findById(id);
-        if (user.isEmpty()) {
-            throw new NoUserException("No user by this id");
+        try (UserShards.Binding ignored = shards.bind(shards.shardOf(id))) {
+            if (repository.deleteUserById(id) == 0) {
+                throw new NoUserException("No user by this id");
+            }
+        }
+        if (emailDirectory != null) {
+            emailDirectory.releaseOwnerAfterCommit(id);
+        }
+        eventPublisher.publishEvent(UserChangedEvent.deleted(id));
+    }
+
+    // A batch reports taken emails per item, but a concurrent insert (another instance, the reactive stack) can take
+    // one between the IN query and the flush, and the email index only learns other instances' rows on its next
+    // rebuild. The duplicate key then fails the whole transaction, so the batch runs again in a new one, asking the
+    // database for every email, and the item comes back REJECTED. The flush is the entity manager's, which leaves
+    // Hibernate's exception untranslated, hence the cause walk. Sharded batches never get here: user_emails
+    // reservations decide per item, and their parts have already committed.
+    private BatchResult retryOnDuplicateEmail(Function<Boolean, BatchResult> batch) {
+        for (int attempt = 1; ; attempt++) {
+            boolean useEmailIndex = attempt == 1;
+            try {
+                return writeTransaction.execute(status -> batch.apply(useEmailIndex));
+            } catch (RuntimeException e) {
+                if (attempt == MAX_DUPLICATE_RETRIES || shards.enabled() || !UserRules.isDuplicateKey(e)) {
+                    throw e;
+                }
+            }
+        }
+    }
+
+    // Validated in batch order first, so an email is decided the same way however the batch splits into shards
+    private BatchResult persistNewUsers(List<UserEntity> newUsers, boolean validate, boolean useEmailIndex) {
+        Map<String, Long> emailOwners = findEmailOwners(newUsers, useEmailIndex);
+        BatchItemResult[] results = new BatchItemResult[newUsers.size()];
+        Map<Integer, List<Integer>> parts = new TreeMap<>();
+
+        for (int i = 0; i < newUsers.size(); i++) {
+            UserEntity user = newUsers.get(i);
+            String problem = validate
+                    ? UserRules.findProblem(validator, user, null, emailOwners)
+                    : UserRules.findEmailConflict(user, null, emailOwners);
+            if (problem != null) {
+                results[i] = BatchItemResult.rejected(i, problem);
+                continue;
+            }
+            emailOwners.put(UserRules.normalizeEmail(user.getEmail()), UserEmailDirectory.RESERVED);
+            parts.computeIfAbsent(shards.shardFor(user.getEmail()), shard -> new ArrayList<>()).add(i);
         }
-        repository.deleteById(id);
+        shards.writeEachShard(parts, positions -> persistPart(newUsers, positions, results));
+        return BatchResult.of(Arrays.asList(results));
     }
 
-    private UserEntity isUserHasNoTrouble(Long id, UserEntity user) throws UserCreatedException, UserYearsException, NoUserException {
-        Optional<UserEntity> oldUser = Optional.empty();
-        if (id != 0L) {
-            oldUser = repository.findById(id);
+    private void persistPart(List<UserEntity> newUsers, List<Integer> positions, BatchItemResult[] results) {
+        UserEmailDirectory.Reservation reservation = reserve(positions.stream().map(i -> newUsers.get(i).getEmail()).toList());
+        List<UserEntity> persisted = new ArrayList<>(positions.size());
+        for (int i : positions) {
+            UserEntity user = newUsers.get(i);
+            // Taken by a concurrent write on another shard since the lookup
+            if (!reservation.holds(user.getEmail())) {
+                results[i] = BatchItemResult.rejected(i, "User already created");
+                continue;
+            }
+
+            user.setId(null);
+            entityManager.persist(user);
+            eventPublisher.publishEvent(UserChangedEvent.created(user));
+            results[i] = BatchItemResult.accepted(i, BatchItemResult.Status.CREATED, user.getId());
+            persisted.add(user);
+
+            if (persisted.size() % JDBC_BATCH_SIZE == 0) {
+                entityManager.flush();
+                entityManager.clear();
+            }
         }
+        entityManager.flush();
+        reservation.assign(persisted);
+    }
+
+    private void updatePart(List<UserEntity> updatedUsers, List<Integer> positions, Map<String, Long> emailOwners,
+                            BatchItemResult[] results) {
+        Set<Long> ids = positions.stream()
+                .map(i -> updatedUsers.get(i).getId())
+                .filter(Objects::nonNull)
+                .collect(Collectors.toSet());
+        Map<Long, UserEntity> existingUsers = repository.findAllById(ids).stream()
+                .collect(Collectors.toMap(UserEntity::getId, Function.identity()));
 
-        if (repository.existsByEmail(user.getEmail())) {
-            throw new UserCreatedException("User already created");
-        } else if (oldUser.isEmpty() && id != 0) {
-            throw new NoUserException("User not found with id: " + id);
-        } else {
-            LocalDate currentDate = LocalDate.now();
-            LocalDate eighteenYearsAgo = currentDate.minusYears(18);
-            LocalDate userBirthDate = user.getDateOfBirth().toLocalDate();
-
-            if (userBirthDate.isAfter(eighteenYearsAgo)) {
-                throw new UserYearsException("User must be 18 years or older");
+        List<Integer> valid = new ArrayList<>(positions.size());
+        List<String> newEmails = new ArrayList<>();
+        for (int i : positions) {
+            UserEntity user = updatedUsers.get(i);
+            UserEntity existingUser = user.getId() == null ? null : existingUsers.get(user.getId());
+            if (existingUser == null) {
+                results[i] = BatchItemResult.rejected(i, "User not found with id: " + user.getId());
+                continue;
+            }
+            String problem = UserRules.findProblem(validator, user, existingUser.getId(), emailOwners);
+            if (problem != null) {
+                results[i] = BatchItemResult.rejected(i, problem);
+                continue;
             }
+            emailOwners.put(UserRules.normalizeEmail(user.getEmail()), existingUser.getId());
+            valid.add(i);
+            if (!sameEmail(existingUser.getEmail(), user.getEmail())) {
+                newEmails.add(user.getEmail());
+            }
+        }
+
+        UserEmailDirectory.Reservation reservation = reserve(newEmails);
+        Map<String, Long> oldEmails = new HashMap<>();
+        List<UserEntity> moved = new ArrayList<>();
+        for (int i : valid) {
+            UserEntity user = updatedUsers.get(i);
+            UserEntity existingUser = existingUsers.get(user.getId());
+            if (!sameEmail(existingUser.getEmail(), user.getEmail())) {
+                if (!reservation.holds(user.getEmail())) {
+                    results[i] = BatchItemResult.rejected(i, "User already created");
+                    continue;
+                }
+                if (existingUser.getEmail() != null) {
+                    oldEmails.put(existingUser.getEmail(), existingUser.getId());
+                }
+                moved.add(existingUser);
+            }
+
+            copyUserInfo(existingUser, user);
+            eventPublisher.publishEvent(UserChangedEvent.updated(existingUser));
+            results[i] = BatchItemResult.accepted(i, BatchItemResult.Status.UPDATED, existingUser.getId());
+        }
+        entityManager.flush();
+        reservation.assign(moved);
+        if (emailDirectory != null) {
+            emailDirectory.releaseAfterCommit(oldEmails);
+        }
+    }
+
+    // One SELECT to load the managed row, one UPDATE from dirty checking; the unique index on email decides duplicates.
+    // The UPDATE is guarded by the version column, so a concurrent writer makes it fail instead of being overwritten.
+    private UserEntity updateExistingUser(Long id, UserEntity updatedUser, Set<Long> expectedVersions) throws UserYearsException, UserCreatedException, NoUserException, PreconditionFailedException {
+        try (UserShards.Binding ignored = shards.bind(shards.shardOf(id))) {
+            UserEntity existingUser = repository.findById(id)
+                    .orElseThrow(() -> new NoUserException("User not found with id: " + id));
+            if (expectedVersions != null && !expectedVersions.contains(existingUser.getVersion())) {
+                throw new PreconditionFailedException("User has been modified since it was read");
+            }
+            isUserHasNoTrouble(updatedUser);
+            String oldEmail = existingUser.getEmail();
+            boolean emailChanged = !sameEmail(oldEmail, updatedUser.getEmail());
+            UserEmailDirectory.Reservation reservation = emailChanged
+                    ? reserve(Collections.singletonList(updatedUser.getEmail()))
+                    : UserEmailDirectory.Reservation.NONE;
+            if (!reservation.holds(updatedUser.getEmail())) {
+                throw new UserCreatedException("User already created");
+            }
+            copyUserInfo(existingUser, updatedUser);
+            try {
+                repository.flush();
+            } catch (DataIntegrityViolationException e) {
+                throw UserRules.translateDuplicateEmail(e);
+            }
+            reservation.assign(List.of(existingUser));
+            if (emailChanged && oldEmail != null && emailDirectory != null) {
+                emailDirectory.releaseAfterCommit(Map.of(oldEmail, id));
+            }
+            eventPublisher.publishEvent(UserChangedEvent.updated(existingUser));
+            return existingUser;
+        }
+    }
+
+    private void isUserHasNoTrouble(UserEntity user) throws UserYearsException {
+        UserRules.checkAge(user.getDateOfBirth());
+    }
+
+    private void copyUserInfo(UserEntity target, UserEntity source) {
+        target.setFirstName(source.getFirstName());
+        target.setLastName(source.getLastName());
+        target.setEmail(source.getEmail());
+        target.setDateOfBirth(source.getDateOfBirth());
+        target.setAddress(source.getAddress());
+        target.setPhoneNumber(source.getPhoneNumber());
+    }
+
+    private void forEachCounted(Supplier<Stream<UserView>> stream, String operation, Consumer<UserView> consumer) {
+        long[] rows = {0};
+        try {
+            shards.forEachShard(() -> {
+                try (Stream<UserView> users = stream.get()) {
+                    users.forEach(user -> {
+                        consumer.accept(user);
+                        rows[0]++;
+                    });
+                }
+            });
+        } finally {
+            metrics.recordResultSize(operation, rows[0]);
         }
+    }
+
+    private Optional<UserEntity> findById(Long id) {
+        try (UserShards.Binding ignored = shards.bind(shards.shardOf(id))) {
+            return repository.findById(id);
+        }
+    }
+
+    private UserEmailDirectory.Reservation reserve(Collection<String> emails) {
+        return emailDirectory == null ? UserEmailDirectory.Reservation.NONE : emailDirectory.reserve(emails);
+    }
 
-        return oldUser.orElse(null);
+    private static boolean sameEmail(String current, String updated) {
+        return current != null && updated != null && UserRules.normalizeEmail(current).equals(UserRules.normalizeEmail(updated));
+    }
+
+    private static long rowId(Map<String, Object> row) {
+        return ((Number) row.get("id")).longValue();
+    }
+
+    // Every shard counts its own users, the same year or month comes back once per shard
+    private static List<BirthDateBucket> mergeBuckets(List<BirthDateBucket> buckets) {
+        Map<BirthDateBucket, Long> counts = new LinkedHashMap<>();
+        buckets.stream()
+                .sorted(BUCKET_ORDER)
+                .forEach(bucket -> counts.merge(new BirthDateBucket(bucket.year(), bucket.month(), null), bucket.count(), Long::sum));
+        return counts.entrySet().stream()
+                .map(bucket -> new BirthDateBucket(bucket.getKey().year(), bucket.getKey().month(), bucket.getValue()))
+                .toList();
+    }
+
+    private static Limit pageLimit(int limit) {
+        return Limit.of(UserRules.pageSize(limit));
+    }
+
+    // One IN query for the whole batch instead of an exists query per user,
+    // narrowed by the email index to the emails that might already be taken
+    private Map<String, Long> findEmailOwners(List<UserEntity> users, boolean useEmailIndex) {
+        Set<String> emails = users.stream()
+                .map(UserEntity::getEmail)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toSet());
+        return useEmailIndex ? emailIndex.findOwners(emails, this::lookUpEmailOwners) : lookUpEmailOwners(emails);
+    }
+
+    private Map<String, Long> lookUpEmailOwners(Set<String> emails) {
+        if (emailDirectory != null) {
+            return emailDirectory.findOwners(emails);
+        }
+        Map<String, Long> owners = new HashMap<>();
+        repository.findByEmailIn(emails).forEach(owner -> owners.put(UserRules.normalizeEmail(owner.getEmail()), owner.getId()));
+        return owners;
     }
 }
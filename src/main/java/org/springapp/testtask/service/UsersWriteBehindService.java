@@ -0,0 +1,329 @@
+package org.springapp.testtask.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.ConstraintViolationException;
+import jakarta.validation.Validator;
+import org.springapp.testtask.config.UsersWriteBehindProperties;
+import org.springapp.testtask.dto.BatchItemResult;
+import org.springapp.testtask.dto.BatchResult;
+import org.springapp.testtask.dto.PendingUserStatus;
+import org.springapp.testtask.entity.UserEntity;
+import org.springapp.testtask.exception.UserCreatedException;
+import org.springapp.testtask.exception.UserYearsException;
+import org.springapp.testtask.exception.WriteQueueFullException;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.RecoverableDataAccessException;
+import org.springframework.dao.TransientDataAccessException;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.CannotCreateTransactionException;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.sql.SQLRecoverableException;
+import java.sql.SQLTransientException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Opt-in write-behind for POST /users. The request is checked and its email reserved synchronously,
+// then the user is appended to a local log and acknowledged with 202 and a tracking id once the log is fsync'd.
+// One writer thread drains the queue into the database in batches, through the same path as imports.
+// On startup the entries without an outcome are replayed before any request is accepted.
+// Reservations only cover this instance; a race with another instance ends with the unique index and a REJECTED status.
+@Service
+@ConditionalOnProperty(prefix = "users.write-behind", name = "enabled", havingValue = "true")
+public class UsersWriteBehindService implements MeterBinder {
+
+    private static final Duration MAX_BACKOFF = Duration.ofSeconds(30);
+    // The varchar(255) the users columns are created with
+    private static final int MAX_COLUMN_LENGTH = 255;
+
+    private final UsersService usersService;
+    private final Validator validator;
+    private final ObjectMapper objectMapper;
+    private final UsersWriteBehindProperties properties;
+    private final BlockingQueue<Pending> queue = new LinkedBlockingQueue<>();
+    private final AtomicInteger depth = new AtomicInteger();
+    private final Map<String, String> reservedEmails = new ConcurrentHashMap<>();
+    private final Map<String, PendingUserStatus> statuses = new ConcurrentHashMap<>();
+    private final AtomicLong writeFailures = new AtomicLong();
+    private WriteBehindLog log;
+    private Thread writer;
+    private volatile boolean running;
+
+    public UsersWriteBehindService(UsersService usersService, Validator validator, ObjectMapper objectMapper,
+                                   UsersWriteBehindProperties properties) {
+        this.usersService = usersService;
+        this.validator = validator;
+        this.objectMapper = objectMapper;
+        this.properties = properties;
+    }
+
+    @PostConstruct
+    public void start() throws IOException {
+        Files.createDirectories(properties.directory());
+        log = new WriteBehindLog(properties.directory().resolve("users.log"), objectMapper);
+        replay();
+
+        running = true;
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("users-write-behind-");
+        threadFactory.setDaemon(true);
+        writer = threadFactory.newThread(this::drain);
+        writer.start();
+    }
+
+    // Whatever is still queued stays in the log and is replayed on the next start
+    @PreDestroy
+    public void stop() throws IOException, InterruptedException {
+        running = false;
+        if (writer != null) {
+            writer.join(MAX_BACKOFF.toMillis());
+        }
+        if (log != null) {
+            log.close();
+        }
+    }
+
+    public PendingUserStatus enqueue(UserEntity newUser) throws UserYearsException, UserCreatedException,
+            WriteQueueFullException, IOException {
+        evictFinished();
+        checkUser(newUser);
+        if (depth.incrementAndGet() > properties.maxDepth()) {
+            depth.decrementAndGet();
+            throw new WriteQueueFullException("Too many users waiting to be written, retry later");
+        }
+
+        String id = UUID.randomUUID().toString();
+        String email = UserRules.normalizeEmail(newUser.getEmail());
+        try {
+            if (reservedEmails.putIfAbsent(email, id) != null || usersService.isEmailTaken(newUser.getEmail())) {
+                throw new UserCreatedException("User already created");
+            }
+            newUser.setId(null);
+            Instant queuedAt = Instant.now();
+            log.append(List.of(new WriteBehindLog.Entry(id, PendingUserStatus.State.QUEUED, queuedAt, newUser, null, null)));
+            PendingUserStatus status = new PendingUserStatus(id, PendingUserStatus.State.QUEUED, null, null, queuedAt, null);
+            statuses.put(id, status);
+            queue.add(new Pending(id, newUser, queuedAt, false));
+            return status;
+        } catch (UserCreatedException | IOException | RuntimeException e) {
+            reservedEmails.remove(email, id);
+            depth.decrementAndGet();
+            throw e;
+        }
+    }
+
+    public Optional<PendingUserStatus> getStatus(String id) {
+        return Optional.ofNullable(statuses.get(id));
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("users.write.behind.depth", depth, AtomicInteger::get)
+                .description("Users accepted but not yet written to the database")
+                .register(registry);
+        FunctionCounter.builder("users.write.behind.failures", writeFailures, AtomicLong::get)
+                .description("Batches that failed to write with a transient error and were retried")
+                .register(registry);
+    }
+
+    // Same checks and exceptions as UsersService.createUser, plus the NOT NULL and length limits of the columns
+    // it would only hit on INSERT, after the 202 has been sent
+    private void checkUser(UserEntity user) throws UserYearsException, UserCreatedException {
+        if (user.getEmail() == null) {
+            throw new UserCreatedException("Invalid email");
+        }
+        if (user.getDateOfBirth() == null) {
+            throw new UserCreatedException("Date of birth can't be empty");
+        }
+        checkLength("First name", user.getFirstName());
+        checkLength("Last name", user.getLastName());
+        checkLength("Email", user.getEmail());
+        checkLength("Address", user.getAddress());
+        checkLength("Phone number", user.getPhoneNumber());
+        UserRules.checkAge(user.getDateOfBirth());
+        Set<ConstraintViolation<UserEntity>> violations = validator.validate(user);
+        if (!violations.isEmpty()) {
+            throw new ConstraintViolationException(violations);
+        }
+    }
+
+    private static void checkLength(String field, String value) throws UserCreatedException {
+        if (value != null && value.length() > MAX_COLUMN_LENGTH) {
+            throw new UserCreatedException(field + " can't be longer than " + MAX_COLUMN_LENGTH + " characters");
+        }
+    }
+
+    private void replay() throws IOException {
+        Map<String, WriteBehindLog.Entry> waiting = new LinkedHashMap<>();
+        for (WriteBehindLog.Entry entry : log.read()) {
+            if (entry.state() == PendingUserStatus.State.QUEUED) {
+                waiting.put(entry.id(), entry);
+                continue;
+            }
+            WriteBehindLog.Entry queued = waiting.remove(entry.id());
+            statuses.put(entry.id(), new PendingUserStatus(entry.id(), entry.state(), entry.userId(), entry.error(),
+                    queued == null ? null : queued.at(), entry.at()));
+        }
+
+        log.rewrite(waiting.values());
+        for (WriteBehindLog.Entry entry : waiting.values()) {
+            reservedEmails.put(UserRules.normalizeEmail(entry.user().getEmail()), entry.id());
+            depth.incrementAndGet();
+            statuses.put(entry.id(), new PendingUserStatus(entry.id(), PendingUserStatus.State.QUEUED, null, null, entry.at(), null));
+            queue.add(new Pending(entry.id(), entry.user(), entry.at(), true));
+        }
+    }
+
+    private void drain() {
+        List<Pending> batch = new ArrayList<>(properties.batchSize());
+        while (running) {
+            try {
+                Pending first = queue.poll(1, TimeUnit.SECONDS);
+                if (first == null) {
+                    log.truncateIfIdle(() -> depth.get() == 0);
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, properties.batchSize() - 1);
+                write(batch);
+                batch.clear();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (IOException e) {
+                // truncation failed, the log just grows until the next idle moment
+            }
+        }
+    }
+
+    // A database that is down or busy keeps the batch here, with growing pauses, until it is written or the service
+    // stops. Any other failure comes from a user the database refuses (a duplicate that outlasted importUsers' retries,
+    // an entry replayed from an older log): the batch is then written user by user, so only that one is REJECTED.
+    private void write(List<Pending> batch) throws InterruptedException {
+        try {
+            BatchResult result = importRetryingTransient(batch);
+            if (result != null) {
+                finish(batch, result);
+            }
+        } catch (RuntimeException e) {
+            for (Pending pending : batch) {
+                BatchResult result;
+                try {
+                    result = importRetryingTransient(List.of(pending));
+                } catch (RuntimeException refused) {
+                    String error = UserRules.isDuplicateKey(refused) ? "User already created" : "User could not be written";
+                    result = BatchResult.of(List.of(BatchItemResult.rejected(0, error)));
+                }
+                if (result == null) {
+                    return;
+                }
+                finish(List.of(pending), result);
+            }
+        }
+    }
+
+    // null when the service stops first; the entries stay in the log for the next start
+    private BatchResult importRetryingTransient(List<Pending> batch) throws InterruptedException {
+        List<UserEntity> users = batch.stream().map(Pending::user).toList();
+        long backoff = 100;
+        while (running) {
+            try {
+                return usersService.importUsers(users);
+            } catch (RuntimeException e) {
+                if (!isTransient(e)) {
+                    throw e;
+                }
+                writeFailures.incrementAndGet();
+                Thread.sleep(backoff);
+                backoff = Math.min(backoff * 2, MAX_BACKOFF.toMillis());
+            }
+        }
+        return null;
+    }
+
+    // No connection, a lost connection, a lock timeout or deadlock; the cause walk also covers the exceptions
+    // a flush leaves untranslated
+    private static boolean isTransient(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof TransientDataAccessException || cause instanceof RecoverableDataAccessException
+                    || cause instanceof DataAccessResourceFailureException || cause instanceof CannotCreateTransactionException
+                    || cause instanceof SQLTransientException || cause instanceof SQLRecoverableException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void finish(List<Pending> batch, BatchResult result) {
+        Instant finishedAt = Instant.now();
+        List<WriteBehindLog.Entry> outcomes = new ArrayList<>(batch.size());
+        for (BatchItemResult item : result.items()) {
+            Pending pending = batch.get(item.index());
+            Long userId = item.id();
+            if (item.status() == BatchItemResult.Status.REJECTED && pending.replayed()) {
+                userId = findWrittenBeforeCrash(pending.user());
+            }
+            outcomes.add(userId != null
+                    ? new WriteBehindLog.Entry(pending.id(), PendingUserStatus.State.CREATED, finishedAt, null, userId, null)
+                    : new WriteBehindLog.Entry(pending.id(), PendingUserStatus.State.REJECTED, finishedAt, null, null, item.error()));
+        }
+
+        try {
+            log.append(outcomes);
+        } catch (IOException e) {
+            // the rows are committed; a replay recognizes them by findWrittenBeforeCrash
+        }
+        // importUsers reports every item, in batch order
+        for (int i = 0; i < outcomes.size(); i++) {
+            Pending pending = batch.get(i);
+            WriteBehindLog.Entry outcome = outcomes.get(i);
+            statuses.put(pending.id(), new PendingUserStatus(pending.id(), outcome.state(), outcome.userId(), outcome.error(),
+                    pending.queuedAt(), finishedAt));
+            reservedEmails.remove(UserRules.normalizeEmail(pending.user().getEmail()), pending.id());
+            depth.decrementAndGet();
+        }
+    }
+
+    // A crash between the commit and the outcome append leaves a replayed entry whose row already exists
+    private Long findWrittenBeforeCrash(UserEntity queued) {
+        return usersService.findUserByEmail(queued.getEmail())
+                .filter(written -> Objects.equals(written.getFirstName(), queued.getFirstName())
+                        && Objects.equals(written.getLastName(), queued.getLastName())
+                        && Objects.equals(String.valueOf(written.getDateOfBirth()), String.valueOf(queued.getDateOfBirth()))
+                        && Objects.equals(written.getAddress(), queued.getAddress())
+                        && Objects.equals(written.getPhoneNumber(), queued.getPhoneNumber()))
+                .map(UserEntity::getId)
+                .orElse(null);
+    }
+
+    private void evictFinished() {
+        Instant expiry = Instant.now().minus(properties.retention());
+        statuses.values().removeIf(status -> status.finishedAt() != null && status.finishedAt().isBefore(expiry));
+    }
+
+    private record Pending(String id, UserEntity user, Instant queuedAt, boolean replayed) {
+    }
+}
@@ -0,0 +1,145 @@
+package org.springapp.testtask.service;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springapp.testtask.dto.PendingUserStatus;
+import org.springapp.testtask.entity.UserEntity;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+
+// Append-only NDJSON log of queued users and their outcomes.
+// Appends return once an fsync covers them; concurrent appenders share one fsync (group commit).
+final class WriteBehindLog implements Closeable {
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    record Entry(String id, PendingUserStatus.State state, Instant at, UserEntity user, Long userId, String error) {
+    }
+
+    private final Path file;
+    private final ObjectMapper objectMapper;
+    private final Object writeLock = new Object();
+    private final Object syncLock = new Object();
+    private FileChannel channel;
+    private long written;
+    private volatile long synced;
+
+    WriteBehindLog(Path file, ObjectMapper objectMapper) throws IOException {
+        this.file = file;
+        this.objectMapper = objectMapper;
+        this.channel = open(file);
+    }
+
+    // A crash can leave the last line half written; it was never acknowledged, so it is skipped
+    List<Entry> read() throws IOException {
+        List<Entry> entries = new ArrayList<>();
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank()) {
+                    continue;
+                }
+                try {
+                    entries.add(objectMapper.readValue(line, Entry.class));
+                } catch (JsonProcessingException e) {
+                    // torn write
+                }
+            }
+        }
+        return entries;
+    }
+
+    void append(Collection<Entry> entries) throws IOException {
+        ByteBuffer bytes = ByteBuffer.wrap(encode(entries));
+        long position;
+        synchronized (writeLock) {
+            while (bytes.hasRemaining()) {
+                channel.write(bytes);
+            }
+            position = ++written;
+        }
+        sync(position);
+    }
+
+    // Replaces the log with the given entries, e.g. only the ones still waiting after a replay
+    void rewrite(Collection<Entry> entries) throws IOException {
+        Path compacted = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel target = FileChannel.open(compacted, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer bytes = ByteBuffer.wrap(encode(entries));
+            while (bytes.hasRemaining()) {
+                target.write(bytes);
+            }
+            target.force(true);
+        }
+        synchronized (writeLock) {
+            channel.close();
+            Files.move(compacted, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            channel = open(file);
+        }
+    }
+
+    // Called by the writer between batches; idle must stay true for as long as the write lock is held
+    void truncateIfIdle(BooleanSupplier idle) throws IOException {
+        synchronized (writeLock) {
+            if (idle.getAsBoolean() && channel.size() > 0) {
+                channel.truncate(0);
+                channel.force(true);
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (writeLock) {
+            channel.close();
+        }
+    }
+
+    private void sync(long position) throws IOException {
+        if (synced >= position) {
+            return;
+        }
+        synchronized (syncLock) {
+            if (synced >= position) {
+                return;
+            }
+            long target;
+            FileChannel current;
+            synchronized (writeLock) {
+                target = written;
+                current = channel;
+            }
+            current.force(false);
+            synced = target;
+        }
+    }
+
+    private byte[] encode(Collection<Entry> entries) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(256 * entries.size());
+        for (Entry entry : entries) {
+            out.write(objectMapper.writeValueAsBytes(entry));
+            out.write('\n');
+        }
+        return out.toByteArray();
+    }
+
+    private static FileChannel open(Path file) throws IOException {
+        return FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+}
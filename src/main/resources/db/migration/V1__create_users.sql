@@ -0,0 +1,15 @@
+-- Baseline: the users table as Hibernate's ddl-auto=update created it for the original entity, with IDENTITY ids.
+-- A database that already has it is baselined at this version (spring.flyway.baseline-on-migrate) and starts at V2.
+
+create table users (
+    id bigint not null auto_increment,
+    address varchar(255),
+    date_of_birth date not null,
+    email varchar(255) not null,
+    first_name varchar(255) not null,
+    last_name varchar(255) not null,
+    phone_number varchar(255),
+    primary key (id)
+) engine = InnoDB;
+
+alter table users add constraint uk_users_email unique (email);
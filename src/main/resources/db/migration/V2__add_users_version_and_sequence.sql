@@ -0,0 +1,14 @@
+-- The @Version column behind ETags and If-Match, the birth-date range index, and users_seq for batched inserts.
+-- Existing rows start at version 0.
+
+alter table users add column version bigint not null default 0;
+
+create index idx_users_date_of_birth on users (date_of_birth);
+
+-- MySQL has no sequences; Hibernate emulates users_seq with a one-row table.
+-- UsersSequenceInitializer moves it past the ids AUTO_INCREMENT already handed out.
+create table users_seq (
+    next_val bigint
+) engine = InnoDB;
+
+insert into users_seq (next_val) values (1);
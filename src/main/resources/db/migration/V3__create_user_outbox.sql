@@ -0,0 +1,33 @@
+-- Transactional outbox for user changes: a row per create, update and delete, written in the same transaction.
+-- position is null until the relay numbers the committed rows; consumers read by position.
+
+create table if not exists user_outbox (
+    id bigint not null auto_increment,
+    position bigint,
+    type varchar(7) not null,
+    user_id bigint not null,
+    version bigint not null,
+    first_name varchar(255),
+    last_name varchar(255),
+    email varchar(255),
+    date_of_birth date,
+    address varchar(255),
+    phone_number varchar(255),
+    created_at datetime(3) not null,
+    primary key (id),
+    constraint uk_user_outbox_position unique (position),
+    index idx_user_outbox_user_id (user_id, position),
+    index idx_user_outbox_created_at (created_at)
+) engine = InnoDB;
+
+-- One row: the last position handed out, and how far compaction and pruning have got
+create table if not exists user_outbox_head (
+    id int not null,
+    last_position bigint not null,
+    compacted_through bigint not null,
+    pruned_through bigint not null,
+    primary key (id)
+) engine = InnoDB;
+
+insert into user_outbox_head (id, last_position, compacted_through, pruned_through)
+select 1, 0, 0, 0 from dual where not exists (select 1 from user_outbox_head);
@@ -0,0 +1,13 @@
+-- Global email directory for users.sharding: each shard's unique key only sees its own rows.
+-- user_id is null while the write that reserved the email has not inserted its user yet;
+-- reservation tells the rows of one write apart so it can take back exactly those.
+
+create table if not exists user_emails (
+    email varchar(255) not null,
+    user_id bigint,
+    reservation bigint not null,
+    reserved_at datetime(3) not null,
+    primary key (email),
+    index idx_user_emails_user_id (user_id),
+    index idx_user_emails_reservation (reservation)
+) engine = InnoDB;
@@ -0,0 +1,57 @@
+package org.springapp.testtask.reactive;
+
+import org.springapp.testtask.entity.UserEntity;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+// Hands out ids from blocks reserved in users_seq, the same table Hibernate's pooled generator draws from.
+// Concurrent callers that find the block exhausted may each reserve a new one; the losers' ids become gaps.
+@Component
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ReactiveUserIdAllocator {
+
+    private final ReactiveUsersRepository repository;
+    private final AtomicReference<IdBlock> current = new AtomicReference<>(new IdBlock(1, 0));
+
+    public ReactiveUserIdAllocator(ReactiveUsersRepository repository) {
+        this.repository = repository;
+    }
+
+    // Must be called outside a reactive transaction so the users_seq row lock is released straight away
+    public Mono<Long> nextId() {
+        return Mono.defer(() -> {
+            long id = current.get().next();
+            if (id != IdBlock.EXHAUSTED) {
+                return Mono.just(id);
+            }
+            return repository.allocateIdBlock().map(hi -> {
+                IdBlock block = new IdBlock(Math.max(1, hi - UserEntity.ID_ALLOCATION_SIZE + 1), hi);
+                long first = block.next();
+                current.set(block);
+                return first;
+            });
+        });
+    }
+
+    private static final class IdBlock {
+
+        static final long EXHAUSTED = -1;
+
+        private final AtomicLong next;
+        private final long hi;
+
+        IdBlock(long first, long hi) {
+            this.next = new AtomicLong(first);
+            this.hi = hi;
+        }
+
+        long next() {
+            long id = next.getAndIncrement();
+            return id <= hi ? id : EXHAUSTED;
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package org.springapp.testtask.reactive;
+
+import org.springapp.testtask.dto.BatchResult;
+import org.springapp.testtask.dto.BirthDateBucket;
+import org.springapp.testtask.dto.UserSummary;
+import org.springapp.testtask.entity.UserEntity;
+import org.springapp.testtask.service.UsersService;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.sql.Date;
+import java.util.List;
+
+// Same /users contract as UsersController, served by WebFlux when spring.main.web-application-type=reactive
+@RestController
+@RequestMapping("/users")
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ReactiveUsersController {
+
+    private final ReactiveUsersService service;
+
+    public ReactiveUsersController(ReactiveUsersService service) {
+        this.service = service;
+    }
+
+    @GetMapping
+    public Mono<ResponseEntity<List<UserEntity>>> getAllUsers(@RequestParam(value = "after", defaultValue = "0") Long after,
+                                                              @RequestParam(value = "limit", defaultValue = "" + UsersService.DEFAULT_PAGE_SIZE) int limit) {
+        return service.getAllUsers(after, limit).collectList().map(ResponseEntity::ok);
+    }
+
+    // Each row is written as soon as the client's demand allows it
+    @GetMapping(produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<UserEntity> streamAllUsers() {
+        return service.streamAllUsers();
+    }
+
+    @GetMapping("/{id}")
+    public Mono<ResponseEntity<UserEntity>> getUser(@PathVariable Long id) {
+        return service.getUser(id).map(ResponseEntity::ok);
+    }
+
+    @GetMapping("/range")
+    public Mono<ResponseEntity<List<UserEntity>>> getUsersByBirthDateRange(@RequestParam("from") Date fromDate,
+                                                                           @RequestParam("to") Date toDate,
+                                                                           @RequestParam(value = "after", defaultValue = "0") Long after,
+                                                                           @RequestParam(value = "limit", defaultValue = "" + UsersService.DEFAULT_PAGE_SIZE) int limit) {
+        return service.getUsersByBirthDateRange(fromDate, toDate, after, limit).collectList().map(ResponseEntity::ok);
+    }
+
+    @GetMapping("/range/summary")
+    public Mono<ResponseEntity<List<UserSummary>>> getUserSummariesByBirthDateRange(@RequestParam("from") Date fromDate,
+                                                                                    @RequestParam("to") Date toDate,
+                                                                                    @RequestParam(value = "after", defaultValue = "0") Long after,
+                                                                                    @RequestParam(value = "limit", defaultValue = "" + UsersService.DEFAULT_PAGE_SIZE) int limit) {
+        return service.getUserSummariesByBirthDateRange(fromDate, toDate, after, limit).collectList().map(ResponseEntity::ok);
+    }
+
+    @GetMapping("/range/stats")
+    public Mono<ResponseEntity<List<BirthDateBucket>>> countUsersByBirthDateRange(@RequestParam("from") Date fromDate,
+                                                                                  @RequestParam("to") Date toDate,
+                                                                                  @RequestParam(value = "groupBy", defaultValue = "YEAR") BirthDateBucket.Grouping grouping) {
+        return service.countUsersByBirthDateRange(fromDate, toDate, grouping).collectList().map(ResponseEntity::ok);
+    }
+
+    @PostMapping
+    public Mono<ResponseEntity<UserEntity>> createUser(@RequestBody UserEntity newUser) {
+        return service.createUser(newUser).map(ResponseEntity::ok);
+    }
+
+    @PostMapping("/batch")
+    public Mono<ResponseEntity<BatchResult>> createUsers(@RequestBody List<UserEntity> newUsers) {
+        return service.createUsers(newUsers).map(ResponseEntity::ok);
+    }
+
+    @PutMapping("/batch")
+    public Mono<ResponseEntity<BatchResult>> updateUsers(@RequestBody List<UserEntity> updatedUsers) {
+        return service.updateUsers(updatedUsers).map(ResponseEntity::ok);
+    }
+
+    @PutMapping("/{id}")
+    public Mono<ResponseEntity<UserEntity>> updateAllUserInfo(@PathVariable Long id, @RequestBody UserEntity updatedUser) {
+        return service.updateUser(id, updatedUser).map(ResponseEntity::ok);
+    }
+
+    @PatchMapping("/{id}")
+    public Mono<ResponseEntity<UserEntity>> updateUserInfo(@PathVariable Long id, @RequestBody UserEntity updatedUser) {
+        return service.updateUser(id, updatedUser).map(ResponseEntity::ok);
+    }
+
+    @DeleteMapping("/{id}")
+    public Mono<ResponseEntity<String>> deleteUser(@PathVariable Long id) {
+        return service.deleteUser(id)
+                .thenReturn(ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body("User deleted"));
+    }
+}
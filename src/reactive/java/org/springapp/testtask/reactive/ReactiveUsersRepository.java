@@ -0,0 +1,184 @@
+package org.springapp.testtask.reactive;
+
+import io.r2dbc.spi.Readable;
+import org.springapp.testtask.dto.BirthDateBucket;
+import org.springapp.testtask.dto.UserSummary;
+import org.springapp.testtask.entity.UserEntity;
+import org.springapp.testtask.repository.UsersRepository;
+import org.springapp.testtask.service.UserRules;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+@Repository
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ReactiveUsersRepository {
+
+    private static final String COLUMNS = "id, first_name, last_name, email, date_of_birth, address, phone_number";
+
+    private final DatabaseClient client;
+
+    public ReactiveUsersRepository(DatabaseClient client) {
+        this.client = client;
+    }
+
+    public Mono<UserEntity> findById(Long id) {
+        return client.sql("select " + COLUMNS + " from users where id = :id")
+                .bind("id", id)
+                .map(ReactiveUsersRepository::toUser)
+                .one();
+    }
+
+    public Flux<UserEntity> findAllById(Collection<Long> ids) {
+        if (ids.isEmpty()) {
+            return Flux.empty();
+        }
+        return client.sql("select " + COLUMNS + " from users where id in (:ids)")
+                .bind("ids", ids)
+                .map(ReactiveUsersRepository::toUser)
+                .all();
+    }
+
+    public Flux<UserEntity> findPage(long after, int limit) {
+        return client.sql("select " + COLUMNS + " from users where id > :after order by id limit :limit")
+                .bind("after", after)
+                .bind("limit", limit)
+                .map(ReactiveUsersRepository::toUser)
+                .all();
+    }
+
+    // Rows are pulled from a server-side cursor as the subscriber requests them
+    public Flux<UserEntity> streamAll() {
+        return client.sql("select " + COLUMNS + " from users order by id")
+                .filter(statement -> statement.fetchSize(UsersRepository.STREAM_FETCH_SIZE))
+                .map(ReactiveUsersRepository::toUser)
+                .all();
+    }
+
+    public Flux<UserEntity> findByBirthDateRange(Date from, Date to, long after, int limit) {
+        return client.sql("select " + COLUMNS + " from users"
+                        + " where date_of_birth between :from and :to and id > :after order by id limit :limit")
+                .bind("from", from.toLocalDate())
+                .bind("to", to.toLocalDate())
+                .bind("after", after)
+                .bind("limit", limit)
+                .map(ReactiveUsersRepository::toUser)
+                .all();
+    }
+
+    public Flux<UserSummary> findSummariesByBirthDateRange(Date from, Date to, long after, int limit) {
+        return client.sql("select id, first_name, last_name, date_of_birth from users"
+                        + " where date_of_birth between :from and :to and id > :after order by id limit :limit")
+                .bind("from", from.toLocalDate())
+                .bind("to", to.toLocalDate())
+                .bind("after", after)
+                .bind("limit", limit)
+                .map(row -> new UserSummary(row.get("id", Long.class), row.get("first_name", String.class),
+                        row.get("last_name", String.class), Date.valueOf(row.get("date_of_birth", LocalDate.class))))
+                .all();
+    }
+
+    public Flux<BirthDateBucket> countByBirthYear(Date from, Date to) {
+        return client.sql("select year(date_of_birth) as birth_year, count(*) as users from users"
+                        + " where date_of_birth between :from and :to group by birth_year order by birth_year")
+                .bind("from", from.toLocalDate())
+                .bind("to", to.toLocalDate())
+                .map(row -> new BirthDateBucket(row.get("birth_year", Integer.class), row.get("users", Long.class)))
+                .all();
+    }
+
+    public Flux<BirthDateBucket> countByBirthMonth(Date from, Date to) {
+        return client.sql("select year(date_of_birth) as birth_year, month(date_of_birth) as birth_month, count(*) as users"
+                        + " from users where date_of_birth between :from and :to"
+                        + " group by birth_year, birth_month order by birth_year, birth_month")
+                .bind("from", from.toLocalDate())
+                .bind("to", to.toLocalDate())
+                .map(row -> new BirthDateBucket(row.get("birth_year", Integer.class),
+                        row.get("birth_month", Integer.class), row.get("users", Long.class)))
+                .all();
+    }
+
+    // Normalized email -> owning user id, one IN query for the whole batch
+    public Mono<Map<String, Long>> findEmailOwners(Collection<String> emails) {
+        if (emails.isEmpty()) {
+            return Mono.just(new HashMap<>());
+        }
+        return client.sql("select id, email from users where email in (:emails)")
+                .bind("emails", emails)
+                .map(row -> Map.entry(UserRules.normalizeEmail(row.get("email", String.class)), row.get("id", Long.class)))
+                .all()
+                .collectMap(Map.Entry::getKey, Map.Entry::getValue, HashMap::new);
+    }
+
+    // Same hi/lo contract as Hibernate's pooled users_seq: reading value V reserves (V - allocationSize, V]
+    public Mono<Long> allocateIdBlock() {
+        return client.inConnection(connection -> Mono.from(connection
+                        .createStatement("update users_seq set next_val = last_insert_id(next_val + " + UserEntity.ID_ALLOCATION_SIZE + ")")
+                        .execute())
+                .flatMap(result -> Mono.from(result.getRowsUpdated()))
+                .then(Mono.from(connection.createStatement("select last_insert_id()").execute()))
+                .flatMap(result -> Mono.from(result.map(row -> row.get(0, Long.class))))
+                .map(next -> next - UserEntity.ID_ALLOCATION_SIZE));
+    }
+
+    public Mono<Long> insert(UserEntity user) {
+        return bindUser(client.sql("insert into users (" + COLUMNS + ", version)"
+                        + " values (:id, :firstName, :lastName, :email, :dateOfBirth, :address, :phoneNumber, 0)"), user)
+                .fetch()
+                .rowsUpdated();
+    }
+
+    public Mono<Long> update(UserEntity user) {
+        return bindUser(client.sql("update users set first_name = :firstName, last_name = :lastName, email = :email,"
+                        + " date_of_birth = :dateOfBirth, address = :address, phone_number = :phoneNumber,"
+                        + " version = version + 1 where id = :id"), user)
+                .fetch()
+                .rowsUpdated();
+    }
+
+    public Mono<Long> deleteById(Long id) {
+        return client.sql("delete from users where id = :id")
+                .bind("id", id)
+                .fetch()
+                .rowsUpdated();
+    }
+
+    public Mono<Boolean> existsById(Long id) {
+        return client.sql("select 1 from users where id = :id")
+                .bind("id", id)
+                .map(row -> true)
+                .first()
+                .defaultIfEmpty(false);
+    }
+
+    private static DatabaseClient.GenericExecuteSpec bindUser(DatabaseClient.GenericExecuteSpec spec, UserEntity user) {
+        spec = spec.bind("id", user.getId())
+                .bind("firstName", user.getFirstName())
+                .bind("lastName", user.getLastName())
+                .bind("email", user.getEmail())
+                .bind("dateOfBirth", user.getDateOfBirth().toLocalDate());
+        spec = user.getAddress() == null ? spec.bindNull("address", String.class) : spec.bind("address", user.getAddress());
+        return user.getPhoneNumber() == null
+                ? spec.bindNull("phoneNumber", String.class)
+                : spec.bind("phoneNumber", user.getPhoneNumber());
+    }
+
+    private static UserEntity toUser(Readable row) {
+        return new UserEntity(
+                row.get("id", Long.class),
+                row.get("first_name", String.class),
+                row.get("last_name", String.class),
+                row.get("email", String.class),
+                Date.valueOf(row.get("date_of_birth", LocalDate.class)),
+                row.get("address", String.class),
+                row.get("phone_number", String.class));
+    }
+}
@@ -0,0 +1,205 @@
+package org.springapp.testtask.reactive;
+
+import io.r2dbc.spi.R2dbcException;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.ConstraintViolationException;
+import jakarta.validation.Validator;
+import org.springapp.testtask.dto.BatchItemResult;
+import org.springapp.testtask.dto.BatchResult;
+import org.springapp.testtask.dto.BirthDateBucket;
+import org.springapp.testtask.dto.UserSummary;
+import org.springapp.testtask.entity.UserEntity;
+import org.springapp.testtask.exception.NoUserException;
+import org.springapp.testtask.exception.UserCreatedException;
+import org.springapp.testtask.exception.UserYearsException;
+import org.springapp.testtask.service.UserRules;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.sql.Date;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+// Non-blocking counterpart of UsersService: same rules (UserRules), same exceptions, so GlobalExceptionsHandler maps them alike
+@Service
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ReactiveUsersService {
+
+    private final ReactiveUsersRepository repository;
+    private final ReactiveUserIdAllocator idAllocator;
+    private final TransactionalOperator transactionalOperator;
+    private final Validator validator;
+
+    public ReactiveUsersService(ReactiveUsersRepository repository, ReactiveUserIdAllocator idAllocator,
+                                TransactionalOperator transactionalOperator, Validator validator) {
+        this.repository = repository;
+        this.idAllocator = idAllocator;
+        this.transactionalOperator = transactionalOperator;
+        this.validator = validator;
+    }
+
+    public Flux<UserEntity> getAllUsers(Long after, int limit) {
+        return repository.findPage(after == null ? 0L : after, UserRules.pageSize(limit));
+    }
+
+    public Flux<UserEntity> streamAllUsers() {
+        return repository.streamAll();
+    }
+
+    public Mono<UserEntity> getUser(Long id) {
+        return repository.findById(id).switchIfEmpty(Mono.error(() -> new NoUserException("No user by this id")));
+    }
+
+    public Flux<UserEntity> getUsersByBirthDateRange(Date fromDate, Date toDate, Long after, int limit) {
+        return Mono.fromCallable(() -> {
+                    UserRules.checkRange(fromDate, toDate);
+                    return fromDate;
+                })
+                .thenMany(repository.findByBirthDateRange(fromDate, toDate, after == null ? 0L : after, UserRules.pageSize(limit)));
+    }
+
+    public Flux<UserSummary> getUserSummariesByBirthDateRange(Date fromDate, Date toDate, Long after, int limit) {
+        return Mono.fromCallable(() -> {
+                    UserRules.checkRange(fromDate, toDate);
+                    return fromDate;
+                })
+                .thenMany(repository.findSummariesByBirthDateRange(fromDate, toDate, after == null ? 0L : after, UserRules.pageSize(limit)));
+    }
+
+    public Flux<BirthDateBucket> countUsersByBirthDateRange(Date fromDate, Date toDate, BirthDateBucket.Grouping grouping) {
+        return Mono.fromCallable(() -> {
+                    UserRules.checkRange(fromDate, toDate);
+                    return fromDate;
+                })
+                .thenMany(grouping == BirthDateBucket.Grouping.YEAR
+                        ? repository.countByBirthYear(fromDate, toDate)
+                        : repository.countByBirthMonth(fromDate, toDate));
+    }
+
+    public Mono<UserEntity> createUser(UserEntity newUser) {
+        return Mono.justOrEmpty(findRuleViolation(newUser))
+                .flatMap(violation -> Mono.<Long>error(violation))
+                .switchIfEmpty(idAllocator.nextId())
+                .flatMap(id -> {
+                    newUser.setId(id);
+                    return repository.insert(newUser);
+                })
+                .onErrorMap(DataIntegrityViolationException.class, ReactiveUsersService::translateDuplicateEmail)
+                .thenReturn(newUser);
+    }
+
+    public Mono<UserEntity> updateUser(Long id, UserEntity updatedUser) {
+        updatedUser.setId(id);
+        Optional<Exception> violation = findRuleViolation(updatedUser);
+        if (violation.isPresent()) {
+            // A missing user is reported before invalid data, as in UsersService; the lookup only runs on this error path
+            return repository.existsById(id)
+                    .flatMap(exists -> Mono.error(exists ? violation.get() : new NoUserException("User not found with id: " + id)));
+        }
+        return repository.update(updatedUser)
+                .flatMap(updated -> updated == 0
+                        ? Mono.error(new NoUserException("User not found with id: " + id))
+                        : Mono.just(updatedUser))
+                .onErrorMap(DataIntegrityViolationException.class, ReactiveUsersService::translateDuplicateEmail);
+    }
+
+    public Mono<Void> deleteUser(Long id) {
+        return repository.deleteById(id)
+                .flatMap(deleted -> deleted == 0 ? Mono.error(new NoUserException("No user by this id")) : Mono.empty());
+    }
+
+    public Mono<BatchResult> createUsers(List<UserEntity> newUsers) {
+        List<UserEntity> accepted = new ArrayList<>();
+        return Mono.fromCallable(() -> {
+                    UserRules.checkBatchSize(newUsers);
+                    return emails(newUsers);
+                })
+                .flatMap(repository::findEmailOwners)
+                // concatMap keeps the email bookkeeping single-threaded and the results in request order
+                .flatMapMany(emailOwners -> Flux.range(0, newUsers.size()).concatMap(i -> {
+                    UserEntity user = newUsers.get(i);
+                    String problem = UserRules.findProblem(validator, user, null, emailOwners);
+                    if (problem != null) {
+                        return Mono.just(BatchItemResult.rejected(i, problem));
+                    }
+                    return idAllocator.nextId().map(id -> {
+                        user.setId(id);
+                        emailOwners.put(UserRules.normalizeEmail(user.getEmail()), id);
+                        accepted.add(user);
+                        return BatchItemResult.accepted(i, BatchItemResult.Status.CREATED, id);
+                    });
+                }))
+                .collectList()
+                .flatMap(results -> Flux.fromIterable(accepted)
+                        .concatMap(repository::insert)
+                        .as(transactionalOperator::transactional)
+                        .then(Mono.just(BatchResult.of(results))))
+                .onErrorMap(DataIntegrityViolationException.class, ReactiveUsersService::translateDuplicateEmail);
+    }
+
+    public Mono<BatchResult> updateUsers(List<UserEntity> updatedUsers) {
+        List<UserEntity> accepted = new ArrayList<>();
+        return Mono.fromCallable(() -> {
+                    UserRules.checkBatchSize(updatedUsers);
+                    return updatedUsers.stream().map(UserEntity::getId).filter(Objects::nonNull).collect(Collectors.toSet());
+                })
+                .flatMap(ids -> repository.findAllById(ids).collectMap(UserEntity::getId, Function.identity()))
+                .zipWith(repository.findEmailOwners(emails(updatedUsers)))
+                .map(found -> {
+                    Map<Long, UserEntity> existingUsers = found.getT1();
+                    Map<String, Long> emailOwners = found.getT2();
+                    return IntStream.range(0, updatedUsers.size()).mapToObj(i -> {
+                        UserEntity user = updatedUsers.get(i);
+                        if (user.getId() == null || !existingUsers.containsKey(user.getId())) {
+                            return BatchItemResult.rejected(i, "User not found with id: " + user.getId());
+                        }
+                        String problem = UserRules.findProblem(validator, user, user.getId(), emailOwners);
+                        if (problem != null) {
+                            return BatchItemResult.rejected(i, problem);
+                        }
+                        emailOwners.put(UserRules.normalizeEmail(user.getEmail()), user.getId());
+                        accepted.add(user);
+                        return BatchItemResult.accepted(i, BatchItemResult.Status.UPDATED, user.getId());
+                    }).toList();
+                })
+                .flatMap(results -> Flux.fromIterable(accepted)
+                        .concatMap(repository::update)
+                        .as(transactionalOperator::transactional)
+                        .then(Mono.just(BatchResult.of(results))))
+                .onErrorMap(DataIntegrityViolationException.class, ReactiveUsersService::translateDuplicateEmail);
+    }
+
+    // Same order as the blocking stack: the 18+ rule first, then the Bean Validation Hibernate runs before writing
+    private Optional<Exception> findRuleViolation(UserEntity user) {
+        if (!UserRules.isAdult(user.getDateOfBirth())) {
+            return Optional.of(new UserYearsException("User must be " + UserRules.MINIMUM_AGE + " years or older"));
+        }
+        Set<ConstraintViolation<UserEntity>> violations = validator.validate(user);
+        return violations.isEmpty() ? Optional.empty() : Optional.of(new ConstraintViolationException(violations));
+    }
+
+    // r2dbc-mysql reports the duplicate key through R2dbcException rather than an SQLException
+    private static UserCreatedException translateDuplicateEmail(DataIntegrityViolationException e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof R2dbcException r2dbc && UserRules.isDuplicateKey(r2dbc.getErrorCode(), r2dbc.getSqlState())) {
+                return new UserCreatedException("User already created");
+            }
+        }
+        return UserRules.translateDuplicateEmail(e);
+    }
+
+    private static Set<String> emails(List<UserEntity> users) {
+        return users.stream().map(UserEntity::getEmail).filter(Objects::nonNull).collect(Collectors.toSet());
+    }
+}
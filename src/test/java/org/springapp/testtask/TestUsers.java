@@ -0,0 +1,36 @@
+package org.springapp.testtask;
+
+import org.springapp.testtask.entity.UserEntity;
+
+import java.sql.Date;
+
+// Valid users for tests; only what a test asserts on is passed in
+public final class TestUsers {
+
+    public static final String FIRST_NAME = "Test";
+    public static final String LAST_NAME = "User";
+    public static final String DATE_OF_BIRTH = "1990-01-01";
+
+    private TestUsers() {
+    }
+
+    public static UserEntity user(String email) {
+        return user(null, email, DATE_OF_BIRTH);
+    }
+
+    public static UserEntity user(String email, String dateOfBirth) {
+        return user(null, email, dateOfBirth);
+    }
+
+    public static UserEntity user(Long id, String email, String dateOfBirth) {
+        return new UserEntity(id, FIRST_NAME, LAST_NAME, email, Date.valueOf(dateOfBirth), null, null);
+    }
+
+    public static UserEntity named(String firstName, String email) {
+        return named(firstName, LAST_NAME, email, null);
+    }
+
+    public static UserEntity named(String firstName, String lastName, String email, String phoneNumber) {
+        return new UserEntity(null, firstName, lastName, email, Date.valueOf(DATE_OF_BIRTH), null, phoneNumber);
+    }
+}
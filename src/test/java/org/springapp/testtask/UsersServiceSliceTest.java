@@ -0,0 +1,49 @@
+package org.springapp.testtask;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springapp.testtask.cache.EmailIndex;
+import org.springapp.testtask.cache.UserCache;
+import org.springapp.testtask.config.EmailIndexProperties;
+import org.springapp.testtask.config.UsersCacheProperties;
+import org.springapp.testtask.config.UsersShardingProperties;
+import org.springapp.testtask.datasource.UserShards;
+import org.springapp.testtask.metrics.UsersMetrics;
+import org.springapp.testtask.service.UsersService;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.validation.ValidationAutoConfiguration;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Import;
+import org.springframework.core.annotation.AliasFor;
+import org.springframework.test.context.TestPropertySource;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Inherited;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+// The slice the UsersService tests share: JPA on in-memory H2 with Hibernate's schema, and the service with
+// the beans it always needs. A test adds only its own properties and the beans of the feature it covers;
+// its properties win over the defaults in users-service-slice.properties, which a file location lets them do.
+@Target(ElementType.TYPE)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+@Inherited
+@DataJpaTest
+@TestPropertySource("classpath:users-service-slice.properties")
+@ImportAutoConfiguration(ValidationAutoConfiguration.class)
+@Import(UsersServiceSliceTest.Beans.class)
+public @interface UsersServiceSliceTest {
+
+    @AliasFor(annotation = DataJpaTest.class)
+    String[] properties() default {};
+
+    @TestConfiguration(proxyBeanMethods = false)
+    @EnableConfigurationProperties({UsersCacheProperties.class, EmailIndexProperties.class, UsersShardingProperties.class})
+    @Import({UsersService.class, UserCache.class, EmailIndex.class, UserShards.class, UsersMetrics.class, SimpleMeterRegistry.class})
+    class Beans {
+    }
+}
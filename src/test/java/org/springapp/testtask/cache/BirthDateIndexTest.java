@@ -0,0 +1,128 @@
+package org.springapp.testtask.cache;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springapp.testtask.UsersServiceSliceTest;
+import org.springapp.testtask.config.UsersAnalyticsProperties;
+import org.springapp.testtask.dto.AgeBucket;
+import org.springapp.testtask.dto.BirthDateBucket;
+import org.springapp.testtask.entity.UserEntity;
+import org.springapp.testtask.repository.UsersRepository;
+import org.springapp.testtask.service.UsersAnalyticsService;
+import org.springapp.testtask.service.UsersService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Import;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springapp.testtask.TestUsers.user;
+
+// The snapshot follows committed changes, so the test must not wrap everything in a rolled back transaction
+@UsersServiceSliceTest(properties = "users.analytics.rebuild-interval=1h")
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@EnableConfigurationProperties(UsersAnalyticsProperties.class)
+@Import({UsersAnalyticsService.class, BirthDateIndex.class})
+public class BirthDateIndexTest {
+
+    @Autowired
+    private UsersService service;
+
+    @Autowired
+    private UsersAnalyticsService analyticsService;
+
+    @Autowired
+    private BirthDateIndex index;
+
+    @Autowired
+    private UsersRepository repository;
+
+    private final LocalDate today = LocalDate.now();
+
+    @BeforeEach
+    public void setUp() {
+        repository.saveAll(List.of(
+                user("a@example.com", "1985-03-10"),
+                user("b@example.com", "1985-07-01"),
+                user("c@example.com", "1990-07-20"),
+                user("d@example.com", "1990-12-31"),
+                user("e@example.com", "1800-05-05")));
+        index.rebuild();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        repository.deleteAll();
+    }
+
+    @Test
+    public void countsMatchTheTable() throws Exception {
+        Date from = Date.valueOf("1980-01-01");
+        Date to = Date.valueOf("1995-12-31");
+        for (BirthDateBucket.Grouping grouping : BirthDateBucket.Grouping.values()) {
+            assertEquals(service.countUsersByBirthDateRange(from, to, grouping),
+                    analyticsService.countByBirthDate(from, to, grouping));
+        }
+        // Both ends are included
+        assertEquals(2, analyticsService.countByBirthDateRange(Date.valueOf("1985-07-01"), Date.valueOf("1990-07-20")));
+        // Dates before 1900 count as its first day
+        assertEquals(List.of(new BirthDateBucket(1900, 1L)),
+                analyticsService.countByBirthDate(Date.valueOf("1700-01-01"), Date.valueOf("1950-01-01"), BirthDateBucket.Grouping.YEAR));
+    }
+
+    @Test
+    public void agesIncludeTheBirthdayItself() throws Exception {
+        repository.saveAll(List.of(
+                user("eighteen@example.com", today.minusYears(18).toString()),
+                user("almost@example.com", today.minusYears(18).plusDays(1).toString()),
+                user("twentysix@example.com", today.minusYears(26).toString())));
+        index.rebuild();
+
+        assertEquals(List.of(new AgeBucket(0, 17, 1), new AgeBucket(18, 25, 1), new AgeBucket(26, null, 6)),
+                analyticsService.countByAge(List.of(0, 18, 26)));
+    }
+
+    @Test
+    public void createsUpdatesAndDeletesShowUpWithoutRebuild() throws Exception {
+        Date from = Date.valueOf("1980-01-01");
+        Date to = Date.valueOf("2000-01-01");
+        UserEntity created = service.createUser(user("f@example.com", "1999-01-01"));
+        assertEquals(5, analyticsService.countByBirthDateRange(from, to));
+
+        UserEntity moved = repository.findByEmail("a@example.com").orElseThrow();
+        service.updateAllUserInfo(moved.getId(), user("a@example.com", "1970-01-01"));
+        service.updateAllUserInfo(moved.getId(), user("a@example.com", "1971-01-01"));
+        assertEquals(4, analyticsService.countByBirthDateRange(from, to));
+        assertEquals(1, analyticsService.countByBirthDateRange(Date.valueOf("1971-01-01"), Date.valueOf("1971-01-02")));
+
+        service.deleteUser(created.getId());
+        assertEquals(3, analyticsService.countByBirthDateRange(from, to));
+
+        index.rebuild();
+        assertEquals(3, analyticsService.countByBirthDateRange(from, to));
+        assertEquals(1, analyticsService.countByBirthDateRange(Date.valueOf("1971-01-01"), Date.valueOf("1971-01-02")));
+    }
+
+    @Test
+    public void shardRunsAreMergedById() {
+        BirthDateColumns columns = BirthDateColumns.builder()
+                .add(2, 20).add(5, 50).add(9, 90)
+                .add(1, 1).add(6, 60)
+                .add(3, 30)
+                .build();
+
+        assertEquals(6, columns.size());
+        for (long id : new long[]{2, 3, 5, 6, 9}) {
+            assertEquals(id * 10, columns.dayOf(id));
+        }
+        assertEquals(1, columns.dayOf(1));
+        assertEquals(BirthDateColumns.NONE, columns.dayOf(4));
+        assertEquals(3, columns.countBefore(31));
+    }
+}
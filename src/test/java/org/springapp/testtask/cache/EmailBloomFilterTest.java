@@ -0,0 +1,47 @@
+package org.springapp.testtask.cache;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class EmailBloomFilterTest {
+
+    private static final int EMAILS = 100_000;
+
+    @Test
+    public void neverMissesAnAddedEmail() {
+        EmailBloomFilter filter = new EmailBloomFilter(EMAILS, 0.01);
+        for (int i = 0; i < EMAILS; i++) {
+            filter.put("user" + i + "@example.com");
+        }
+
+        for (int i = 0; i < EMAILS; i++) {
+            assertTrue(filter.mightContain("user" + i + "@example.com"));
+        }
+    }
+
+    @Test
+    public void falsePositiveRateStaysNearTheConfiguredOne() {
+        EmailBloomFilter filter = new EmailBloomFilter(EMAILS, 0.01);
+        for (int i = 0; i < EMAILS; i++) {
+            filter.put("user" + i + "@example.com");
+        }
+
+        int falsePositives = 0;
+        for (int i = 0; i < EMAILS; i++) {
+            if (filter.mightContain("other" + i + "@example.org")) {
+                falsePositives++;
+            }
+        }
+        assertTrue(falsePositives < EMAILS * 0.015, "false positives: " + falsePositives);
+        assertEquals(0.01, filter.expectedFalsePositiveRate(), 0.003);
+    }
+
+    @Test
+    public void usesAboutTenBitsPerEmailAtOnePercent() {
+        EmailBloomFilter filter = new EmailBloomFilter(EMAILS, 0.01);
+
+        assertEquals(119_816, filter.sizeInBytes(), 64);
+    }
+}
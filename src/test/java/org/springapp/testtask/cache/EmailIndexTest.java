@@ -0,0 +1,106 @@
+package org.springapp.testtask.cache;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springapp.testtask.UsersServiceSliceTest;
+import org.springapp.testtask.config.UsersImportProperties;
+import org.springapp.testtask.dto.BatchItemResult;
+import org.springapp.testtask.dto.BatchResult;
+import org.springapp.testtask.dto.ImportJobStatus;
+import org.springapp.testtask.dto.UsersFileFormat;
+import org.springapp.testtask.entity.UserEntity;
+import org.springapp.testtask.repository.UsersRepository;
+import org.springapp.testtask.service.UsersImportService;
+import org.springapp.testtask.service.UsersService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Import;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springapp.testtask.TestUsers.DATE_OF_BIRTH;
+import static org.springapp.testtask.TestUsers.user;
+
+// Rows written behind the index's back, as another instance would: the index calls their emails free until its
+// next rebuild, and the unique index on email has to catch them. Every attempt commits or rolls back on its own,
+// so the test must not wrap everything in a rolled back transaction.
+@UsersServiceSliceTest(properties = {
+        "users.email-index.enabled=true",
+        "users.email-index.expected-insertions=1000"
+})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@ImportAutoConfiguration(JacksonAutoConfiguration.class)
+@EnableConfigurationProperties(UsersImportProperties.class)
+@Import(UsersImportService.class)
+public class EmailIndexTest {
+
+    @Autowired
+    private UsersService service;
+
+    @Autowired
+    private UsersImportService importService;
+
+    @Autowired
+    private EmailIndex emailIndex;
+
+    @Autowired
+    private UsersRepository repository;
+
+    private UserEntity known;
+
+    @BeforeEach
+    public void setUp() {
+        known = repository.saveAndFlush(user("known@example.com"));
+        emailIndex.rebuild();
+        // No UserChangedEvent, so the index has never seen it
+        repository.saveAndFlush(user("unseen@example.com"));
+    }
+
+    @AfterEach
+    public void tearDown() {
+        repository.deleteAll();
+    }
+
+    @Test
+    public void batchCreateRejectsAnEmailTheIndexHasNotSeen() throws Exception {
+        BatchResult result = service.createUsers(List.of(user("fresh@example.com"), user("unseen@example.com")));
+
+        assertEquals(BatchItemResult.Status.CREATED, result.items().get(0).status());
+        assertEquals(BatchItemResult.rejected(1, "User already created"), result.items().get(1));
+        assertEquals(3, repository.count());
+    }
+
+    @Test
+    public void batchUpdateRejectsAnEmailTheIndexHasNotSeen() throws Exception {
+        BatchResult result = service.updateUsers(List.of(user(known.getId(), "unseen@example.com", DATE_OF_BIRTH)));
+
+        assertEquals(BatchItemResult.rejected(0, "User already created"), result.items().get(0));
+        assertEquals("known@example.com", repository.findById(known.getId()).orElseThrow().getEmail());
+    }
+
+    @Test
+    public void importRejectsAnEmailTheIndexHasNotSeen() throws Exception {
+        String upload = """
+                {"firstName":"Fresh","lastName":"User","email":"fresh@example.com","dateOfBirth":"1990-01-01"}
+                {"firstName":"Unseen","lastName":"User","email":"unseen@example.com","dateOfBirth":"1990-01-01"}
+                """;
+        ImportJobStatus status = importService.submit(new ByteArrayInputStream(upload.getBytes(StandardCharsets.UTF_8)),
+                UsersFileFormat.NDJSON);
+        for (int i = 0; i < 100 && status.finishedAt() == null; i++) {
+            Thread.sleep(50);
+            status = importService.getStatus(status.id()).orElseThrow();
+        }
+
+        assertEquals(ImportJobStatus.State.COMPLETED, status.state(), status.error());
+        assertEquals(1, status.accepted());
+        assertEquals(1, status.rejected());
+    }
+}
@@ -0,0 +1,121 @@
+package org.springapp.testtask.cache;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springapp.testtask.UsersServiceSliceTest;
+import org.springapp.testtask.config.UsersCacheProperties;
+import org.springapp.testtask.entity.UserEntity;
+import org.springapp.testtask.exception.NoUserException;
+import org.springapp.testtask.repository.UsersRepository;
+import org.springapp.testtask.service.UserChangedEvent;
+import org.springapp.testtask.service.UsersService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springapp.testtask.TestUsers.DATE_OF_BIRTH;
+import static org.springapp.testtask.TestUsers.user;
+
+// Invalidation happens after commit, so the test must not wrap everything in a rolled back transaction
+@UsersServiceSliceTest
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+public class UserCacheTest {
+
+    private static final UserEntity OLD = user(1L, "old@example.com", DATE_OF_BIRTH);
+    private static final UserEntity NEW = user(1L, "new@example.com", DATE_OF_BIRTH);
+
+    @Autowired
+    private UsersService service;
+
+    @Autowired
+    private UsersRepository repository;
+
+    private final UserCache cache = new UserCache(new UsersCacheProperties(100, Duration.ofMinutes(10), Duration.ofMillis(100)));
+    private final AtomicInteger loads = new AtomicInteger();
+
+    @AfterEach
+    public void tearDown() {
+        repository.deleteAll();
+    }
+
+    @Test
+    public void loadsOnceThenServesFromTheCache() {
+        assertEquals(Optional.of(OLD), cache.get(1L, this::loadOld));
+        assertEquals(Optional.of(OLD), cache.get(1L, this::loadOld));
+        assertEquals(1, loads.get());
+    }
+
+    // The invalidation for a commit lands while a load that read the row before it is still running
+    @Test
+    public void loadOverlappingAnInvalidationIsNotCached() throws Exception {
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch invalidated = new CountDownLatch(1);
+        CompletableFuture<Optional<UserEntity>> stale = CompletableFuture.supplyAsync(() -> cache.get(1L, id -> {
+            loading.countDown();
+            await(invalidated);
+            return Optional.of(OLD);
+        }));
+
+        assertTrue(loading.await(5, TimeUnit.SECONDS));
+        cache.invalidate(1L);
+        invalidated.countDown();
+
+        // Its own caller still gets what it read, the next one reads again
+        assertEquals(Optional.of(OLD), stale.get(5, TimeUnit.SECONDS));
+        assertEquals(Optional.of(NEW), cache.get(1L, id -> Optional.of(NEW)));
+    }
+
+    @Test
+    public void missesExpireSoonerThanUsers() throws Exception {
+        assertEquals(Optional.empty(), cache.get(1L, id -> Optional.empty()));
+        assertEquals(Optional.of(OLD), cache.get(2L, this::loadOld));
+        Thread.sleep(300);
+
+        assertEquals(Optional.of(NEW), cache.get(1L, id -> Optional.of(NEW)));
+        assertEquals(Optional.of(OLD), cache.get(2L, this::loadOld));
+        assertEquals(1, loads.get());
+    }
+
+    // An id asked for before the user existed would otherwise stay a cached miss
+    @Test
+    public void createdUserReplacesACachedMiss() {
+        assertEquals(Optional.empty(), cache.get(1L, id -> Optional.empty()));
+        cache.onUserChanged(UserChangedEvent.created(NEW));
+        assertEquals(Optional.of(NEW), cache.get(1L, id -> Optional.of(NEW)));
+    }
+
+    @Test
+    public void updatesAndDeletesThroughTheServiceInvalidate() throws Exception {
+        UserEntity created = service.createUser(user("cached@example.com"));
+        assertEquals("cached@example.com", service.getUser(created.getId()).getEmail());
+
+        service.updateUserInfo(created.getId(), user("changed@example.com"));
+        assertEquals("changed@example.com", service.getUser(created.getId()).getEmail());
+
+        service.deleteUser(created.getId());
+        assertThrows(NoUserException.class, () -> service.getUser(created.getId()));
+    }
+
+    private Optional<UserEntity> loadOld(Long id) {
+        loads.incrementAndGet();
+        return Optional.of(OLD);
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package org.springapp.testtask.cache;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springapp.testtask.UsersServiceSliceTest;
+import org.springapp.testtask.config.UsersSearchProperties;
+import org.springapp.testtask.dto.UserView;
+import org.springapp.testtask.entity.UserEntity;
+import org.springapp.testtask.repository.UsersRepository;
+import org.springapp.testtask.service.UsersSearchService;
+import org.springapp.testtask.service.UsersService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Import;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springapp.testtask.TestUsers.named;
+
+// The index follows committed changes, so the test must not wrap everything in a rolled back transaction
+@UsersServiceSliceTest(properties = "users.search.rebuild-interval=1h")
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@EnableConfigurationProperties(UsersSearchProperties.class)
+@Import({UsersSearchService.class, UserSearchIndex.class})
+public class UserSearchIndexTest {
+
+    @Autowired
+    private UsersService service;
+
+    @Autowired
+    private UsersSearchService searchService;
+
+    @Autowired
+    private UserSearchIndex index;
+
+    @Autowired
+    private UsersRepository repository;
+
+    @BeforeEach
+    public void setUp() {
+        repository.saveAll(List.of(
+                named("Alice", "Johnson", "alice@example.com", "555-1234"),
+                named("John", "Smith", "jsmith@acme.org", "555-9876"),
+                named("Bob", "Johns", "bob.johns@example.com", null),
+                named("José", "Álvarez", "jose@example.com", "+1 (555) 120-0000")));
+        index.rebuild();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        repository.deleteAll();
+    }
+
+    @Test
+    public void prefixMatchesAnyFieldAndWholeWordsRankFirst() throws Exception {
+        assertEquals(List.of("John", "Bob", "Alice"), firstNames(searchService.search("john", 0, 10)));
+        assertEquals(List.of("Alice"), firstNames(searchService.search("ali joh", 0, 10)));
+        assertEquals(List.of("José"), firstNames(searchService.search("jose alvar", 0, 10)));
+        assertEquals(List.of("John"), firstNames(searchService.search("acme", 0, 10)));
+        assertEquals(List.of("Alice"), firstNames(searchService.search("555 12", 0, 10)));
+        assertTrue(searchService.search("j", 0, 10).isEmpty());
+    }
+
+    @Test
+    public void pagesFollowTheRanking() throws Exception {
+        assertEquals(List.of("Bob"), firstNames(searchService.search("john", 1, 1)));
+        assertEquals(List.of("Alice"), firstNames(searchService.search("john", 2, 10)));
+    }
+
+    @Test
+    public void createsUpdatesAndDeletesShowUpWithoutRebuild() throws Exception {
+        UserEntity created = service.createUser(named("Johanna", "Berg", "johanna@example.com", null));
+        assertEquals(List.of("Johanna"), firstNames(searchService.search("johanna", 0, 10)));
+
+        UserEntity alice = repository.findByEmail("alice@example.com").orElseThrow();
+        service.updateAllUserInfo(alice.getId(), named("Alicia", "Keys", "alice@example.com", "555-1234"));
+        assertEquals(List.of("John", "Bob"), firstNames(searchService.search("john", 0, 10)));
+        assertEquals(List.of("Alicia"), firstNames(searchService.search("keys", 0, 10)));
+
+        service.deleteUser(created.getId());
+        assertTrue(searchService.search("johanna", 0, 10).isEmpty());
+
+        index.rebuild();
+        assertEquals(List.of("John", "Bob"), firstNames(searchService.search("john", 0, 10)));
+        assertEquals(List.of("Alicia"), firstNames(searchService.search("keys", 0, 10)));
+    }
+
+    // The segment and the delta must score a word alike, whatever its bytes, or a rebuild reorders equal users
+    @Test
+    public void nonAsciiWordsScoreTheSameBeforeAndAfterARebuild() throws Exception {
+        repository.save(named("Ольга", "Strauß", "olga@example.com", null));
+        index.rebuild();
+        service.createUser(named("Ольга", "Strauß", "olga.s@example.com", null));
+
+        assertEquals(List.of("olga@example.com", "olga.s@example.com"), emails(searchService.search("ольга strau", 0, 10)));
+        assertEquals(List.of("olga@example.com", "olga.s@example.com"), emails(searchService.search("оль", 0, 10)));
+        index.rebuild();
+        assertEquals(List.of("olga@example.com", "olga.s@example.com"), emails(searchService.search("ольга strau", 0, 10)));
+    }
+
+    private static List<String> emails(List<UserView> users) {
+        return users.stream().map(UserView::email).toList();
+    }
+
+    private static List<String> firstNames(List<UserView> users) {
+        return users.stream().map(UserView::firstName).toList();
+    }
+}
@@ -0,0 +1,123 @@
+package org.springapp.testtask.config;
+
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import com.fasterxml.jackson.dataformat.smile.databind.SmileMapper;
+import org.junit.jupiter.api.Test;
+import org.springapp.testtask.dto.BatchItemResult;
+import org.springapp.testtask.dto.BatchResult;
+import org.springapp.testtask.dto.BirthDateBucket;
+import org.springapp.testtask.dto.UserSummary;
+import org.springapp.testtask.dto.UserView;
+import org.springapp.testtask.entity.UserEntity;
+import org.springapp.testtask.proto.Users;
+import org.springframework.boot.autoconfigure.http.HttpMessageConverters;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.converter.protobuf.ProtobufHttpMessageConverter;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.sql.Date;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+public class UsersProtobufTest {
+
+    private static final MediaType SMILE = MediaType.parseMediaType("application/x-jackson-smile");
+
+    private static final UserView JOHN = new UserView(1L, "John", "Doe", "john@example.com", Date.valueOf("1990-01-01"),
+            null, "555-0100", 3);
+
+    // The bytes clients already decode: field numbers and types are unchanged from users.proto
+    @Test
+    public void encodesTheWireFormatOfUsersProto() {
+        byte[] user = UserMessages.toMessage(new UserSummary(300L, "A", "B", Date.valueOf("1969-12-31"))).toByteArray();
+        assertArrayEquals(new byte[]{0x08, (byte) 0xAC, 0x02, 0x12, 0x01, 'A', 0x1A, 0x01, 'B', 0x28, 0x01}, user);
+
+        byte[] result = UserMessages.toMessage(BatchResult.of(List.of(
+                BatchItemResult.accepted(0, BatchItemResult.Status.CREATED, 5L), BatchItemResult.rejected(1, "x")))).toByteArray();
+        assertArrayEquals(new byte[]{0x08, 0x01, 0x10, 0x01, 0x1A, 0x04, 0x10, 0x01, 0x18, 0x05,
+                0x1A, 0x07, 0x08, 0x01, 0x10, 0x03, 0x22, 0x01, 'x'}, result);
+    }
+
+    @Test
+    public void decodesWhatItEncodesAndLeavesAbsentFieldsNull() throws Exception {
+        Map<String, Object> row = Map.of("id", 2L, "email", "ann@example.com");
+        List<UserEntity> users = UserMessages.fromMessage(Users.parseFrom(UserMessages.toMessage(List.of(JOHN, row)).toByteArray()));
+
+        assertEquals(2, users.size());
+        UserEntity john = users.get(0);
+        assertEquals(new UserEntity(1L, "John", "Doe", "john@example.com", Date.valueOf("1990-01-01"), null, "555-0100"), john);
+        UserEntity ann = users.get(1);
+        assertEquals(2L, ann.getId());
+        assertEquals("ann@example.com", ann.getEmail());
+        assertNull(ann.getFirstName());
+        assertNull(ann.getDateOfBirth());
+    }
+
+    // Boot's converters, with the protobuf one added last as UsersProtobufConfiguration does
+    @Test
+    public void negotiatesBinaryFormatsOnlyWhenAskedFor() throws Exception {
+        List<HttpMessageConverter<?>> converters = new ArrayList<>(new HttpMessageConverters().getConverters());
+        converters.add(new UsersProtobufHttpMessageConverter());
+        MockMvc mvc = MockMvcBuilders.standaloneSetup(new UsersStub()).setMessageConverters(converters.toArray(HttpMessageConverter[]::new)).build();
+        byte[] users = UserMessages.toMessage(List.of(JOHN)).toByteArray();
+
+        mvc.perform(get("/users").accept(MediaType.ALL))
+                .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_JSON))
+                .andExpect(jsonPath("$[0].firstName").value("John"));
+        mvc.perform(get("/users").accept(ProtobufHttpMessageConverter.PROTOBUF))
+                .andExpect(content().contentType(ProtobufHttpMessageConverter.PROTOBUF))
+                .andExpect(header().string("X-Protobuf-Message", "testtask.users.v1.Users"))
+                .andExpect(content().bytes(users));
+        mvc.perform(get("/users/stats").accept(ProtobufHttpMessageConverter.PROTOBUF))
+                .andExpect(status().isNotAcceptable());
+        mvc.perform(post("/users/batch").contentType(ProtobufHttpMessageConverter.PROTOBUF).content(users))
+                .andExpect(jsonPath("$[0]").value("john@example.com"));
+        mvc.perform(post("/users/batch").contentType(ProtobufHttpMessageConverter.PROTOBUF).content(new byte[]{0x0A, 0x05, 0x08}))
+                .andExpect(status().isBadRequest());
+
+        byte[] smile = mvc.perform(get("/users/stats").accept(SMILE))
+                .andExpect(content().contentType(SMILE))
+                .andReturn().getResponse().getContentAsByteArray();
+        assertEquals(1990, new SmileMapper().readTree(smile).get(0).get("year").asInt());
+        byte[] cbor = mvc.perform(get("/users").accept(MediaType.APPLICATION_CBOR))
+                .andExpect(content().contentType(MediaType.APPLICATION_CBOR))
+                .andReturn().getResponse().getContentAsByteArray();
+        assertEquals("John", new CBORMapper().readTree(cbor).get(0).get("firstName").asText());
+    }
+
+    @RestController
+    static class UsersStub {
+
+        @GetMapping("/users")
+        public List<?> users() {
+            return List.of(JOHN);
+        }
+
+        @GetMapping("/users/stats")
+        public List<BirthDateBucket> stats() {
+            return List.of(new BirthDateBucket(1990, 1L));
+        }
+
+        @PostMapping("/users/batch")
+        public List<String> batch(@RequestBody List<UserEntity> users) {
+            return users.stream().map(UserEntity::getEmail).toList();
+        }
+    }
+}
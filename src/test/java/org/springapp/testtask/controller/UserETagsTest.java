@@ -0,0 +1,29 @@
+package org.springapp.testtask.controller;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+public class UserETagsTest {
+
+    @Test
+    public void ifMatchIsAListOfStrongTags() {
+        assertEquals(Set.of(4L), UserETags.expectedVersions("\"4\""));
+        assertEquals(Set.of(3L, 4L), UserETags.expectedVersions("\"3\", \"4\""));
+        assertEquals(Set.of(3L, 4L), UserETags.expectedVersions("\"3\",\"4\" ,"));
+        // Weak tags never match under strong comparison, nor do page tags or garbage
+        assertEquals(Set.of(5L), UserETags.expectedVersions("W/\"4\", \"5\""));
+        assertEquals(Set.of(), UserETags.expectedVersions("W/\"4\""));
+        assertEquals(Set.of(), UserETags.expectedVersions("\"2-9f1c\", 4, \"\""));
+    }
+
+    @Test
+    public void missingOrAnyIfMatchIsUnconditional() {
+        assertNull(UserETags.expectedVersions(null));
+        assertNull(UserETags.expectedVersions(" "));
+        assertNull(UserETags.expectedVersions("*"));
+    }
+}
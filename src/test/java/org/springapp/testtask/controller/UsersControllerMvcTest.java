@@ -0,0 +1,108 @@
+package org.springapp.testtask.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springapp.testtask.dto.UserView;
+import org.springapp.testtask.exception.GlobalExceptionsHandler;
+import org.springapp.testtask.metrics.UsersMetrics;
+import org.springapp.testtask.service.UsersService;
+import org.springapp.testtask.service.UsersWriteBehindService;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.sql.Date;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.BDDMockito.willAnswer;
+import static org.mockito.Mockito.mock;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+// The HTTP side of UsersController against a mocked UsersService: paging links and NDJSON streaming
+public class UsersControllerMvcTest {
+
+    private final UsersService service = mock(UsersService.class);
+    private MockMvc mvc;
+
+    @BeforeEach
+    public void setUp() {
+        ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        UsersController controller = new UsersController(service, objectMapper,
+                new StaticListableBeanFactory().getBeanProvider(UsersWriteBehindService.class));
+        mvc = MockMvcBuilders.standaloneSetup(controller)
+                .setControllerAdvice(new GlobalExceptionsHandler(new UsersMetrics(new SimpleMeterRegistry())))
+                .setMessageConverters(new MappingJackson2HttpMessageConverter(objectMapper))
+                .build();
+    }
+
+    @Test
+    public void fullPageLinksToTheNextOne() throws Exception {
+        given(service.getAllUsers(0L, 2)).willReturn(users(1, 2));
+        given(service.getAllUsers(2L, 2)).willReturn(users(3));
+
+        mvc.perform(get("/users").param("limit", "2"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(2))
+                .andExpect(header().string(HttpHeaders.LINK, "<http://localhost/users?after=2&limit=2>; rel=\"next\""));
+        mvc.perform(get("/users").param("after", "2").param("limit", "2"))
+                .andExpect(jsonPath("$[0].id").value(3))
+                .andExpect(header().doesNotExist(HttpHeaders.LINK));
+    }
+
+    @Test
+    public void bareListIsTheFirstPage() throws Exception {
+        given(service.getAllUsers(0L, UsersService.DEFAULT_PAGE_SIZE))
+                .willReturn(users(LongStream.rangeClosed(1, UsersService.DEFAULT_PAGE_SIZE).toArray()));
+
+        mvc.perform(get("/users"))
+                .andExpect(jsonPath("$.length()").value(UsersService.DEFAULT_PAGE_SIZE))
+                .andExpect(header().string(HttpHeaders.LINK, "<http://localhost/users?after=100&limit=100>; rel=\"next\""));
+    }
+
+    @Test
+    public void streamWritesOneUserPerLine() throws Exception {
+        willAnswer(invocation -> {
+            Consumer<UserView> consumer = invocation.getArgument(0);
+            users(1, 2, 3).forEach(consumer);
+            return null;
+        }).given(service).streamAllUsers(any());
+
+        MvcResult result = mvc.perform(get("/users").accept(MediaType.APPLICATION_NDJSON))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        String body = mvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_NDJSON))
+                .andReturn().getResponse().getContentAsString();
+
+        List<String> lines = body.lines().toList();
+        assertEquals(3, lines.size());
+        assertTrue(lines.get(2).startsWith("{\"id\":3,"));
+    }
+
+    static List<UserView> users(long... ids) {
+        return LongStream.of(ids)
+                .mapToObj(id -> new UserView(id, "User", "Number" + id, "user" + id + "@example.com",
+                        Date.valueOf("1990-01-01"), null, null, 0L))
+                .toList();
+    }
+}
@@ -5,6 +5,7 @@ import org.junit.jupiter.api.Order;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.TestMethodOrder;
 import org.mockito.Mock;
+import org.springapp.testtask.dto.UserView;
 import org.springapp.testtask.entity.UserEntity;
 import org.springapp.testtask.exception.BirthdateRangeException;
 import org.springapp.testtask.exception.NoUserException;
@@ -51,11 +52,11 @@ public class UsersControllerTest {
     @Test
     @Order(1)
     public void getAllUsersTest() throws Exception {
-        List<UserEntity> users = List.of(
-                new UserEntity(1L, "John", "Doe", "john.doe@example.com",
-                        Date.valueOf("1990-01-01"), "123 Main Street", "555-1234"),
-                new UserEntity(2L, "Jane", "Smith", "jane.smith@example.com",
-                        Date.valueOf("1995-02-15"), "456 Elm Street", "555-5678")
+        List<UserView> users = List.of(
+                new UserView(1L, "John", "Doe", "john.doe@example.com",
+                        Date.valueOf("1990-01-01"), "123 Main Street", "555-1234", 0L),
+                new UserView(2L, "Jane", "Smith", "jane.smith@example.com",
+                        Date.valueOf("1995-02-15"), "456 Elm Street", "555-5678", 0L)
         );
 
         given(userService.getAllUsers()).willReturn(users);
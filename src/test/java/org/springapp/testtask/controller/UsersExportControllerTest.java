@@ -0,0 +1,132 @@
+package org.springapp.testtask.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springapp.testtask.UsersServiceSliceTest;
+import org.springapp.testtask.entity.UserEntity;
+import org.springapp.testtask.exception.GlobalExceptionsHandler;
+import org.springapp.testtask.metrics.UsersMetrics;
+import org.springapp.testtask.repository.UsersRepository;
+import org.springapp.testtask.service.UsersService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springapp.testtask.TestUsers.user;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+// GET /users/export end to end on H2: the body streams on the async thread, outside the test's transaction
+@UsersServiceSliceTest
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+public class UsersExportControllerTest {
+
+    @Autowired
+    private UsersService service;
+
+    @Autowired
+    private UsersRepository repository;
+
+    @Autowired
+    private UsersMetrics metrics;
+
+    private MockMvc mvc;
+    private List<UserEntity> users;
+
+    @BeforeEach
+    public void setUp() {
+        ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        mvc = MockMvcBuilders.standaloneSetup(new UsersExportController(service, objectMapper))
+                .setControllerAdvice(new GlobalExceptionsHandler(metrics))
+                .setMessageConverters(new MappingJackson2HttpMessageConverter(objectMapper))
+                .build();
+        users = repository.saveAll(List.of(
+                user("ann@example.com", "1970-05-05"),
+                user("ben@example.com", "1985-06-06"),
+                user("cid@example.com", "2000-07-07")));
+    }
+
+    @AfterEach
+    public void tearDown() {
+        repository.deleteAll();
+    }
+
+    @Test
+    public void ndjsonIsOneUserPerLineEndingInANewline() throws Exception {
+        String body = export(get("/users/export"), MediaType.APPLICATION_NDJSON);
+
+        assertTrue(body.endsWith("}\n"), body);
+        List<String> lines = body.lines().toList();
+        assertEquals(3, lines.size());
+        assertTrue(lines.get(0).startsWith("{\"id\":" + users.get(0).getId() + ","), lines.get(0));
+        assertTrue(lines.get(2).contains("\"email\":\"cid@example.com\""), lines.get(2));
+    }
+
+    @Test
+    public void csvHasAHeaderThenOneRowPerUser() throws Exception {
+        String body = export(get("/users/export").param("format", "CSV"), MediaType.parseMediaType("text/csv"));
+
+        List<String> lines = body.lines().toList();
+        assertEquals(List.of(
+                "id,firstName,lastName,email,dateOfBirth,address,phoneNumber",
+                users.get(0).getId() + ",Test,User,ann@example.com,1970-05-05,,",
+                users.get(1).getId() + ",Test,User,ben@example.com,1985-06-06,,",
+                users.get(2).getId() + ",Test,User,cid@example.com,2000-07-07,,"), lines);
+    }
+
+    @Test
+    public void boundsAreInclusiveAndCombine() throws Exception {
+        assertEquals(List.of("ben@example.com", "cid@example.com"), emails(get("/users/export")
+                .param("from", "1985-06-06").param("to", "2010-01-01")));
+        assertEquals(List.of("ann@example.com", "ben@example.com"), emails(get("/users/export")
+                .param("fromId", users.get(0).getId().toString()).param("toId", users.get(1).getId().toString())));
+        assertEquals(List.of("ben@example.com"), emails(get("/users/export")
+                .param("from", "1980-01-01").param("fromId", users.get(1).getId().toString())
+                .param("toId", users.get(2).getId().toString()).param("to", "1990-01-01")));
+    }
+
+    // Rejected before the body starts, while the status can still be set
+    @Test
+    public void invertedRangeIsABadRequestBeforeAnythingStreams() throws Exception {
+        mvc.perform(get("/users/export").param("from", "2000-01-01").param("to", "1990-01-01"))
+                .andExpect(request().asyncNotStarted())
+                .andExpect(status().isBadRequest())
+                .andExpect(header().doesNotExist(HttpHeaders.CONTENT_DISPOSITION));
+    }
+
+    private String export(MockHttpServletRequestBuilder request, MediaType contentType) throws Exception {
+        MvcResult result = mvc.perform(request)
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        String extension = contentType.equals(MediaType.APPLICATION_NDJSON) ? "ndjson" : "csv";
+        return mvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(contentType))
+                .andExpect(header().string(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"users." + extension + "\""))
+                .andReturn().getResponse().getContentAsString();
+    }
+
+    private List<String> emails(MockHttpServletRequestBuilder request) throws Exception {
+        return export(request, MediaType.APPLICATION_NDJSON).lines()
+                .map(line -> line.replaceAll(".*\"email\":\"([^\"]+)\".*", "$1"))
+                .toList();
+    }
+}
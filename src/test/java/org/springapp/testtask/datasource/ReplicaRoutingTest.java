@@ -0,0 +1,163 @@
+package org.springapp.testtask.datasource;
+
+import jakarta.servlet.http.Cookie;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springapp.testtask.UsersServiceSliceTest;
+import org.springapp.testtask.config.UsersReplicaProperties;
+import org.springapp.testtask.dto.UserView;
+import org.springapp.testtask.entity.UserEntity;
+import org.springapp.testtask.repository.UsersRepository;
+import org.springapp.testtask.service.UsersService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Date;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+// Two in-memory H2 databases stand in for the primary and a replica; they hold different rows, so every
+// read shows where it went. The replica reports its lag from a table the tests control.
+@UsersServiceSliceTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:primary;DB_CLOSE_DELAY=-1",
+        "spring.datasource.driver-class-name=org.h2.Driver",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.test.database.replace=none",
+        "users.replicas.enabled=true",
+        "users.replicas.instances[0].url=" + ReplicaRoutingTest.REPLICA_URL,
+        "users.replicas.lag-query=select lag from replica_lag",
+        "users.replicas.check-interval=1h"
+})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@EnableConfigurationProperties(UsersReplicaProperties.class)
+@Import(ReplicaRoutingConfiguration.class)
+public class ReplicaRoutingTest {
+
+    static final String REPLICA_URL = "jdbc:h2:mem:replica;DB_CLOSE_DELAY=-1";
+
+    @Autowired
+    private UsersService service;
+
+    @Autowired
+    private UsersRepository repository;
+
+    @Autowired
+    private ReplicaDataSource replicaDataSource;
+
+    private static final JdbcTemplate replica = new JdbcTemplate(new DriverManagerDataSource(REPLICA_URL, "sa", ""));
+
+    private UserEntity primaryUser;
+
+    // Before the context starts, so the replica's first scheduled check already finds its tables
+    @BeforeAll
+    public static void createReplicaSchema() {
+        replica.execute("""
+                create table if not exists users (id bigint primary key, first_name varchar(255) not null,
+                last_name varchar(255) not null, email varchar(255) not null unique, date_of_birth date not null,
+                address varchar(255), phone_number varchar(255), version bigint not null)""");
+        replica.execute("create table if not exists replica_lag (lag int)");
+        replica.update("delete from replica_lag");
+        replica.update("insert into replica_lag values (0)");
+    }
+
+    @BeforeEach
+    public void setUp() {
+        replica.update("delete from users");
+        replica.update("insert into users values (1000, 'Rita', 'Replica', 'replica@example.com', date '1990-01-01', null, null, 0)");
+        replica.update("update replica_lag set lag = 0");
+        replicaDataSource.checkReplicas();
+
+        primaryUser = repository.save(new UserEntity(null, "Paul", "Primary", "primary@example.com",
+                Date.valueOf("1990-01-01"), null, null));
+    }
+
+    @AfterEach
+    public void tearDown() {
+        repository.deleteAll();
+    }
+
+    @Test
+    public void readOnlyServiceReadsGoToTheReplica() throws Exception {
+        assertEquals(List.of("replica@example.com"), emails(service.getAllUsers(0L, 10)));
+        assertEquals(List.of("replica@example.com"), emails(service.getUsersByBirthDateRange(
+                Date.valueOf("1989-01-01"), Date.valueOf("1991-01-01"))));
+    }
+
+    @Test
+    public void laggingReplicaFallsBackToThePrimary() {
+        replica.update("update replica_lag set lag = 60");
+        replicaDataSource.checkReplicas();
+
+        assertEquals(List.of("primary@example.com"), emails(service.getAllUsers(0L, 10)));
+    }
+
+    @Test
+    public void cacheLoadsReadThePrimary() throws Exception {
+        assertEquals("primary@example.com", service.getUser(primaryUser.getId()).getEmail());
+    }
+
+    @Test
+    public void clientThatJustWroteReadsFromThePrimary() throws Exception {
+        ReadYourWritesFilter filter = new ReadYourWritesFilter(Duration.ofSeconds(10));
+        MockHttpServletResponse writeResponse = new MockHttpServletResponse();
+        filter.doFilter(new MockHttpServletRequest("PUT", "/users/1"), writeResponse, (request, response) -> {
+        });
+        Cookie pin = writeResponse.getCookie(ReadYourWritesFilter.COOKIE);
+        assertNotNull(pin);
+
+        MockHttpServletRequest read = new MockHttpServletRequest("GET", "/users");
+        read.setCookies(pin);
+        List<UserView> users = new ArrayList<>();
+        filter.doFilter(read, new MockHttpServletResponse(), (request, response) -> users.addAll(service.getAllUsers(0L, 10)));
+
+        assertEquals(List.of("primary@example.com"), emails(users));
+        assertEquals(List.of("replica@example.com"), emails(service.getAllUsers(0L, 10)));
+    }
+
+    @Test
+    public void pinFollowsTheRequestOntoTheTaskExecutor() throws Exception {
+        ReadYourWritesFilter filter = new ReadYourWritesFilter(Duration.ofSeconds(10));
+        MockHttpServletRequest read = new MockHttpServletRequest("GET", "/users/stream");
+        read.setCookies(new Cookie(ReadYourWritesFilter.COOKIE, Long.toString(System.currentTimeMillis() + 10_000)));
+        List<UserView> streamed = new ArrayList<>();
+        List<UserView> unpinned = new ArrayList<>();
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            filter.doFilter(read, new MockHttpServletResponse(), (request, response) -> {
+                try {
+                    executor.submit(ReadYourWritesFilter.propagatePin(() -> service.streamAllUsers(streamed::add))).get();
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                }
+            });
+            // The same pooled thread is unpinned again for whatever it runs next
+            executor.submit(() -> service.streamAllUsers(unpinned::add)).get();
+        } finally {
+            executor.shutdown();
+        }
+
+        assertEquals(List.of("primary@example.com"), emails(streamed));
+        assertEquals(List.of("replica@example.com"), emails(unpinned));
+    }
+
+    private static List<String> emails(List<UserView> users) {
+        return users.stream().map(UserView::email).toList();
+    }
+}
@@ -0,0 +1,77 @@
+package org.springapp.testtask.datasource;
+
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+// The shipped db/migration scripts, configured the way application.properties configures Boot's Flyway
+public class SchemaMigrationsTest {
+
+    // What ddl-auto=update created for the original entity, before the scripts existed
+    private static final String BASELINE_DDL = """
+            create table users (id bigint not null auto_increment, address varchar(255), date_of_birth date not null,
+            email varchar(255) not null, first_name varchar(255) not null, last_name varchar(255) not null,
+            phone_number varchar(255), primary key (id)) engine=InnoDB;
+            alter table users add constraint UK_6dotkott2kjsp8vw4d0m25fb7 unique (email);
+            """;
+
+    private final SingleConnectionDataSource dataSource =
+            new SingleConnectionDataSource("jdbc:h2:mem:migrations;MODE=MySQL", "sa", "", true);
+    private final JdbcTemplate jdbc = new JdbcTemplate(dataSource);
+    private final Flyway flyway = Flyway.configure()
+            .dataSource(dataSource)
+            .baselineOnMigrate(true)
+            .baselineVersion("1")
+            .load();
+
+    @AfterEach
+    public void tearDown() {
+        dataSource.destroy();
+    }
+
+    @Test
+    public void createsTheSchemaOnAnEmptyDatabaseAndItAcceptsAUser() {
+        assertEquals(4, flyway.migrate().migrationsExecuted);
+        assertEquals(0, flyway.migrate().migrationsExecuted);
+
+        assertEquals(1L, jdbc.queryForObject("select next_val from users_seq", Long.class));
+        jdbc.update("""
+                insert into users (id, first_name, last_name, email, date_of_birth, version)
+                values (1, 'John', 'Doe', 'john@example.com', date '1990-01-01', 0)""");
+        assertThrows(Exception.class, () -> jdbc.update("""
+                insert into users (id, first_name, last_name, email, date_of_birth, version)
+                values (2, 'Jane', 'Doe', 'john@example.com', date '1990-01-01', 0)"""));
+    }
+
+    @Test
+    public void upgradesTheBaselineSchemaAndKeepsItsRows() {
+        jdbc.execute(BASELINE_DDL);
+        jdbc.update("""
+                insert into users (first_name, last_name, email, date_of_birth)
+                values ('John', 'Doe', 'john@example.com', date '1990-01-01'),
+                       ('Jane', 'Smith', 'jane@example.com', date '1995-02-15')""");
+
+        assertEquals(3, flyway.migrate().migrationsExecuted);
+
+        // V1 is recorded as the baseline instead of running against the table that is already there
+        assertEquals(List.of("1 BASELINE", "2 SQL", "3 SQL", "4 SQL"), jdbc.queryForList("""
+                select concat("version", ' ', "type") from "flyway_schema_history"
+                where "version" is not null order by "installed_rank"
+                """, String.class));
+        assertEquals(List.of(0L, 0L), jdbc.queryForList("select version from users order by id", Long.class));
+        assertEquals(1, jdbc.queryForObject("""
+                select count(*) from information_schema.indexes
+                where table_name = 'USERS' and index_name = 'IDX_USERS_DATE_OF_BIRTH'""", Integer.class));
+        assertEquals(2, jdbc.queryForObject("""
+                select count(*) from users u where u.date_of_birth between date '1980-01-01' and date '2000-12-31'
+                and u.version = 0""", Integer.class));
+        assertEquals(1L, jdbc.queryForObject("select next_val from users_seq", Long.class));
+    }
+}
@@ -0,0 +1,147 @@
+package org.springapp.testtask.datasource;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springapp.testtask.UsersServiceSliceTest;
+import org.springapp.testtask.dto.BatchResult;
+import org.springapp.testtask.dto.BirthDateBucket;
+import org.springapp.testtask.dto.UserView;
+import org.springapp.testtask.entity.UserEntity;
+import org.springapp.testtask.entity.UserIdGenerator;
+import org.springapp.testtask.exception.UserCreatedException;
+import org.springapp.testtask.service.UsersService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.sql.DataSource;
+import java.sql.Date;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springapp.testtask.TestUsers.user;
+
+// A global database and two shards, all in-memory H2 in MySQL mode with the schema from db/migration
+@UsersServiceSliceTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:sharding-global;MODE=MySQL;DB_CLOSE_DELAY=-1",
+        "spring.datasource.driver-class-name=org.h2.Driver",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.test.database.replace=none",
+        "spring.jpa.hibernate.ddl-auto=none",
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.MySQLDialect",
+        "spring.flyway.enabled=true",
+        "users.outbox.enabled=false",
+        "users.sharding.enabled=true",
+        "users.sharding.worker-id=3",
+        "users.sharding.shards[0].url=jdbc:h2:mem:sharding-0;MODE=MySQL;DB_CLOSE_DELAY=-1",
+        "users.sharding.shards[1].url=jdbc:h2:mem:sharding-1;MODE=MySQL;DB_CLOSE_DELAY=-1"
+})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@Import(ShardRoutingConfiguration.class)
+public class ShardingTest {
+
+    @Autowired
+    private UsersService service;
+
+    @Autowired
+    private UserShards shards;
+
+    @Autowired
+    private ShardRoutingDataSource shardRoutingDataSource;
+
+    @Autowired
+    private DataSource primaryDataSource;
+
+    @AfterEach
+    public void tearDown() {
+        shardRoutingDataSource.shards().forEach(shard -> new JdbcTemplate(shard).update("delete from users"));
+        new JdbcTemplate(primaryDataSource).update("delete from user_emails");
+    }
+
+    @Test
+    public void usersLandOnTheShardInTheirIdAndPagesMergeInIdOrder() throws Exception {
+        List<UserEntity> newUsers = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            newUsers.add(user("user" + i + "@example.com", "1990-01-01"));
+        }
+        BatchResult result = service.createUsers(newUsers);
+        assertEquals(20, result.accepted());
+
+        for (int shard = 0; shard < 2; shard++) {
+            List<Long> ids = shardJdbc(shard).queryForList("select id from users", Long.class);
+            assertTrue(!ids.isEmpty(), "shard " + shard + " got no users");
+            for (long id : ids) {
+                assertEquals(shard, UserIdGenerator.shardOf(id));
+            }
+        }
+
+        List<UserView> firstPage = service.getAllUsers(0L, 5);
+        List<UserView> rest = service.getAllUsers(firstPage.get(4).id(), 100);
+        List<Long> paged = new ArrayList<>(ids(firstPage));
+        paged.addAll(ids(rest));
+        assertEquals(result.items().stream().map(item -> item.id()).sorted().toList(), paged);
+        assertEquals("user7@example.com", service.getUser(result.items().get(7).id()).getEmail());
+    }
+
+    @Test
+    public void emailsStayUniqueAcrossShardsUntilTheirUserIsDeleted() throws Exception {
+        String first = "first@example.com";
+        String second = emailOnOtherShard(first);
+        UserEntity firstUser = service.createUser(user(first, "1990-01-01"));
+        UserEntity secondUser = service.createUser(user(second, "1990-01-01"));
+        assertNotEquals(UserIdGenerator.shardOf(firstUser.getId()), UserIdGenerator.shardOf(secondUser.getId()));
+
+        assertThrows(UserCreatedException.class, () -> service.createUser(user("FIRST@example.com", "1991-01-01")));
+        assertThrows(UserCreatedException.class,
+                () -> service.updateUserInfo(secondUser.getId(), user("First@Example.com", "1990-01-01")));
+        assertEquals(1, service.createUsers(List.of(user(second.toUpperCase(), "1990-01-01"))).rejected());
+
+        service.deleteUser(firstUser.getId());
+        UserEntity moved = service.updateUserInfo(secondUser.getId(), user(first, "1990-01-01"));
+        assertEquals(first, moved.getEmail());
+        // The email it gave up is free again
+        assertEquals(1, service.createUsers(List.of(user(second, "1990-01-01"))).accepted());
+        assertEquals(List.of(first, second), new JdbcTemplate(primaryDataSource)
+                .queryForList("select email from user_emails where user_id is not null order by email", String.class));
+    }
+
+    @Test
+    public void rangesAndCountsCoverEveryShard() throws Exception {
+        String first = "range@example.com";
+        String second = emailOnOtherShard(first);
+        service.createUser(user(first, "1990-03-01"));
+        service.createUser(user(second, "1990-03-15"));
+        service.createUser(user("elsewhere@example.com", "1980-03-01"));
+
+        List<UserView> range = service.getUsersByBirthDateRange(Date.valueOf("1990-01-01"), Date.valueOf("1991-01-01"));
+        assertEquals(2, range.size());
+        assertTrue(range.get(0).id() < range.get(1).id());
+        assertEquals(List.of(new BirthDateBucket(1980, 3, 1L), new BirthDateBucket(1990, 3, 2L)),
+                service.countUsersByBirthDateRange(Date.valueOf("1970-01-01"), Date.valueOf("2000-01-01"),
+                        BirthDateBucket.Grouping.MONTH));
+    }
+
+    private String emailOnOtherShard(String email) {
+        for (int i = 0; ; i++) {
+            String other = "other" + i + "@example.com";
+            if (shards.shardFor(other) != shards.shardFor(email)) {
+                return other;
+            }
+        }
+    }
+
+    private JdbcTemplate shardJdbc(int shard) {
+        return new JdbcTemplate(shardRoutingDataSource.shards().get(shard));
+    }
+
+    private static List<Long> ids(List<UserView> users) {
+        return users.stream().map(UserView::id).toList();
+    }
+}
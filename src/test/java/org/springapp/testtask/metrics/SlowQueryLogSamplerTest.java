@@ -0,0 +1,63 @@
+package org.springapp.testtask.metrics;
+
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.read.ListAppender;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.LoggerFactory;
+import org.springapp.testtask.config.SlowQueryLogProperties;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class SlowQueryLogSamplerTest {
+
+    private final Logger slowQueries = (Logger) LoggerFactory.getLogger(SlowQueryLogSampler.SLOW_QUERY_LOGGER);
+    private final Logger other = (Logger) LoggerFactory.getLogger("org.hibernate.SQL");
+    private final ListAppender<ILoggingEvent> appender = new ListAppender<>();
+    private SlowQueryLogSampler sampler;
+
+    @BeforeEach
+    public void setUp() {
+        appender.start();
+        slowQueries.addAppender(appender);
+        other.addAppender(appender);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        sampler.remove();
+        slowQueries.detachAppender(appender);
+        other.detachAppender(appender);
+    }
+
+    @Test
+    public void writesAboutTheSampleRateAndCountsEverySlowStatement() {
+        sampler = new SlowQueryLogSampler(new SlowQueryLogProperties(0.1));
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        sampler.bindTo(registry);
+
+        for (int i = 0; i < 10_000; i++) {
+            if (slowQueries.isInfoEnabled()) {
+                slowQueries.info("Slow query took {} milliseconds [select 1]", 250);
+            }
+        }
+
+        int logged = appender.list.size();
+        assertTrue(logged > 800 && logged < 1200, "logged " + logged);
+        assertEquals(10_000, registry.get("users.slow.queries").functionCounter().count());
+    }
+
+    @Test
+    public void leavesOtherLoggersAlone() {
+        sampler = new SlowQueryLogSampler(new SlowQueryLogProperties(0));
+        slowQueries.info("Slow query took {} milliseconds [select 1]", 250);
+        other.info("select 1");
+
+        assertEquals(1, appender.list.size());
+        assertEquals("select 1", appender.list.get(0).getFormattedMessage());
+    }
+}
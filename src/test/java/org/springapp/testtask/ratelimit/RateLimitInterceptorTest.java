@@ -0,0 +1,148 @@
+package org.springapp.testtask.ratelimit;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springapp.testtask.config.UsersRateLimitProperties;
+import org.springapp.testtask.controller.UsersAnalyticsController;
+import org.springapp.testtask.controller.UsersChangesController;
+import org.springapp.testtask.controller.UsersController;
+import org.springapp.testtask.controller.UsersExportController;
+import org.springapp.testtask.controller.UsersImportController;
+import org.springapp.testtask.controller.UsersSearchController;
+import org.springapp.testtask.controller.UsersWriteBehindController;
+import org.springapp.testtask.exception.RateLimitExceededException;
+import org.springapp.testtask.exception.ServerBusyException;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.context.properties.source.MapConfigurationPropertySource;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.io.support.PropertiesLoaderUtils;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.method.HandlerMethod;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class RateLimitInterceptorTest {
+
+    // What RequestMappingHandlerMapping would map for the application's controllers
+    private static final List<HandlerMethod> HANDLERS = Stream.of(UsersController.class, UsersSearchController.class,
+                    UsersAnalyticsController.class, UsersExportController.class, UsersImportController.class,
+                    UsersChangesController.class, UsersWriteBehindController.class)
+            .flatMap(controller -> Arrays.stream(controller.getDeclaredMethods()))
+            .filter(method -> AnnotatedElementUtils.hasAnnotation(method, RequestMapping.class))
+            .map(method -> new HandlerMethod(new Object(), method))
+            .toList();
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    // 20 tokens that take a minute to come back, so nothing refills while a test runs
+    private final RateLimitInterceptor interceptor = new RateLimitInterceptor(new UsersRateLimitProperties(
+            true, 20, 1.0 / 3, "X-Client-Id", 1000, 4, 3, Map.of(
+            "UsersController.getAllUsers", new UsersRateLimitProperties.Endpoint(10, null),
+            "UsersController.streamAllUsers", new UsersRateLimitProperties.Endpoint(1, 1),
+            "UsersImportController.getStatus", new UsersRateLimitProperties.Endpoint(20, null))), registry);
+
+    @Test
+    public void listRequestsCostMoreThanLookupsAndClientsHaveTheirOwnBuckets() throws Exception {
+        call("alice", "getAllUsers");
+        call("alice", "getAllUsers");
+        RateLimitExceededException limited = assertThrows(RateLimitExceededException.class,
+                () -> call("alice", "getAllUsers"));
+        assertTrue(limited.getRetryAfterSeconds() > 1);
+        assertThrows(RateLimitExceededException.class, () -> call("alice", "getUser"));
+
+        for (int i = 0; i < 20; i++) {
+            call("bob", "getUser");
+        }
+        assertThrows(RateLimitExceededException.class, () -> call("bob", "getUser"));
+        assertEquals(2, registry.get("users.rate.limit.rejections").tag("reason", "rate").counters().size());
+        assertEquals(10, registry.get("users.rate.limit.cost").tag("endpoint", "UsersController.getAllUsers").gauge().value());
+    }
+
+    @Test
+    public void concurrentRequestsOverTheLimitAreShedWithoutSpendingTokens() throws Exception {
+        MockHttpServletRequest first = admit("alice", "streamAllUsers");
+        for (int i = 0; i < 25; i++) {
+            assertThrows(ServerBusyException.class, () -> admit("alice", "streamAllUsers"));
+        }
+        assertEquals(1, registry.get("users.rate.limit.in.flight").tag("endpoint", "UsersController.streamAllUsers").gauge().value());
+
+        interceptor.afterCompletion(first, new MockHttpServletResponse(), handler(UsersController.class, "streamAllUsers"), null);
+        admit("alice", "streamAllUsers");
+        assertEquals(25, registry.get("users.rate.limit.rejections")
+                .tags("endpoint", "UsersController.streamAllUsers", "reason", "concurrency").counter().count());
+    }
+
+    @Test
+    public void inFlightCapCoversAllEndpoints() throws Exception {
+        admit("alice", "getUser");
+        admit("bob", "getUser");
+        admit("carol", "getUser");
+        admit("dave", "createUser");
+
+        assertThrows(ServerBusyException.class, () -> admit("erin", "deleteUser"));
+    }
+
+    @Test
+    public void handlersWithTheSameNameInDifferentControllersAreSeparateEndpoints() throws Exception {
+        call("alice", UsersImportController.class, "getStatus");
+        assertThrows(RateLimitExceededException.class, () -> call("alice", UsersImportController.class, "getStatus"));
+
+        for (int i = 0; i < 20; i++) {
+            call("bob", UsersWriteBehindController.class, "getStatus");
+        }
+        assertEquals(20, registry.get("users.rate.limit.cost")
+                .tag("endpoint", "UsersImportController.getStatus").gauge().value());
+    }
+
+    @Test
+    public void shippedEndpointKeysBindAndMatchHandlers() throws Exception {
+        Properties shipped = PropertiesLoaderUtils.loadProperties(new ClassPathResource("application.properties"));
+        UsersRateLimitProperties properties = new Binder(new MapConfigurationPropertySource(shipped))
+                .bind("users.rate-limit", UsersRateLimitProperties.class).get();
+        assertEquals(50, properties.endpoints().get("UsersExportController.exportUsers").cost());
+        new RateLimitInterceptor(properties, registry).checkEndpoints(HANDLERS);
+
+        RateLimitInterceptor stale = new RateLimitInterceptor(new UsersRateLimitProperties(true, 20, 1, null, 1000, 4, 3,
+                Map.of("getAllUsers", new UsersRateLimitProperties.Endpoint(10, null))), new SimpleMeterRegistry());
+        IllegalStateException failure = assertThrows(IllegalStateException.class, () -> stale.checkEndpoints(HANDLERS));
+        assertTrue(failure.getMessage().contains("[getAllUsers]"));
+    }
+
+    private void call(String client, String endpoint) throws Exception {
+        call(client, UsersController.class, endpoint);
+    }
+
+    private void call(String client, Class<?> controller, String endpoint) throws Exception {
+        interceptor.afterCompletion(admit(client, controller, endpoint), new MockHttpServletResponse(),
+                handler(controller, endpoint), null);
+    }
+
+    private MockHttpServletRequest admit(String client, String endpoint) throws Exception {
+        return admit(client, UsersController.class, endpoint);
+    }
+
+    private MockHttpServletRequest admit(String client, Class<?> controller, String endpoint) throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/users");
+        request.addHeader("X-Client-Id", client);
+        assertTrue(interceptor.preHandle(request, new MockHttpServletResponse(), handler(controller, endpoint)));
+        return request;
+    }
+
+    private static HandlerMethod handler(Class<?> controller, String name) {
+        return new HandlerMethod(new Object(), Arrays.stream(controller.getMethods())
+                .filter(method -> method.getName().equals(name))
+                .findFirst()
+                .orElseThrow());
+    }
+}
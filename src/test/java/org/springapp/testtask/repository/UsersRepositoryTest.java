@@ -0,0 +1,80 @@
+package org.springapp.testtask.repository;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springapp.testtask.UsersServiceSliceTest;
+import org.springapp.testtask.dto.BirthDateBucket;
+import org.springapp.testtask.dto.UserExportFilter;
+import org.springapp.testtask.dto.UserSummary;
+import org.springapp.testtask.dto.UserView;
+import org.springapp.testtask.entity.UserEntity;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Limit;
+
+import java.sql.Date;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springapp.testtask.TestUsers.user;
+
+@UsersServiceSliceTest
+public class UsersRepositoryTest {
+
+    private static final Date FROM = Date.valueOf("1980-01-01");
+    private static final Date TO = Date.valueOf("2000-12-31");
+
+    @Autowired
+    private UsersRepository repository;
+
+    @BeforeEach
+    public void setUp() {
+        repository.saveAllAndFlush(List.of(
+                user("a@example.com", "1985-03-10"),
+                user("b@example.com", "1985-03-20"),
+                user("c@example.com", "1985-07-01"),
+                user("d@example.com", "1990-01-01"),
+                user("e@example.com", "1970-01-01")));
+    }
+
+    @Test
+    public void rangeIsPagedById() {
+        List<UserSummary> firstPage = repository.findByDateOfBirthBetweenAndIdGreaterThanOrderByIdAsc(
+                FROM, TO, 0L, Limit.of(3), UserSummary.class);
+        List<UserSummary> secondPage = repository.findByDateOfBirthBetweenAndIdGreaterThanOrderByIdAsc(
+                FROM, TO, firstPage.get(2).id(), Limit.of(3), UserSummary.class);
+
+        assertEquals(3, firstPage.size());
+        assertEquals(1, secondPage.size());
+        assertEquals(Date.valueOf("1990-01-01"), secondPage.get(0).dateOfBirth());
+    }
+
+    @Test
+    public void countByBirthYear() {
+        assertEquals(List.of(new BirthDateBucket(1985, 3L), new BirthDateBucket(1990, 1L)),
+                repository.countByBirthYear(FROM, TO));
+    }
+
+    @Test
+    public void countByBirthMonth() {
+        assertEquals(List.of(
+                        new BirthDateBucket(1985, 3, 2L),
+                        new BirthDateBucket(1985, 7, 1L),
+                        new BirthDateBucket(1990, 1, 1L)),
+                repository.countByBirthMonth(FROM, TO));
+    }
+
+    @Test
+    public void exportAppliesOnlyTheGivenBounds() {
+        List<UserEntity> all = repository.findAll();
+        Long secondId = all.get(1).getId();
+
+        try (Stream<UserView> everyone = repository.streamForExport(new UserExportFilter(null, null, null, null));
+             Stream<UserView> filtered = repository.streamForExport(
+                     new UserExportFilter(Date.valueOf("1985-03-15"), TO, secondId, null))) {
+            assertEquals(5, everyone.count());
+            assertEquals(List.of("b@example.com", "c@example.com", "d@example.com"),
+                    filtered.map(UserView::email).toList());
+        }
+    }
+}
@@ -0,0 +1,157 @@
+package org.springapp.testtask.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springapp.testtask.UsersServiceSliceTest;
+import org.springapp.testtask.config.UsersOutboxProperties;
+import org.springapp.testtask.dto.UserChange;
+import org.springapp.testtask.dto.UserChanges;
+import org.springapp.testtask.entity.UserEntity;
+import org.springapp.testtask.exception.ChangeOffsetExpiredException;
+import org.springapp.testtask.repository.UserOutboxRepository;
+import org.springapp.testtask.repository.UsersRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springapp.testtask.TestUsers.named;
+
+// Outbox rows are written at commit, so the test must not wrap everything in a rolled back transaction.
+// The outbox script is MySQL-flavoured, hence H2 in MySQL mode. The users table comes from create-drop after the
+// scripts have run, so data.sql's fixtures are left out.
+@UsersServiceSliceTest(properties = {
+        "spring.sql.init.mode=always",
+        "spring.sql.init.schema-locations=classpath:db/migration/V3__create_user_outbox.sql",
+        "spring.sql.init.data-locations=",
+        "spring.test.database.replace=none",
+        "spring.datasource.url=jdbc:h2:mem:outbox;MODE=MySQL;DB_CLOSE_DELAY=-1",
+        "spring.datasource.driver-class-name=org.h2.Driver",
+        "users.outbox.enabled=true",
+        "users.outbox.poll-interval=1h",
+        "users.outbox.prune-interval=1h"
+})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@EnableConfigurationProperties(UsersOutboxProperties.class)
+@Import({UserChangeFeed.class, UserOutboxRepository.class})
+public class UserChangeFeedTest {
+
+    @Autowired
+    private UsersService service;
+
+    @Autowired
+    private UserChangeFeed feed;
+
+    @Autowired
+    private UsersRepository repository;
+
+    @Autowired
+    private UserOutboxRepository outboxRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @AfterEach
+    public void tearDown() {
+        repository.deleteAll();
+    }
+
+    @Test
+    public void committedWritesAreReadInOrderFromAnyOffset() throws Exception {
+        long start = feed.position();
+        UserEntity created = service.createUser(named("John", "john@example.com"));
+        service.updateAllUserInfo(created.getId(), named("Johnny", "john@example.com"));
+        service.deleteUser(created.getId());
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            try {
+                service.createUser(named("Rolled", "rolled.back@example.com"));
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+            status.setRollbackOnly();
+        });
+        feed.relayOnce();
+
+        UserChanges changes = feed.read(start, 100);
+        assertEquals(List.of(UserChange.Type.CREATED, UserChange.Type.UPDATED, UserChange.Type.DELETED),
+                changes.changes().stream().map(UserChange::type).toList());
+        assertEquals(List.of(start + 1, start + 2, start + 3), changes.changes().stream().map(UserChange::position).toList());
+        assertEquals(start + 3, changes.next());
+        UserChange update = changes.changes().get(1);
+        assertEquals(created.getId(), update.id());
+        assertEquals("Johnny", update.user().firstName());
+        assertEquals(1, update.version());
+        assertNull(changes.changes().get(2).user());
+
+        assertEquals(List.of(start + 3), feed.read(start + 2, 100).changes().stream().map(UserChange::position).toList());
+        assertTrue(feed.read(start + 3, 100).changes().isEmpty());
+        assertEquals(start + 3, feed.read(null, 100).next());
+    }
+
+    @Test
+    public void subscriberGetsABatchWriteAsOnePage() throws Exception {
+        long start = feed.position();
+        BlockingQueue<UserChanges> pages = new LinkedBlockingQueue<>();
+        UserChangeFeed.Subscription subscription = feed.subscribe(start, 100, pages::add);
+        try {
+            service.createUsers(List.of(named("A", "a@example.com"), named("B", "b@example.com"), named("C", "c@example.com")));
+
+            // the commit wakes the relay thread
+            UserChanges page = pages.poll(10, TimeUnit.SECONDS);
+            assertNotNull(page);
+            assertEquals(3, page.changes().size());
+            assertEquals(List.of("A", "B", "C"), page.changes().stream().map(change -> change.user().firstName()).toList());
+            assertEquals(start + 3, page.next());
+        } finally {
+            subscription.cancel();
+        }
+    }
+
+    @Test
+    public void compactionKeepsTheLatestChangeAndExpiredOffsetsAreRefused() throws Exception {
+        long start = feed.position();
+        UserEntity created = service.createUser(named("Ann", "ann@example.com"));
+        service.updateAllUserInfo(created.getId(), named("Anna", "ann@example.com"));
+        service.updateAllUserInfo(created.getId(), named("Anne", "ann@example.com"));
+        feed.relayOnce();
+
+        // the table, the in-memory tail of recent changes is not compacted
+        feed.compact(Instant.now().plusSeconds(1));
+        List<UserChange> changes = outboxRepository.findSince(start, 100);
+        assertEquals(1, changes.size());
+        assertEquals("Anne", changes.get(0).user().firstName());
+        assertEquals(2, changes.get(0).version());
+
+        // the first run only marks the horizon, the next one deletes the rows
+        feed.expire(Instant.now().plusSeconds(1));
+        feed.relayOnce();
+        assertThrows(ChangeOffsetExpiredException.class, () -> feed.read(start, 100));
+        assertTrue(feed.read(start + 3, 100).changes().isEmpty());
+        assertEquals(1, countRows(start, start + 3));
+        feed.expire(Instant.now().plusSeconds(1));
+        assertEquals(0, countRows(start, start + 3));
+    }
+
+    private int countRows(long after, long through) {
+        return jdbcTemplate.queryForObject("select count(*) from user_outbox where position > ? and position <= ?",
+                Integer.class, after, through);
+    }
+}
@@ -0,0 +1,100 @@
+package org.springapp.testtask.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springapp.testtask.UsersServiceSliceTest;
+import org.springapp.testtask.dto.BatchItemResult;
+import org.springapp.testtask.dto.BatchResult;
+import org.springapp.testtask.entity.UserEntity;
+import org.springapp.testtask.exception.BatchSizeException;
+import org.springapp.testtask.repository.UsersRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.springapp.testtask.TestUsers.user;
+
+// Per-item outcomes of PUT /users/batch: every item is answered on its own, a rejected one never fails the others
+@UsersServiceSliceTest
+public class UsersBatchTest {
+
+    @Autowired
+    private UsersService service;
+
+    @Autowired
+    private UsersRepository repository;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    private UserEntity john;
+    private UserEntity jane;
+
+    @BeforeEach
+    public void setUp() {
+        john = repository.saveAndFlush(user(null, "john@example.com", "1990-01-01"));
+        jane = repository.saveAndFlush(user(null, "jane@example.com", "1991-01-01"));
+        entityManager.clear();
+    }
+
+    @Test
+    public void updatesValidItemsAndRejectsTheRestOneByOne() throws Exception {
+        String underage = LocalDate.now().minusYears(17).toString();
+        BatchResult result = service.updateUsers(List.of(
+                user(john.getId(), "john.new@example.com", "1980-05-05"),
+                user(null, "nobody@example.com", "1980-01-01"),
+                user(999_999L, "ghost@example.com", "1980-01-01"),
+                user(jane.getId(), "jane@example.com", underage)));
+
+        assertEquals(1, result.accepted());
+        assertEquals(3, result.rejected());
+        assertEquals(BatchItemResult.accepted(0, BatchItemResult.Status.UPDATED, john.getId()), result.items().get(0));
+        assertEquals(BatchItemResult.rejected(1, "User not found with id: null"), result.items().get(1));
+        assertEquals(BatchItemResult.rejected(2, "User not found with id: 999999"), result.items().get(2));
+        assertEquals(BatchItemResult.rejected(3, "User must be 18 years or older"), result.items().get(3));
+
+        entityManager.clear();
+        assertEquals("john.new@example.com", repository.findById(john.getId()).orElseThrow().getEmail());
+        assertEquals(Date.valueOf("1991-01-01"), repository.findById(jane.getId()).orElseThrow().getDateOfBirth());
+    }
+
+    @Test
+    public void emailTakenEarlierInTheBatchIsRejected() throws Exception {
+        BatchResult result = service.updateUsers(List.of(
+                user(john.getId(), "shared@example.com", "1990-01-01"),
+                user(jane.getId(), "Shared@Example.com", "1991-01-01")));
+
+        assertEquals(BatchItemResult.Status.UPDATED, result.items().get(0).status());
+        assertEquals(BatchItemResult.rejected(1, "User already created"), result.items().get(1));
+        entityManager.clear();
+        assertEquals("jane@example.com", repository.findById(jane.getId()).orElseThrow().getEmail());
+    }
+
+    @Test
+    public void emailOfAnotherExistingUserIsRejected() throws Exception {
+        BatchResult result = service.updateUsers(List.of(
+                user(john.getId(), "jane@example.com", "1990-01-01"),
+                user(jane.getId(), "jane@example.com", "1992-02-02")));
+
+        // Keeping one's own email is no conflict
+        assertEquals(BatchItemResult.rejected(0, "User already created"), result.items().get(0));
+        assertEquals(BatchItemResult.accepted(1, BatchItemResult.Status.UPDATED, jane.getId()), result.items().get(1));
+        entityManager.clear();
+        assertEquals("john@example.com", repository.findById(john.getId()).orElseThrow().getEmail());
+    }
+
+    @Test
+    public void emptyAndOversizedBatchesAreRefusedWhole() {
+        assertThrows(BatchSizeException.class, () -> service.updateUsers(List.of()));
+        List<UserEntity> tooMany = new ArrayList<>(Collections.nCopies(UsersService.MAX_BATCH_SIZE + 1,
+                user(john.getId(), "john@example.com", "1990-01-01")));
+        assertThrows(BatchSizeException.class, () -> service.updateUsers(tooMany));
+    }
+}
@@ -0,0 +1,135 @@
+package org.springapp.testtask.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springapp.testtask.UsersServiceSliceTest;
+import org.springapp.testtask.config.UsersImportProperties;
+import org.springapp.testtask.dto.ImportJobStatus;
+import org.springapp.testtask.dto.UsersFileFormat;
+import org.springapp.testtask.entity.UserEntity;
+import org.springapp.testtask.repository.UsersRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Import;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.sql.Date;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Jobs commit on their own threads, so the test must not wrap everything in a rolled back transaction
+@UsersServiceSliceTest(properties = {
+        "users.import.chunk-size=2",
+        "users.import.parallelism=2"
+})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@ImportAutoConfiguration(JacksonAutoConfiguration.class)
+@EnableConfigurationProperties(UsersImportProperties.class)
+@Import(UsersImportService.class)
+public class UsersImportServiceTest {
+
+    @Autowired
+    private UsersImportService importService;
+
+    @Autowired
+    private UsersRepository repository;
+
+    @AfterEach
+    public void tearDown() {
+        repository.deleteAll();
+    }
+
+    @Test
+    public void ndjsonImportWritesValidRowsAndReportsRejectsByLine() throws Exception {
+        repository.saveAndFlush(new UserEntity(null, "John", "Doe", "john.doe@example.com",
+                Date.valueOf("1990-01-01"), "123 Main Street", "555-1234"));
+        String upload = """
+                {"firstName":"Alice","lastName":"Johnson","email":"alice@example.com","dateOfBirth":"1992-08-25"}
+                {"firstName":"Bob","lastName":"Young","email":"bob@example.com","dateOfBirth":"2020-01-01"}
+                not json
+
+                {"firstName":"Taken","lastName":"Doe","email":"john.doe@example.com","dateOfBirth":"1990-01-01"}
+                {"firstName":"Carol","lastName":"White","email":"carol@example.com","dateOfBirth":"1985-03-10"}
+                {"firstName":"Again","lastName":"Johnson","email":"alice@example.com","dateOfBirth":"1992-08-25"}
+                """;
+
+        ImportJobStatus status = awaitFinished(importService.submit(
+                new ByteArrayInputStream(upload.getBytes(StandardCharsets.UTF_8)), UsersFileFormat.NDJSON));
+
+        assertEquals(ImportJobStatus.State.COMPLETED, status.state());
+        assertEquals(6, status.processed());
+        assertEquals(2, status.accepted());
+        assertEquals(4, status.rejected());
+        assertEquals(3, repository.count());
+
+        List<String> rejects = Files.readAllLines(importService.getRejects(status.id()).orElseThrow());
+        assertEquals(4, rejects.size());
+        assertTrue(rejects.get(0).contains("\"line\":2") && rejects.get(0).contains("18 years"));
+        assertTrue(rejects.get(1).contains("\"line\":3") && rejects.get(1).contains("Malformed record"));
+        assertTrue(rejects.get(2).contains("\"line\":5") && rejects.get(2).contains("User already created"));
+        assertTrue(rejects.get(3).contains("\"line\":7") && rejects.get(3).contains("User already created"));
+    }
+
+    @Test
+    public void csvImportMapsColumnsByHeader() throws Exception {
+        String upload = """
+                email,firstName,lastName,dateOfBirth,address
+                alice@example.com,Alice,Johnson,1992-08-25,"1 Main Street, Springfield"
+                invalid,Bob,Smith,1990-01-01,
+                """;
+
+        ImportJobStatus status = awaitFinished(importService.submit(
+                new ByteArrayInputStream(upload.getBytes(StandardCharsets.UTF_8)), UsersFileFormat.CSV));
+
+        assertEquals(ImportJobStatus.State.COMPLETED, status.state(), status.error());
+        assertEquals(1, status.accepted());
+        assertEquals(1, status.rejected());
+        UserEntity alice = repository.findAll().get(0);
+        assertEquals("1 Main Street, Springfield", alice.getAddress());
+        assertEquals(Date.valueOf("1992-08-25"), alice.getDateOfBirth());
+    }
+
+    // What the CSV export writes for a multi-line address: one record over several lines
+    @Test
+    public void csvRecordsMaySpanLines() throws Exception {
+        String upload = """
+                email,firstName,lastName,dateOfBirth,address
+                alice@example.com,Alice,Johnson,1992-08-25,"1 Main Street
+                Springfield"
+
+                bob@example.com,Bob,Smith,not-a-date,"2 Side Street
+                Shelbyville"
+                carol@example.com,Carol,White,1985-03-10,
+                """;
+
+        ImportJobStatus status = awaitFinished(importService.submit(
+                new ByteArrayInputStream(upload.getBytes(StandardCharsets.UTF_8)), UsersFileFormat.CSV));
+
+        assertEquals(ImportJobStatus.State.COMPLETED, status.state(), status.error());
+        assertEquals(3, status.processed());
+        assertEquals(2, status.accepted());
+        assertEquals("1 Main Street\nSpringfield", repository.findByEmail("alice@example.com").orElseThrow().getAddress());
+        List<String> rejects = Files.readAllLines(importService.getRejects(status.id()).orElseThrow());
+        assertEquals(1, rejects.size());
+        assertTrue(rejects.get(0).contains("\"line\":5") && rejects.get(0).contains("Malformed record"), rejects.get(0));
+    }
+
+    private ImportJobStatus awaitFinished(ImportJobStatus submitted) throws InterruptedException {
+        for (int i = 0; i < 100; i++) {
+            ImportJobStatus status = importService.getStatus(submitted.id()).orElseThrow();
+            if (status.finishedAt() != null) {
+                return status;
+            }
+            Thread.sleep(50);
+        }
+        throw new AssertionError("Import job did not finish");
+    }
+}
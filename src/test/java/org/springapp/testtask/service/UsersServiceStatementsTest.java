@@ -0,0 +1,239 @@
+package org.springapp.testtask.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.hibernate.Session;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springapp.testtask.UsersServiceSliceTest;
+import org.springapp.testtask.dto.UserFields;
+import org.springapp.testtask.dto.UserView;
+import org.springapp.testtask.entity.UserEntity;
+import org.springapp.testtask.exception.NoUserException;
+import org.springapp.testtask.exception.PreconditionFailedException;
+import org.springapp.testtask.exception.UnknownFieldException;
+import org.springapp.testtask.exception.UserCreatedException;
+import org.springapp.testtask.repository.UsersRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+
+import java.sql.Date;
+import java.util.List;
+import java.util.Set;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@UsersServiceSliceTest
+@Import(UsersServiceStatementsTest.StatementCounterConfiguration.class)
+public class UsersServiceStatementsTest {
+
+    @Autowired
+    private UsersService service;
+
+    @Autowired
+    private UsersRepository repository;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private StatementCounter statements;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private UserEntity john;
+
+    @BeforeEach
+    public void setUp() {
+        john = repository.saveAndFlush(new UserEntity(null, "John", "Doe", "john.doe@example.com",
+                Date.valueOf("1990-01-01"), "123 Main Street", "555-1234"));
+        repository.saveAndFlush(new UserEntity(null, "Jane", "Smith", "jane.smith@example.com",
+                Date.valueOf("1995-02-15"), "456 Elm Street", "555-5678"));
+        entityManager.clear();
+        statements.reset();
+    }
+
+    @Test
+    public void createUserRunsSingleInsert() throws Exception {
+        service.createUser(new UserEntity(null, "Alice", "Johnson", "alice.johnson@example.com",
+                Date.valueOf("1992-08-25"), "789 Oak Street", "555-9012"));
+
+        assertEquals(List.of("insert"), statements.userStatements());
+    }
+
+    @Test
+    public void rangeQueryRecordsResultSize() throws Exception {
+        service.getUsersByBirthDateRange(Date.valueOf("1989-01-01"), Date.valueOf("1991-01-01"));
+
+        var summary = meterRegistry.get("users.result.size").tag("operation", "range").summary();
+        assertEquals(1, summary.count());
+        assertEquals(1.0, summary.totalAmount());
+    }
+
+    @Test
+    public void listReadsSkipThePersistenceContext() {
+        List<UserView> users = service.getAllUsers();
+
+        assertEquals(2, users.size());
+        assertEquals("john.doe@example.com", users.get(0).email());
+        assertEquals(0, entityManager.getEntityManager().unwrap(Session.class).getStatistics().getEntityCount());
+    }
+
+    @Test
+    public void sparseFieldsSelectOnlyRequestedColumns() throws Exception {
+        List<Map<String, Object>> users = service.getUserFields(UserFields.parse("email"), 0L, 10);
+
+        assertEquals(Map.of("id", john.getId(), "email", "john.doe@example.com"), users.get(0));
+        String sql = statements.lastStatement().toLowerCase();
+        assertTrue(sql.contains("email") && !sql.contains("address") && !sql.contains("first_name"), sql);
+    }
+
+    @Test
+    public void unknownFieldIsRejected() {
+        assertThrows(UnknownFieldException.class, () -> UserFields.parse("id,password"));
+    }
+
+    @Test
+    public void createUserWithTakenEmailThrowsUserCreatedException() {
+        var duplicate = new UserEntity(null, "Other", "John", "john.doe@example.com",
+                Date.valueOf("1990-01-01"), "123 Main Street", "555-1234");
+
+        assertThrows(UserCreatedException.class, () -> service.createUser(duplicate));
+        assertEquals(List.of("insert"), statements.userStatements());
+    }
+
+    @Test
+    public void updateUserRunsOneSelectAndOneUpdate() throws Exception {
+        service.updateAllUserInfo(john.getId(), new UserEntity(null, "Updated", "User", "updated.user@example.com",
+                Date.valueOf("1990-01-01"), "Updated Address", "555-5555"));
+
+        assertEquals(List.of("select", "update"), statements.userStatements());
+    }
+
+    @Test
+    public void patchUserKeepingOwnEmailSucceeds() throws Exception {
+        service.updateUserInfo(john.getId(), new UserEntity(null, "Johnny", "Doe", "john.doe@example.com",
+                Date.valueOf("1990-01-01"), "123 Main Street", "555-1234"));
+
+        assertEquals(List.of("select", "update"), statements.userStatements());
+    }
+
+    @Test
+    public void updateUserToTakenEmailThrowsUserCreatedException() {
+        var updated = new UserEntity(null, "John", "Doe", "jane.smith@example.com",
+                Date.valueOf("1990-01-01"), "123 Main Street", "555-1234");
+
+        assertThrows(UserCreatedException.class, () -> service.updateUserInfo(john.getId(), updated));
+        assertEquals(List.of("select", "update"), statements.userStatements());
+    }
+
+    @Test
+    public void updateBumpsVersionSeenByPageValidator() throws Exception {
+        assertEquals(0L, service.getUserVersions(0L, 10).get(0).version());
+
+        UserEntity updated = service.updateUserInfo(john.getId(), new UserEntity(null, "Johnny", "Doe", "john.doe@example.com",
+                Date.valueOf("1990-01-01"), "123 Main Street", "555-1234"), Set.of(0L));
+        entityManager.flush();
+
+        assertEquals(1L, updated.getVersion());
+        assertEquals(1L, service.getUserVersions(0L, 10).get(0).version());
+    }
+
+    @Test
+    public void staleExpectedVersionIsRejectedBeforeAnyWrite() {
+        var updated = new UserEntity(null, "Johnny", "Doe", "john.doe@example.com",
+                Date.valueOf("1990-01-01"), "123 Main Street", "555-1234");
+
+        assertThrows(PreconditionFailedException.class, () -> service.updateAllUserInfo(john.getId(), updated, Set.of(7L)));
+        assertThrows(PreconditionFailedException.class, () -> service.updateAllUserInfo(john.getId(), updated, Set.of()));
+        assertEquals(List.of("select"), statements.userStatements());
+    }
+
+    // If-Match: "7", "0" names the current version among others
+    @Test
+    public void anyExpectedVersionThatIsCurrentLetsTheUpdateThrough() throws Exception {
+        UserEntity updated = service.updateAllUserInfo(john.getId(), new UserEntity(null, "Johnny", "Doe", "john.doe@example.com",
+                Date.valueOf("1990-01-01"), "123 Main Street", "555-1234"), Set.of(7L, 0L));
+        entityManager.flush();
+
+        assertEquals(1L, updated.getVersion());
+    }
+
+    @Test
+    public void deleteUserRunsSingleDelete() throws Exception {
+        service.deleteUser(john.getId());
+
+        assertEquals(List.of("delete"), statements.userStatements());
+    }
+
+    @Test
+    public void deleteMissingUserThrowsNoUserException() {
+        assertThrows(NoUserException.class, () -> service.deleteUser(10_000L));
+        assertEquals(List.of("delete"), statements.userStatements());
+    }
+
+    @Test
+    public void batchCreateChecksEmailsWithOneQuery() throws Exception {
+        var users = List.of(
+                new UserEntity(null, "A", "A", "a@example.com", Date.valueOf("1990-01-01"), null, null),
+                new UserEntity(null, "B", "B", "b@example.com", Date.valueOf("1990-01-01"), null, null),
+                new UserEntity(null, "C", "C", "john.doe@example.com", Date.valueOf("1990-01-01"), null, null));
+
+        var result = service.createUsers(users);
+
+        assertEquals(2, result.accepted());
+        assertEquals(1, result.rejected());
+        assertEquals(1, statements.userStatements().stream().filter("select"::equals).count());
+    }
+
+    // Counts statements against the users table; the users_seq allocations are shared and irrelevant here
+    public static class StatementCounter implements StatementInspector {
+
+        private final List<String> statements = new CopyOnWriteArrayList<>();
+
+        @Override
+        public String inspect(String sql) {
+            statements.add(sql);
+            return sql;
+        }
+
+        String lastStatement() {
+            return statements.get(statements.size() - 1);
+        }
+
+        void reset() {
+            statements.clear();
+        }
+
+        List<String> userStatements() {
+            return statements.stream()
+                    .filter(sql -> !sql.contains("users_seq"))
+                    .map(sql -> sql.trim().split("\\s+")[0].toLowerCase())
+                    .toList();
+        }
+    }
+
+    @TestConfiguration
+    static class StatementCounterConfiguration {
+
+        @Bean
+        StatementCounter statementCounter() {
+            return new StatementCounter();
+        }
+
+        @Bean
+        HibernatePropertiesCustomizer statementCounterCustomizer(StatementCounter counter) {
+            return properties -> properties.put(AvailableSettings.STATEMENT_INSPECTOR, counter);
+        }
+    }
+}
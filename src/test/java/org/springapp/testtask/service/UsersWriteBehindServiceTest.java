@@ -0,0 +1,142 @@
+package org.springapp.testtask.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.validation.Validator;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springapp.testtask.UsersServiceSliceTest;
+import org.springapp.testtask.config.UsersWriteBehindProperties;
+import org.springapp.testtask.dto.PendingUserStatus;
+import org.springapp.testtask.entity.UserEntity;
+import org.springapp.testtask.exception.UserCreatedException;
+import org.springapp.testtask.repository.UsersRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Date;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+// The writer commits on its own thread, so the test must not wrap everything in a rolled back transaction
+@UsersServiceSliceTest(properties = "users.write-behind.enabled=true")
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@ImportAutoConfiguration(JacksonAutoConfiguration.class)
+@EnableConfigurationProperties(UsersWriteBehindProperties.class)
+@Import(UsersWriteBehindService.class)
+public class UsersWriteBehindServiceTest {
+
+    @TempDir
+    static Path logDirectory;
+
+    @Autowired
+    private UsersWriteBehindService writeBehindService;
+
+    @Autowired
+    private UsersService usersService;
+
+    @Autowired
+    private UsersRepository repository;
+
+    @Autowired
+    private Validator validator;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @DynamicPropertySource
+    static void logDirectory(DynamicPropertyRegistry registry) {
+        registry.add("users.write-behind.directory", () -> logDirectory.toString());
+    }
+
+    @AfterEach
+    public void tearDown() {
+        repository.deleteAll();
+    }
+
+    @Test
+    public void queuedUserIsWrittenInTheBackgroundAndHoldsItsEmail() throws Exception {
+        PendingUserStatus queued = writeBehindService.enqueue(new UserEntity(null, "Alice", "Johnson", "alice@example.com",
+                Date.valueOf("1992-08-25"), "789 Oak Street", "555-9012"));
+
+        assertEquals(PendingUserStatus.State.QUEUED, queued.state());
+        assertThrows(UserCreatedException.class, () -> writeBehindService.enqueue(new UserEntity(null, "Other", "Alice",
+                "ALICE@example.com", Date.valueOf("1990-01-01"), null, null)));
+
+        PendingUserStatus written = awaitFinished(writeBehindService, queued.id());
+        assertEquals(PendingUserStatus.State.CREATED, written.state());
+        assertEquals("alice@example.com", repository.findById(written.userId()).orElseThrow().getEmail());
+    }
+
+    @Test
+    public void restartReplaysEntriesWithoutOutcome(@TempDir Path directory) throws Exception {
+        UserEntity john = repository.saveAndFlush(new UserEntity(null, "John", "Doe", "john.doe@example.com",
+                Date.valueOf("1990-01-01"), "123 Main Street", "555-1234"));
+        // alice never got written, john was committed but the crash came before his outcome, carol finished
+        Files.writeString(directory.resolve("users.log"), """
+                {"id":"alice","state":"QUEUED","at":"2024-01-01T00:00:00Z","user":{"firstName":"Alice","lastName":"Johnson","email":"alice@example.com","dateOfBirth":"1992-08-25"}}
+                {"id":"john","state":"QUEUED","at":"2024-01-01T00:00:00Z","user":{"firstName":"John","lastName":"Doe","email":"john.doe@example.com","dateOfBirth":"1990-01-01","address":"123 Main Street","phoneNumber":"555-1234"}}
+                {"id":"carol","state":"QUEUED","at":"2024-01-01T00:00:00Z","user":{"firstName":"Carol","lastName":"White","email":"carol@example.com","dateOfBirth":"1985-03-10"}}
+                {"id":"carol","state":"CREATED","at":"2024-01-01T00:00:01Z","userId":42}
+                {"id":"torn","state":"QUE""");
+
+        UsersWriteBehindService restarted = new UsersWriteBehindService(usersService, validator, objectMapper,
+                new UsersWriteBehindProperties(true, directory, 100, 10, Duration.ofHours(1)));
+        restarted.start();
+        try {
+            assertEquals(PendingUserStatus.State.CREATED, awaitFinished(restarted, "alice").state());
+            assertEquals(john.getId(), awaitFinished(restarted, "john").userId());
+            assertEquals(42L, restarted.getStatus("carol").orElseThrow().userId());
+            assertEquals(2, repository.count());
+        } finally {
+            restarted.stop();
+        }
+    }
+
+    @Test
+    public void userTheDatabaseRefusesIsRejectedWithoutHoldingUpItsBatch(@TempDir Path directory) throws Exception {
+        assertThrows(UserCreatedException.class, () -> writeBehindService.enqueue(new UserEntity(null, "A".repeat(256),
+                "Johnson", "long@example.com", Date.valueOf("1992-08-25"), null, null)));
+
+        // Written before the length check existed, so only the INSERT finds out
+        Files.writeString(directory.resolve("users.log"), """
+                {"id":"long","state":"QUEUED","at":"2024-01-01T00:00:00Z","user":{"firstName":"%s","lastName":"Johnson","email":"long@example.com","dateOfBirth":"1992-08-25"}}
+                {"id":"carol","state":"QUEUED","at":"2024-01-01T00:00:00Z","user":{"firstName":"Carol","lastName":"White","email":"carol@example.com","dateOfBirth":"1985-03-10"}}
+                """.formatted("A".repeat(256)));
+
+        UsersWriteBehindService restarted = new UsersWriteBehindService(usersService, validator, objectMapper,
+                new UsersWriteBehindProperties(true, directory, 100, 10, Duration.ofHours(1)));
+        restarted.start();
+        try {
+            PendingUserStatus refused = awaitFinished(restarted, "long");
+            assertEquals(PendingUserStatus.State.REJECTED, refused.state());
+            assertEquals("User could not be written", refused.error());
+            assertEquals(PendingUserStatus.State.CREATED, awaitFinished(restarted, "carol").state());
+            assertEquals(1, repository.count());
+        } finally {
+            restarted.stop();
+        }
+    }
+
+    private static PendingUserStatus awaitFinished(UsersWriteBehindService service, String id) throws InterruptedException {
+        for (int i = 0; i < 100; i++) {
+            PendingUserStatus status = service.getStatus(id).orElseThrow();
+            if (status.finishedAt() != null) {
+                return status;
+            }
+            Thread.sleep(50);
+        }
+        throw new AssertionError("Queued user was not written");
+    }
+}